@@ -57,11 +57,14 @@ public class HospitalClient
             System.exit(1);
         }
         
-        // The following code gets a reference to a Team object by simply
-        // calling on hospital1 to provide a collection of all
-        // the Team objects,
-        // converting to an array and picking the first element.
-        Team theTeam = (Team) hospital1.getTeams().toArray()[0];
+        // The following code gets a reference to a Team object by
+        // looking up its code in hospital1.
+        Team theTeam = hospital1.findTeam("Paediatrics");
+        if (theTeam == null)
+        {
+            System.out.println("hospital1 has no team Paediatrics; no patient admitted.");
+            System.exit(1);
+        }
         System.out.println("Admitting a patient to hospital1...");
         
         // Admit the patient by calling on hospital1's admit(aName, aSex, aDate, aTeam) method.
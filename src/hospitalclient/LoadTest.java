@@ -0,0 +1,408 @@
+package hospitalclient;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import hospitalcore.*;
+import m256people.*;
+import m256date.*;
+
+/**
+ * Drives a generated hospital with a mix of concurrent work like that seen in production,
+ * reporting throughput, latency percentiles per operation and any broken invariants.<p>
+ * Admission desks admit and discharge patients, ward rounds fetch a team's patients and
+ * record treatments, and dashboards fetch every patient. While they run the hospital is
+ * audited incrementally twice a second, and once they have stopped it is audited in full,
+ * for wards over capacity, links between patients and their wards and teams that do not
+ * agree, and treatments by doctors outside the patient's team.
+ * The statistics of the hospital's query cache are reported at the end.
+ * Usage: LoadTest [name=value ...], where the names and their defaults are
+ * desks=8 rounds=4 dashboards=2 seconds=10 wards=40 capacity=30 teams=8 archive=false
+ */
+public class LoadTest
+{
+    /**
+     * the operations measured
+     */
+    private enum Operation
+    {
+        ADMIT, DISCHARGE, PATIENTS_AND_WARDS, RECORD_TREATMENT, PATIENTS
+    }
+
+
+    public static void main(String[] args) throws Exception
+    {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args)
+        {
+            int equals = arg.indexOf('=');
+            if (equals < 0)
+            {
+                System.out.println("Usage: LoadTest [name=value ...]");
+                System.exit(1);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        int desks = option(options, "desks", 8);
+        int rounds = option(options, "rounds", 4);
+        int dashboards = option(options, "dashboards", 2);
+        int seconds = option(options, "seconds", 10);
+        int wardCount = option(options, "wards", 40);
+        int capacity = option(options, "capacity", 30);
+        int teamCount = option(options, "teams", 8);
+        boolean archive = Boolean.parseBoolean(options.getOrDefault("archive", "false"));
+
+        final HospCoord hospital = generateHospital(wardCount, capacity, teamCount);
+        hospital.setDischargeArchiveEnabled(archive);
+        final Team[] teams = hospital.getTeams().toArray(new Team[0]);
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        final List<Map<Operation, Recorder>> allRecorders = new CopyOnWriteArrayList<Map<Operation, Recorder>>();
+        final Set<String> violations = Collections.synchronizedSet(new LinkedHashSet<String>());
+        final Recorder audits = new Recorder();
+        final AtomicLong wardsAudited = new AtomicLong();
+
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < desks; i++)
+        {
+            final long seed = i;
+            workers.add(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    Map<Operation, Recorder> recorders = recorders(allRecorders);
+                    Random random = new Random(seed);
+                    List<Patient> admitted = new ArrayList<Patient>();
+                    M256Date birthDate = new M256Date("01/01/70");
+                    int next = 0;
+                    while (System.nanoTime() < deadline)
+                    {
+                        if (admitted.isEmpty() || random.nextInt(100) < 52)
+                        {
+                            Name aName = new Name("Mx", "Desk" + seed, "Patient" + next++);
+                            Sex aSex = random.nextBoolean() ? Sex.M : Sex.F;
+                            Team aTeam = teams[random.nextInt(teams.length)];
+                            long start = System.nanoTime();
+                            try
+                            {
+                                Ward aWard = hospital.admit(aName, aSex, birthDate, aTeam);
+                                recorders.get(Operation.ADMIT).record(System.nanoTime() - start);
+                                if (aWard != null)
+                                {
+                                    admitted.add(findPatient(hospital, aWard, aName));
+                                }
+                            }
+                            catch (RuntimeException ex)
+                            {
+                                recorders.get(Operation.ADMIT).fail(ex);
+                            }
+                        }
+                        else
+                        {
+                            Patient aPatient = admitted.remove(random.nextInt(admitted.size()));
+                            long start = System.nanoTime();
+                            try
+                            {
+                                hospital.discharge(aPatient);
+                                recorders.get(Operation.DISCHARGE).record(System.nanoTime() - start);
+                            }
+                            catch (RuntimeException ex)
+                            {
+                                recorders.get(Operation.DISCHARGE).fail(ex);
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        for (int i = 0; i < rounds; i++)
+        {
+            final long seed = 1000 + i;
+            workers.add(new Callable<Void>()
+            {
+                public Void call()
+                {
+                    Map<Operation, Recorder> recorders = recorders(allRecorders);
+                    Random random = new Random(seed);
+                    while (System.nanoTime() < deadline)
+                    {
+                        Team aTeam = teams[random.nextInt(teams.length)];
+                        List<Doctor> doctors = hospital.getDoctorRoster(aTeam);
+                        Map<Patient, Ward> patients;
+                        long start = System.nanoTime();
+                        try
+                        {
+                            patients = hospital.getPatientsAndWards(aTeam);
+                            recorders.get(Operation.PATIENTS_AND_WARDS).record(System.nanoTime() - start);
+                        }
+                        catch (RuntimeException ex)
+                        {
+                            recorders.get(Operation.PATIENTS_AND_WARDS).fail(ex);
+                            continue;
+                        }
+                        for (Patient aPatient : patients.keySet())
+                        {
+                            Doctor aDoctor = doctors.get(random.nextInt(doctors.size()));
+                            start = System.nanoTime();
+                            try
+                            {
+                                hospital.recordTreatment(aPatient, aDoctor);
+                                recorders.get(Operation.RECORD_TREATMENT).record(System.nanoTime() - start);
+                            }
+                            catch (IllegalArgumentException ex)
+                            {
+                                // discharged since the round began
+                                recorders.get(Operation.RECORD_TREATMENT).record(System.nanoTime() - start);
+                            }
+                            catch (RuntimeException ex)
+                            {
+                                recorders.get(Operation.RECORD_TREATMENT).fail(ex);
+                            }
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        for (int i = 0; i < dashboards; i++)
+        {
+            workers.add(new Callable<Void>()
+            {
+                public Void call() throws Exception
+                {
+                    Map<Operation, Recorder> recorders = recorders(allRecorders);
+                    while (System.nanoTime() < deadline)
+                    {
+                        long start = System.nanoTime();
+                        try
+                        {
+                            hospital.getPatients();
+                            recorders.get(Operation.PATIENTS).record(System.nanoTime() - start);
+                        }
+                        catch (RuntimeException ex)
+                        {
+                            recorders.get(Operation.PATIENTS).fail(ex);
+                        }
+                        Thread.sleep(10);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor();
+        checker.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                AuditReport report = hospital.audit();
+                audits.record(report.getElapsedNanos());
+                wardsAudited.addAndGet(report.getWardsChecked());
+                violations.addAll(report.getViolations());
+            }
+        }, 500, 500, TimeUnit.MILLISECONDS);
+
+        System.out.println("Running " + desks + " desks, " + rounds + " ward rounds and " + dashboards
+                + " dashboards for " + seconds + " s against " + wardCount + " wards of " + capacity
+                + " beds and " + teamCount + " teams...");
+        ExecutorService pool = Executors.newFixedThreadPool(workers.size());
+        for (Future<Void> result : pool.invokeAll(workers))
+        {
+            result.get();
+        }
+        pool.shutdown();
+        checker.shutdown();
+        checker.awaitTermination(10, TimeUnit.SECONDS);
+        AuditReport finalReport = hospital.auditAll();
+        violations.addAll(finalReport.getViolations());
+
+        System.out.println();
+        System.out.println(String.format("%-18s %10s %10s %10s %10s %10s %10s %8s",
+                "operation", "count", "ops/s", "p50 us", "p99 us", "p999 us", "max us", "errors"));
+        for (Operation anOperation : Operation.values())
+        {
+            Recorder total = new Recorder();
+            for (Map<Operation, Recorder> recorders : allRecorders)
+            {
+                total.add(recorders.get(anOperation));
+            }
+            System.out.println(String.format("%-18s %10d %10.0f %10.1f %10.1f %10.1f %10.1f %8d",
+                    anOperation.name().toLowerCase(), total.count, total.count / (double) seconds,
+                    total.percentile(50) / 1e3, total.percentile(99) / 1e3, total.percentile(99.9) / 1e3,
+                    total.max / 1e3, total.failures));
+            if (total.firstFailure != null)
+            {
+                System.out.println("    first error: " + total.firstFailure);
+            }
+        }
+        System.out.println();
+        System.out.println(String.format("Incremental audits: %d, %.1f of %d wards checked on average, p50 %.1f us, p99 %.1f us, max %.1f us",
+                audits.count, (audits.count == 0) ? 0.0 : wardsAudited.get() / (double) audits.count, wardCount,
+                audits.percentile(50) / 1e3, audits.percentile(99) / 1e3, audits.max / 1e3));
+        System.out.println("Final full audit: " + finalReport);
+        System.out.println("Query cache: " + hospital.getQueryCacheStats());
+        System.out.println("Violations: " + violations.size());
+        int shown = 0;
+        synchronized (violations)
+        {
+            for (Iterator<String> it = violations.iterator(); it.hasNext() && shown < 10; shown++)
+            {
+                System.out.println("    " + it.next());
+            }
+        }
+        System.exit(violations.isEmpty() ? 0 : 2);
+    }
+
+
+    /**
+     * Returns the value of the named option, or aDefault if it is not given.
+     */
+    private static int option(Map<String, String> options, String aName, int aDefault)
+    {
+        String value = options.get(aName);
+        return (value == null) ? aDefault : Integer.parseInt(value);
+    }
+
+
+    /**
+     * Writes a setup file for a hospital of the given size and returns the hospital,
+     * held in temporary files.
+     */
+    private static HospCoord generateHospital(int wardCount, int capacity, int teamCount) throws IOException
+    {
+        File setupFile = File.createTempFile("loadtest", ".csv");
+        File dataFile = File.createTempFile("loadtest", ".data");
+        setupFile.deleteOnExit();
+        dataFile.deleteOnExit();
+        new File(setupFile.getPath() + ".img").deleteOnExit();
+        dataFile.delete();
+        try (PrintWriter out = new PrintWriter(new FileWriter(setupFile)))
+        {
+            for (int i = 0; i < wardCount; i++)
+            {
+                out.println("Ward,Ward " + i + "," + ((i % 2 == 0) ? "F" : "M") + "," + capacity + ",");
+            }
+            for (int i = 0; i < teamCount; i++)
+            {
+                out.println("Team,Team " + i + ",,,");
+                out.println("Consultant,Ms,Consultant,Team" + i + ",");
+                out.println("Junior,Mr,Junior,Team" + i + "A,ONE");
+                out.println("Junior,Ms,Junior,Team" + i + "B,TWO");
+            }
+        }
+        return HospCoord.getPartition(setupFile.getPath(), dataFile.getPath());
+    }
+
+
+    /**
+     * Returns the recorders for the calling thread, one for each operation.
+     */
+    private static Map<Operation, Recorder> recorders(List<Map<Operation, Recorder>> allRecorders)
+    {
+        Map<Operation, Recorder> recorders = new EnumMap<Operation, Recorder>(Operation.class);
+        for (Operation anOperation : Operation.values())
+        {
+            recorders.put(anOperation, new Recorder());
+        }
+        allRecorders.add(recorders);
+        return recorders;
+    }
+
+
+    /**
+     * Returns the patient just admitted to aWard with the given name.
+     */
+    private static Patient findPatient(HospCoord hospital, Ward aWard, Name aName)
+    {
+        for (Patient aPatient : hospital.getRoster(aWard))
+        {
+            if (aPatient.getName().equals(aName))
+            {
+                return aPatient;
+            }
+        }
+        throw new IllegalStateException(aName + " not found on " + aWard.getName());
+    }
+
+
+    /**
+     * Records latencies in buckets of roughly 3% width, and counts failures.
+     */
+    private static class Recorder
+    {
+        private static final int SUB_BUCKETS = 32;
+        private final long[] buckets = new long[64 * SUB_BUCKETS];
+        private long count;
+        private long max;
+        private long failures;
+        private String firstFailure;
+
+        void record(long nanos)
+        {
+            buckets[bucket(nanos)]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        void fail(RuntimeException anException)
+        {
+            if (firstFailure == null)
+            {
+                firstFailure = anException.toString();
+            }
+            failures++;
+        }
+
+        void add(Recorder another)
+        {
+            for (int i = 0; i < buckets.length; i++)
+            {
+                buckets[i] += another.buckets[i];
+            }
+            count += another.count;
+            max = Math.max(max, another.max);
+            failures += another.failures;
+            if (firstFailure == null)
+            {
+                firstFailure = another.firstFailure;
+            }
+        }
+
+        long percentile(double aPercentile)
+        {
+            long rank = (long) Math.ceil(count * aPercentile / 100);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++)
+            {
+                seen += buckets[i];
+                if (seen >= rank && seen > 0)
+                {
+                    return Math.min(max, upperBound(i));
+                }
+            }
+            return 0;
+        }
+
+        private static int bucket(long nanos)
+        {
+            long value = Math.max(1, nanos);
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent < 5)
+            {
+                return (int) value;
+            }
+            return (exponent - 4) * SUB_BUCKETS + (int) ((value >>> (exponent - 5)) & (SUB_BUCKETS - 1));
+        }
+
+        private static long upperBound(int aBucket)
+        {
+            if (aBucket < SUB_BUCKETS)
+            {
+                return aBucket;
+            }
+            int exponent = aBucket / SUB_BUCKETS + 4;
+            return ((SUB_BUCKETS + aBucket % SUB_BUCKETS + 1L) << (exponent - 5)) - 1;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package hospitalclient;
+
+import java.lang.management.*;
+import hospitalcore.*;
+import m256people.*;
+import m256date.*;
+
+/**
+ * Measures the time from the start of the JVM to the completion of the first admission,
+ * which is the delay a user sees when a terminal is restarted.<p>
+ * The time is broken down into starting the JVM and reaching main, loading the hospital
+ * and making the first admission. The admission is not saved. With no arguments the
+ * hospital is loaded as the client loads it; given a setup file and a data file, a
+ * partition is loaded from those instead.
+ * Usage: StartupTimer [setupFile dataFile]
+ */
+public class StartupTimer
+{
+    public static void main(String[] args) throws Exception
+    {
+        long mainStart = System.nanoTime();
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        long toMain = runtime.getUptime();
+
+        HospCoord hospital = (args.length > 1) ? HospCoord.getPartition(args[0], args[1]) : HospCoord.getHospital();
+        long loaded = System.nanoTime();
+
+        Team aTeam = hospital.getTeams().iterator().next();
+        Ward aWard = hospital.admit(new Name("Mx", "Startup", "Timer"), Sex.F, new M256Date("01/01/70"), aTeam);
+        if (aWard == null)
+        {
+            aWard = hospital.admit(new Name("Mx", "Startup", "Timer"), Sex.M, new M256Date("01/01/70"), aTeam);
+        }
+        long admitted = System.nanoTime();
+        long total = runtime.getUptime();
+
+        System.out.println("JVM start to main:       " + toMain + " ms");
+        System.out.println("load hospital:           " + (loaded - mainStart) / 1000000.0 + " ms");
+        System.out.println("first admission:         " + (admitted - loaded) / 1000000.0 + " ms"
+                + ((aWard == null) ? " (no free bed)" : ""));
+        System.out.println("startup to first admit:  " + total + " ms");
+    }
+}
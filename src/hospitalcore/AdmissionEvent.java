@@ -0,0 +1,53 @@
+package hospitalcore;
+
+import jdk.jfr.*;
+
+/**
+ * AdmissionEvent objects are JDK Flight Recorder events recording the admission of a
+ * patient: how long choosing the ward and admitting the patient took, and which ward
+ * was chosen, or that there was none.
+ */
+@Name("hospitalcore.Admission")
+@Label("Admission")
+@Category("Hospital")
+@Description("Choosing a ward for a new patient and admitting the patient to it")
+class AdmissionEvent extends Event
+{
+    //attributes
+
+    /**
+     * the type of these events, so that an admission can ask whether any recording wants
+     * one before creating it
+     */
+    static final EventType TYPE = EventType.getEventType(AdmissionEvent.class);
+
+    @Label("Patient Id")
+    @Description("The id of the admitted patient, or 0 if there was no suitable ward")
+    int patientId;
+
+    @Label("Ward")
+    @Description("The name of the ward chosen, or null if there was no suitable ward")
+    String ward;
+
+    @Label("Team")
+    String team;
+
+    @Label("Sex")
+    String sex;
+
+    @Label("Attributes")
+    @Description("The attributes the ward was required to have, or null if the bed allocation strategy chose it")
+    String attributes;
+
+    @Label("Strategy")
+    @Description("The bed allocation strategy, or null if the ward was chosen by its attributes")
+    String strategy;
+
+    @Label("Wards Examined")
+    @Description("The number of candidate wards the strategy looked at in turn, or 0 if it found the ward from its index")
+    int wardsExamined;
+
+    @Label("Free Beds")
+    @Description("The number of free beds left on the ward chosen")
+    int freeBeds;
+}
@@ -0,0 +1,123 @@
+package hospitalcore;
+
+import java.util.*;
+
+/**
+ * AuditReport objects hold the result of one audit of the links between the wards,
+ * teams, patients and doctors of a hospital.
+ */
+public class AuditReport
+{
+    //attributes
+
+    /**
+     * the number of wards checked by this audit
+     */
+    private final int wardsChecked;
+
+    /**
+     * the number of teams checked by this audit
+     */
+    private final int teamsChecked;
+
+    /**
+     * the time the audit took, in nanoseconds
+     */
+    private final long elapsed;
+
+    /**
+     * descriptions of every broken rule known after the audit
+     */
+    private final List<String> violations;
+
+
+    //constructor
+
+    /**
+     * Initialises a new AuditReport object with the given attribute values.
+     *
+     * @param aWardsChecked the number of wards checked
+     * @param aTeamsChecked the number of teams checked
+     * @param anElapsed the time the audit took, in nanoseconds
+     * @param aViolations descriptions of the broken rules
+     */
+    AuditReport(int aWardsChecked, int aTeamsChecked, long anElapsed, List<String> aViolations)
+    {
+        wardsChecked = aWardsChecked;
+        teamsChecked = aTeamsChecked;
+        elapsed = anElapsed;
+        violations = Collections.unmodifiableList(aViolations);
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the number of wards checked by this audit. An incremental audit checks
+     * only the wards that have changed since they were last checked.
+     *
+     * @return wardsChecked
+     */
+    public int getWardsChecked()
+    {
+        return wardsChecked;
+    }
+
+
+    /**
+     * Returns the number of teams checked by this audit. An incremental audit checks
+     * only the teams that have changed since they were last checked.
+     *
+     * @return teamsChecked
+     */
+    public int getTeamsChecked()
+    {
+        return teamsChecked;
+    }
+
+
+    /**
+     * Returns the time the audit took, during which the hospital could not be changed.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    public long getElapsedNanos()
+    {
+        return elapsed;
+    }
+
+
+    /**
+     * Returns descriptions of every broken rule known after the audit, including those
+     * found by earlier audits in wards and teams that have not changed since.
+     *
+     * @return an unmodifiable list of descriptions
+     */
+    public List<String> getViolations()
+    {
+        return violations;
+    }
+
+
+    /**
+     * Returns whether no rules are known to be broken.
+     *
+     * @return true if there are no violations, false otherwise
+     */
+    public boolean isClean()
+    {
+        return violations.isEmpty();
+    }
+
+
+    /**
+     * Returns a string summarising this report.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return wardsChecked + " wards and " + teamsChecked + " teams checked in "
+                + (elapsed / 1000) + " us: " + violations.size() + " violations";
+    }
+}
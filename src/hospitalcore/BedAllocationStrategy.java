@@ -0,0 +1,61 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+
+/**
+ * A BedAllocationStrategy chooses the ward a newly admitted patient goes to.<p>
+ * A strategy keeps its own index of the wards so that choosing a ward does not
+ * need to look at every ward. The index is built by initialise(), and HospCoord
+ * tells the strategy of every patient added to or removed from a ward so that
+ * the index stays up to date. Indexes need not be saved with the hospital; a
+ * strategy is initialised again after the hospital is read back in.
+ */
+public interface BedAllocationStrategy extends java.io.Serializable
+{
+    /**
+     * Builds the index over all the wards of the hospital, discarding any previous index.
+     *
+     * @param aWardCollection all the wards of the hospital
+     */
+    void initialise(Collection<Ward> aWardCollection);
+
+
+    /**
+     * Returns the ward a patient of the given sex cared for by the given team should go to.
+     *
+     * @param aSex the sex of the patient
+     * @param aTeam the team that will care for the patient
+     *
+     * @return a Ward object of type aSex with at least one free bed,
+     *         or null if there is no such ward
+     */
+    Ward selectWard(Sex aSex, Team aTeam);
+
+
+    /**
+     * Records that a patient cared for by the team has been added to the ward.
+     *
+     * @param aWard a ward
+     * @param aTeam a team
+     */
+    void patientAdded(Ward aWard, Team aTeam);
+
+
+    /**
+     * Records that a patient cared for by the team has been removed from the ward.
+     *
+     * @param aWard a ward
+     * @param aTeam a team
+     */
+    void patientRemoved(Ward aWard, Team aTeam);
+
+
+    /**
+     * Returns the number of candidate wards looked at in turn by the most recent
+     * selectWard, for reporting; 0 if the ward was found from the index alone.
+     *
+     * @return the number of wards examined
+     */
+    int getWardsExamined();
+}
@@ -0,0 +1,194 @@
+package hospitalcore;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * BootstrapImage objects look after the precomputed binary image of a setup file.<p>
+ * The image holds the records of the setup file already split into fields, so that
+ * a hospital can be set up without scanning text. It is kept next to the setup file,
+ * with the name of the setup file followed by ".img", and is used only while the
+ * SHA-256 digest of the setup file's contents it records still matches, so an edit
+ * that keeps the length and modification time, or a copy that changes the time, is
+ * still noticed. Otherwise the setup file is read as text and the image is written
+ * afresh.
+ */
+class BootstrapImage
+{
+    //attributes
+
+    /**
+     * the first four bytes of every image, "HSBI"
+     */
+    private static final int MAGIC = 0x48534249;
+
+    /**
+     * the version of the image format
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * the setup file
+     */
+    private final File setupFile;
+
+    /**
+     * the image of the setup file
+     */
+    private final File imageFile;
+
+
+    //constructor
+
+    /**
+     * Initialises a new BootstrapImage object for the named setup file.
+     *
+     * @param aSetupFile the name of the setup file
+     */
+    BootstrapImage(String aSetupFile)
+    {
+        setupFile = new File(aSetupFile);
+        imageFile = new File(aSetupFile + ".img");
+    }
+
+
+    //package protocol
+
+    /**
+     * Returns the records of the setup file, each split into its fields.
+     * The image is used if it is current; otherwise the setup file is read and,
+     * if possible, a new image is written for next time.
+     *
+     * @return a list of records
+     *
+     * @throws IOException if the setup file cannot be read
+     */
+    List<String[]> getRecords() throws IOException
+    {
+        byte[] contents = Files.readAllBytes(setupFile.toPath());
+        byte[] digest = digest(contents);
+        List<String[]> records = readImage(digest);
+        if (records == null)
+        {
+            records = readSetupFile(contents);
+            try
+            {
+                writeImage(records, digest);
+            }
+            catch (IOException anException)
+            {
+                imageFile.delete(); // the image is only an optimisation
+            }
+        }
+        return records;
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns the SHA-256 digest of the contents of the setup file.
+     */
+    private static byte[] digest(byte[] aContents)
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256").digest(aContents);
+        }
+        catch (NoSuchAlgorithmException anException)
+        {
+            throw new IllegalStateException(anException); // every Java platform has SHA-256
+        }
+    }
+
+
+    /**
+     * Returns the records held in the image, or null if there is no image made from
+     * a setup file with the given digest.
+     */
+    private List<String[]> readImage(byte[] aDigest)
+    {
+        if (!imageFile.isFile())
+        {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(imageFile))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                return null;
+            }
+            byte[] digest = new byte[aDigest.length];
+            in.readFully(digest);
+            if (!Arrays.equals(digest, aDigest))
+            {
+                return null;
+            }
+            int count = in.readInt();
+            List<String[]> records = new ArrayList<String[]>(count);
+            for (int i = 0; i < count; i++)
+            {
+                String[] fields = new String[in.readUnsignedByte()];
+                for (int j = 0; j < fields.length; j++)
+                {
+                    fields[j] = in.readUTF();
+                }
+                records.add(fields);
+            }
+            return records;
+        }
+        catch (IOException anException)
+        {
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the records of the setup file, read from its contents as comma separated text.
+     */
+    private List<String[]> readSetupFile(byte[] aContents) throws IOException
+    {
+        List<String[]> records = new ArrayList<String[]>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(aContents))))
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                records.add(line.split(",", -1));
+            }
+        }
+        return records;
+    }
+
+
+    /**
+     * Writes the records to a temporary file which then replaces the image.
+     */
+    private void writeImage(List<String[]> records, byte[] aDigest) throws IOException
+    {
+        File temporary = new File(imageFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(aDigest);
+            out.writeInt(records.size());
+            for (String[] fields : records)
+            {
+                if (fields.length > 255)
+                {
+                    throw new IOException("too many fields in a record");
+                }
+                out.writeByte(fields.length);
+                for (String field : fields)
+                {
+                    out.writeUTF(field);
+                }
+            }
+        }
+        Files.move(temporary.toPath(), imageFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,251 @@
+package hospitalcore;
+
+import m256people.*;
+
+/**
+ * Cohort objects describe a set of admitted patients by the wards they are on, the teams
+ * that care for them, the doctors that have treated them and their sex, combined by
+ * intersection, union and difference. A cohort is only a description: the hospital
+ * finds its patients, from its current state, when asked with getPatients(Cohort) or
+ * countPatients(Cohort).<p>
+ * For example, the female patients on ward A cared for by team X, other than those
+ * treated by doctor D, are
+ * <pre>
+ *     Cohort.onWard(a).and(Cohort.caredForBy(x)).and(Cohort.ofSex(Sex.F))
+ *             .andNot(Cohort.treatedBy(d))
+ * </pre>
+ */
+public abstract class Cohort
+{
+    //attributes
+
+    /**
+     * a description of the cohort
+     */
+    private final String description;
+
+
+    //constructor
+
+    /**
+     * Initialises a new Cohort object with the given description.
+     */
+    private Cohort(String aDescription)
+    {
+        description = aDescription;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the cohort of all admitted patients.
+     *
+     * @return a Cohort object
+     */
+    public static Cohort all()
+    {
+        return new Cohort("all")
+        {
+            RoaringBitmap evaluate(PatientBitmapIndex anIndex)
+            {
+                return anIndex.all();
+            }
+        };
+    }
+
+
+    /**
+     * Returns the cohort of the patients on the ward.
+     *
+     * @param aWard a ward
+     *
+     * @return a Cohort object
+     *
+     * @throws IllegalArgumentException if aWard is null
+     */
+    public static Cohort onWard(final Ward aWard)
+    {
+        check(aWard);
+        return new Cohort("on ward " + aWard.getName())
+        {
+            RoaringBitmap evaluate(PatientBitmapIndex anIndex)
+            {
+                return anIndex.onWard(aWard);
+            }
+        };
+    }
+
+
+    /**
+     * Returns the cohort of the patients cared for by the team.
+     *
+     * @param aTeam a team
+     *
+     * @return a Cohort object
+     *
+     * @throws IllegalArgumentException if aTeam is null
+     */
+    public static Cohort caredForBy(final Team aTeam)
+    {
+        check(aTeam);
+        return new Cohort("cared for by team " + aTeam.getCode())
+        {
+            RoaringBitmap evaluate(PatientBitmapIndex anIndex)
+            {
+                return anIndex.caredForBy(aTeam);
+            }
+        };
+    }
+
+
+    /**
+     * Returns the cohort of the patients treated by the doctor.
+     *
+     * @param aDoctor a doctor
+     *
+     * @return a Cohort object
+     *
+     * @throws IllegalArgumentException if aDoctor is null
+     */
+    public static Cohort treatedBy(final Doctor aDoctor)
+    {
+        check(aDoctor);
+        return new Cohort("treated by " + aDoctor.getName())
+        {
+            RoaringBitmap evaluate(PatientBitmapIndex anIndex)
+            {
+                return anIndex.treatedBy(aDoctor);
+            }
+        };
+    }
+
+
+    /**
+     * Returns the cohort of the patients of the sex.
+     *
+     * @param aSex a sex
+     *
+     * @return a Cohort object
+     *
+     * @throws IllegalArgumentException if aSex is null
+     */
+    public static Cohort ofSex(final Sex aSex)
+    {
+        check(aSex);
+        return new Cohort("of sex " + aSex)
+        {
+            RoaringBitmap evaluate(PatientBitmapIndex anIndex)
+            {
+                return anIndex.ofSex(aSex);
+            }
+        };
+    }
+
+
+    /**
+     * Returns the cohort of the patients in both this cohort and aCohort.
+     *
+     * @param aCohort a cohort
+     *
+     * @return a Cohort object
+     *
+     * @throws IllegalArgumentException if aCohort is null
+     */
+    public Cohort and(final Cohort aCohort)
+    {
+        check(aCohort);
+        final Cohort left = this;
+        return new Cohort("(" + this + " and " + aCohort + ")")
+        {
+            RoaringBitmap evaluate(PatientBitmapIndex anIndex)
+            {
+                return left.evaluate(anIndex).and(aCohort.evaluate(anIndex));
+            }
+        };
+    }
+
+
+    /**
+     * Returns the cohort of the patients in either this cohort or aCohort.
+     *
+     * @param aCohort a cohort
+     *
+     * @return a Cohort object
+     *
+     * @throws IllegalArgumentException if aCohort is null
+     */
+    public Cohort or(final Cohort aCohort)
+    {
+        check(aCohort);
+        final Cohort left = this;
+        return new Cohort("(" + this + " or " + aCohort + ")")
+        {
+            RoaringBitmap evaluate(PatientBitmapIndex anIndex)
+            {
+                return left.evaluate(anIndex).or(aCohort.evaluate(anIndex));
+            }
+        };
+    }
+
+
+    /**
+     * Returns the cohort of the patients in this cohort but not in aCohort.
+     *
+     * @param aCohort a cohort
+     *
+     * @return a Cohort object
+     *
+     * @throws IllegalArgumentException if aCohort is null
+     */
+    public Cohort andNot(final Cohort aCohort)
+    {
+        check(aCohort);
+        final Cohort left = this;
+        return new Cohort("(" + this + " but not " + aCohort + ")")
+        {
+            RoaringBitmap evaluate(PatientBitmapIndex anIndex)
+            {
+                return left.evaluate(anIndex).andNot(aCohort.evaluate(anIndex));
+            }
+        };
+    }
+
+
+    /**
+     * Returns a description of the cohort.
+     *
+     * @return a String object describing the receiver
+     */
+    public String toString()
+    {
+        return description;
+    }
+
+
+    //package protocol
+
+    /**
+     * Returns the slots in anIndex of the patients in this cohort. The result may be one
+     * of the index's own sets, and must not be changed.
+     *
+     * @param anIndex the index of a hospital's admitted patients
+     *
+     * @return a RoaringBitmap object
+     */
+    abstract RoaringBitmap evaluate(PatientBitmapIndex anIndex);
+
+
+    //private protocol
+
+    /**
+     * Refuses a null argument.
+     */
+    private static void check(Object anObject)
+    {
+        if (anObject == null)
+        {
+            throw new IllegalArgumentException("null argument");
+        }
+    }
+}
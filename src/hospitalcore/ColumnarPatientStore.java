@@ -0,0 +1,486 @@
+package hospitalcore;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import m256people.*;
+
+/**
+ * ColumnarPatientStore objects hold the attributes and links of admitted patients
+ * in columns outside the Java heap, one row per patient.<p>
+ * Each name is stored as an int code into an on-heap table of the distinct names in
+ * use, the date of birth as its epoch day, the ward and the team as their ids in the
+ * hospital's registry, and the sex as a byte, so that a patient costs 17 bytes of
+ * off-heap storage and the Patient object itself is only a handle holding its row
+ * number. A name is dropped from the table once no row holds it.<p>
+ * The rows of admitted patients may be read without holding the hospital's lock, by
+ * the readers of a snapshot. The columns are therefore replaced as a whole when they
+ * grow, and a row given up by a discharge is not reused, nor its name dropped, until
+ * the hospital reclaims it at a time when no snapshot is in use.
+ */
+class ColumnarPatientStore implements java.io.Serializable
+{
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = -7951302392613956292L;
+
+    /**
+     * the code stored for a missing value
+     */
+    private static final int NONE = -1;
+
+    /**
+     * the epoch day stored for a missing date of birth
+     */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    /**
+     * the number of rows ever used; rows at and above this are unused
+     */
+    private int high;
+
+    /**
+     * the columns, replaced as a whole when they grow
+     */
+    private transient volatile Columns columns;
+
+
+    //links
+
+    /**
+     * the distinct names held in rows
+     */
+    private transient ValueTable<Name> names;
+
+    /**
+     * the registry of the wards and teams of the hospital
+     */
+    private EntityRegistry registry;
+
+    /**
+     * the rows that may be reused, oldest first
+     */
+    private transient ArrayDeque<Integer> freeRows;
+
+    /**
+     * the rows given up by discharges that may still be read through a snapshot
+     */
+    private transient ArrayDeque<Integer> retiredRows;
+
+
+    //constructor
+
+    /**
+     * Initialises a new, empty ColumnarPatientStore object with room for aCapacity
+     * patients before it needs to grow.
+     *
+     * @param aRegistry the registry of the hospital's wards and teams
+     * @param aCapacity the initial number of rows
+     */
+    ColumnarPatientStore(EntityRegistry aRegistry, int aCapacity)
+    {
+        registry = aRegistry;
+        names = new ValueTable<Name>();
+        freeRows = new ArrayDeque<Integer>();
+        retiredRows = new ArrayDeque<Integer>();
+        columns = new Columns(Math.max(16, aCapacity));
+    }
+
+
+    //package protocol
+
+    /**
+     * Adds a row for a patient with the given attribute values and no links.
+     *
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     *
+     * @return the row number
+     */
+    int add(Name aName, Sex aSex, CompactDate aDate)
+    {
+        int row;
+        if (!freeRows.isEmpty())
+        {
+            row = freeRows.pollFirst().intValue();
+        }
+        else
+        {
+            if (high == columns.capacity)
+            {
+                grow();
+            }
+            row = high++;
+        }
+        Columns theColumns = columns;
+        theColumns.names.putInt(row * 4, names.acquire(aName));
+        theColumns.sexes.put(row, (aSex == null) ? (byte) NONE : (byte) aSex.ordinal());
+        theColumns.dates.putInt(row * 4, (aDate == null) ? NO_DATE : aDate.toEpochDay());
+        theColumns.wardCodes.putInt(row * 4, NONE);
+        theColumns.teamCodes.putInt(row * 4, NONE);
+        return row;
+    }
+
+
+    /**
+     * Gives up the row of a discharged patient. Its name, sex and date of birth can
+     * still be read, but it is not reused until reclaimRows is invoked.
+     *
+     * @param aRow a row number
+     */
+    void free(int aRow)
+    {
+        Columns theColumns = columns;
+        theColumns.wardCodes.putInt(aRow * 4, NONE);
+        theColumns.teamCodes.putInt(aRow * 4, NONE);
+        retiredRows.addLast(Integer.valueOf(aRow));
+    }
+
+
+    /**
+     * Makes the rows given up since this was last invoked available for reuse, and
+     * drops the names no other row holds. This must be invoked only when no reader
+     * can still hold a patient whose row was given up.
+     */
+    void reclaimRows()
+    {
+        Columns theColumns = columns;
+        while (!retiredRows.isEmpty())
+        {
+            Integer row = retiredRows.pollFirst();
+            names.release(theColumns.names.getInt(row.intValue() * 4));
+            theColumns.names.putInt(row.intValue() * 4, NONE);
+            freeRows.addLast(row);
+        }
+    }
+
+
+    /**
+     * Returns the name held in the row.
+     *
+     * @param aRow a row number
+     *
+     * @return a Name object, shared by the rows holding an equal name
+     */
+    Name getName(int aRow)
+    {
+        return names.get(columns.names.getInt(aRow * 4));
+    }
+
+
+    /**
+     * Returns the sex held in the row.
+     *
+     * @param aRow a row number
+     *
+     * @return a Sex constant, or null
+     */
+    Sex getSex(int aRow)
+    {
+        byte code = columns.sexes.get(aRow);
+        return (code == NONE) ? null : Sex.values()[code];
+    }
+
+
+    /**
+     * Returns the date of birth held in the row.
+     *
+     * @param aRow a row number
+     *
+     * @return a CompactDate object, or null
+     */
+    CompactDate getBirthDate(int aRow)
+    {
+        int day = columns.dates.getInt(aRow * 4);
+        return (day == NO_DATE) ? null : CompactDate.ofEpochDay(day);
+    }
+
+
+    /**
+     * Returns the age of the patient in the row, without creating any objects.
+     *
+     * @param aRow a row number
+     *
+     * @return the age in years
+     */
+    int getAge(int aRow)
+    {
+        int day = columns.dates.getInt(aRow * 4);
+        if (day == NO_DATE)
+        {
+            throw new IllegalStateException("no date of birth in row " + aRow);
+        }
+        return CompactDate.ageOf(day);
+    }
+
+
+    /**
+     * Returns the ward held in the row.
+     *
+     * @param aRow a row number
+     *
+     * @return a Ward object, or null
+     */
+    Ward getWard(int aRow)
+    {
+        return registry.getWard(columns.wardCodes.getInt(aRow * 4));
+    }
+
+
+    /**
+     * Sets the ward held in the row.
+     *
+     * @param aRow a row number
+     * @param aWard a ward, or null
+     */
+    void setWard(int aRow, Ward aWard)
+    {
+        columns.wardCodes.putInt(aRow * 4, (aWard == null) ? NONE : aWard.getId());
+    }
+
+
+    /**
+     * Returns the team held in the row.
+     *
+     * @param aRow a row number
+     *
+     * @return a Team object, or null
+     */
+    Team getTeam(int aRow)
+    {
+        return registry.getTeam(columns.teamCodes.getInt(aRow * 4));
+    }
+
+
+    /**
+     * Sets the team held in the row.
+     *
+     * @param aRow a row number
+     * @param aTeam a team, or null
+     */
+    void setTeam(int aRow, Team aTeam)
+    {
+        columns.teamCodes.putInt(aRow * 4, (aTeam == null) ? NONE : aTeam.getId());
+    }
+
+
+    /**
+     * Returns the number of bytes of off-heap storage held by the columns.
+     *
+     * @return the total capacity of the columns in bytes
+     */
+    long getOffHeapBytes()
+    {
+        return (long) columns.capacity * 17;
+    }
+
+
+    //private protocol
+
+    /**
+     * Doubles the room in the columns. The rows in use are copied into new columns
+     * before these replace the old ones, so a reader never sees an empty row.
+     */
+    private void grow()
+    {
+        Columns old = columns;
+        Columns grown = new Columns(old.capacity * 2);
+        grown.copy(old);
+        columns = grown;
+    }
+
+
+    /**
+     * Saves the rows after the other fields. The name of a row not in use is saved as
+     * null, so that the row is free once read back.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        out.defaultWriteObject();
+        Columns theColumns = columns;
+        for (int row = 0; row < high; row++)
+        {
+            int ward = theColumns.wardCodes.getInt(row * 4);
+            out.writeObject((ward == NONE) ? null : names.get(theColumns.names.getInt(row * 4)));
+            out.writeInt(theColumns.dates.getInt(row * 4));
+            out.writeInt(ward);
+            out.writeInt(theColumns.teamCodes.getInt(row * 4));
+            out.writeByte(theColumns.sexes.get(row));
+        }
+    }
+
+
+    /**
+     * Reads the rows back into newly allocated columns; the rows of no patient are
+     * free. A store saved before names were held whole kept the parts of each name as
+     * codes into a table of strings, from which the names are rebuilt.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        ObjectInputStream.GetField fields = in.readFields();
+        high = fields.get("high", 0);
+        Table<String> strings = null;
+        if (fields.getObjectStreamClass().getField("strings") != null)
+        {
+            @SuppressWarnings("unchecked")
+            Table<String> theStrings = (Table<String>) fields.get("strings", null);
+            strings = theStrings;
+        }
+        registry = (EntityRegistry) fields.get("registry", null);
+        names = new ValueTable<Name>();
+        freeRows = new ArrayDeque<Integer>();
+        retiredRows = new ArrayDeque<Integer>();
+        Columns theColumns = new Columns(Math.max(16, high));
+        for (int row = 0; row < high; row++)
+        {
+            Name name;
+            if (strings != null)
+            {
+                name = new Name(strings.get(in.readInt()), strings.get(in.readInt()), strings.get(in.readInt()));
+            }
+            else
+            {
+                name = (Name) in.readObject();
+            }
+            theColumns.dates.putInt(row * 4, in.readInt());
+            int ward = in.readInt();
+            theColumns.wardCodes.putInt(row * 4, ward);
+            theColumns.teamCodes.putInt(row * 4, in.readInt());
+            theColumns.sexes.put(row, in.readByte());
+            if (ward == NONE)
+            {
+                theColumns.names.putInt(row * 4, NONE);
+                freeRows.addLast(Integer.valueOf(row));
+            }
+            else
+            {
+                theColumns.names.putInt(row * 4, names.acquire(name));
+            }
+        }
+        columns = theColumns;
+    }
+
+
+    /**
+     * The columns of a store, each with room for the same number of rows.
+     */
+    private static class Columns
+    {
+        final int capacity;
+        final ByteBuffer names;
+        final ByteBuffer dates;
+        final ByteBuffer wardCodes;
+        final ByteBuffer teamCodes;
+        final ByteBuffer sexes;
+
+        Columns(int aCapacity)
+        {
+            capacity = aCapacity;
+            names = ByteBuffer.allocateDirect(aCapacity * 4);
+            dates = ByteBuffer.allocateDirect(aCapacity * 4);
+            wardCodes = ByteBuffer.allocateDirect(aCapacity * 4);
+            teamCodes = ByteBuffer.allocateDirect(aCapacity * 4);
+            sexes = ByteBuffer.allocateDirect(aCapacity);
+        }
+
+        void copy(Columns aSource)
+        {
+            copy(aSource.names, names);
+            copy(aSource.dates, dates);
+            copy(aSource.wardCodes, wardCodes);
+            copy(aSource.teamCodes, teamCodes);
+            copy(aSource.sexes, sexes);
+        }
+
+        private static void copy(ByteBuffer aSource, ByteBuffer aTarget)
+        {
+            ByteBuffer source = aSource.duplicate();
+            source.clear();
+            ByteBuffer target = aTarget.duplicate();
+            target.put(source);
+        }
+    }
+
+
+    /**
+     * A table of distinct values in use, each identified by an int code and counted
+     * by the rows holding it. A value no row holds is dropped and its code reused.
+     * The array of values is replaced as a whole when it grows, so that a value can
+     * be looked up without holding the hospital's lock.
+     */
+    private static class ValueTable<T>
+    {
+        private volatile Object[] values = new Object[16];
+        private int[] counts = new int[16];
+        private int size;
+        private final Map<T, Integer> codes = new HashMap<T, Integer>();
+        private final ArrayDeque<Integer> freeCodes = new ArrayDeque<Integer>();
+
+        int acquire(T aValue)
+        {
+            if (aValue == null)
+            {
+                return NONE;
+            }
+            Integer code = codes.get(aValue);
+            if (code == null)
+            {
+                if (!freeCodes.isEmpty())
+                {
+                    code = freeCodes.pollFirst();
+                }
+                else
+                {
+                    if (size == counts.length)
+                    {
+                        counts = Arrays.copyOf(counts, size * 2);
+                        values = Arrays.copyOf(values, size * 2);
+                    }
+                    code = Integer.valueOf(size++);
+                }
+                values[code.intValue()] = aValue;
+                codes.put(aValue, code);
+            }
+            counts[code.intValue()]++;
+            return code.intValue();
+        }
+
+        void release(int aCode)
+        {
+            if (aCode != NONE && --counts[aCode] == 0)
+            {
+                codes.remove(values[aCode]);
+                values[aCode] = null;
+                freeCodes.addLast(Integer.valueOf(aCode));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int aCode)
+        {
+            return (aCode == NONE) ? null : (T) values[aCode];
+        }
+    }
+
+
+    /**
+     * The table of distinct strings in which a store saved before names were held
+     * whole kept the parts of each name; it is only read, to convert such a store.
+     */
+    private static class Table<T> implements java.io.Serializable
+    {
+        private static final long serialVersionUID = 8919921502557093660L;
+
+        private final List<T> values = new ArrayList<T>();
+        private final Map<T, Integer> codes = new HashMap<T, Integer>();
+
+        T get(int aCode)
+        {
+            return (aCode == NONE) ? null : values.get(aCode);
+        }
+    }
+}
@@ -7,6 +7,15 @@ import m256people.*;
  */
 public class ConsultantDoctor extends Doctor
 {
+    //attributes
+
+    /**
+     * the version of the serialized form, kept at that of the first release so that
+     * the data files it wrote can still be read
+     */
+    private static final long serialVersionUID = -6756337673586869006L;
+
+
     //constructor
     
     /**
@@ -0,0 +1,20 @@
+package hospitalcore;
+
+/**
+ * A Criterion decides whether an object of the hospital meets some condition,
+ * judged against the state of the hospital held in a snapshot.
+ *
+ * @param <T> the type of object judged
+ */
+public interface Criterion<T>
+{
+    /**
+     * Returns true if the object meets this criterion, false otherwise.
+     *
+     * @param anObject the object to be judged
+     * @param aSnapshot the state of the hospital the object is judged against
+     *
+     * @return true if anObject meets the criterion, false otherwise
+     */
+    boolean matches(T anObject, HospitalSnapshot aSnapshot);
+}
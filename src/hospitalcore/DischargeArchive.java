@@ -0,0 +1,327 @@
+package hospitalcore;
+
+import java.io.*;
+import java.util.*;
+import m256people.*;
+
+/**
+ * DischargeArchive objects keep the records of discharged patients on disk.<p>
+ * Records are appended to numbered segment files in a directory; a new segment
+ * is started once the current one reaches a size limit, and on every opening of
+ * the archive. Only the location of each record is held in memory, indexed by
+ * the patient's name. Records are read back on demand and the most recently used
+ * are kept in a bounded cache.
+ */
+public class DischargeArchive
+{
+    //attributes
+
+    /**
+     * the size in bytes beyond which a new segment is started
+     */
+    private static final long SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * the number of records kept in the cache
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * the directory holding the segments
+     */
+    private final File directory;
+
+    /**
+     * the number of the segment being written to
+     */
+    private int activeSegment;
+
+    /**
+     * the number of bytes written to the active segment
+     */
+    private long activeLength;
+
+    /**
+     * the number of records in the archive
+     */
+    private int size;
+
+
+    //links
+
+    /**
+     * the locations of the records of each patient, oldest first; a location holds
+     * the segment number in its high 32 bits and the offset in its low 32 bits
+     */
+    private final Map<Name, List<Long>> index;
+
+    /**
+     * the most recently read records, keyed by location
+     */
+    private final Map<Long, DischargeRecord> cache;
+
+    /**
+     * the stream writing to the active segment
+     */
+    private DataOutputStream out;
+
+
+    //constructor
+
+    /**
+     * Initialises a new DischargeArchive object over the segments in aDirectory,
+     * creating the directory if necessary, and indexes the records already there.
+     *
+     * @param aDirectory the directory holding the segments
+     *
+     * @throws IOException if the directory cannot be read or written
+     */
+    public DischargeArchive(File aDirectory) throws IOException
+    {
+        directory = aDirectory;
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("cannot create " + directory);
+        }
+        index = new HashMap<Name, List<Long>>();
+        cache = new LinkedHashMap<Long, DischargeRecord>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry<Long, DischargeRecord> eldest)
+            {
+                return size() > CACHE_SIZE;
+            }
+        };
+        int segment = 0;
+        while (segmentFile(segment).exists())
+        {
+            scan(segment);
+            segment++;
+        }
+        activeSegment = segment;
+        activeLength = 0;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the records of every discharge of a patient with the given name, oldest first.
+     *
+     * @param aName a name
+     *
+     * @return a list of DischargeRecord objects, empty if there are none
+     *
+     * @throws IOException if a record cannot be read
+     */
+    public synchronized List<DischargeRecord> getRecords(Name aName) throws IOException
+    {
+        List<Long> locations = index.get(aName);
+        if (locations == null)
+        {
+            return Collections.emptyList();
+        }
+        List<DischargeRecord> results = new ArrayList<DischargeRecord>();
+        for (Long aLocation : locations)
+        {
+            DischargeRecord aRecord = cache.get(aLocation);
+            if (aRecord == null)
+            {
+                aRecord = read(aLocation.longValue());
+                cache.put(aLocation, aRecord);
+            }
+            results.add(aRecord);
+        }
+        return results;
+    }
+
+
+    /**
+     * Returns the number of records in the archive.
+     *
+     * @return size
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * Closes the segment being written to.
+     *
+     * @throws IOException if the segment cannot be closed
+     */
+    public synchronized void close() throws IOException
+    {
+        if (out != null)
+        {
+            out.close();
+            out = null;
+            activeSegment++;
+            activeLength = 0;
+        }
+    }
+
+
+    //package protocol
+
+    /**
+     * Appends the record to the archive.
+     *
+     * @param aRecord a discharge record
+     *
+     * @throws IOException if the record cannot be written
+     */
+    synchronized void add(DischargeRecord aRecord) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(aRecord);
+        oos.close();
+
+        if (out == null || activeLength >= SEGMENT_SIZE)
+        {
+            close();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segmentFile(activeSegment))));
+        }
+        long location = ((long) activeSegment << 32) | activeLength;
+        Name aName = aRecord.getName();
+        out.writeUTF(aName.getTitle());
+        out.writeUTF(aName.getFirstName());
+        out.writeUTF(aName.getSurname());
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+        out.flush();
+        activeLength = out.size();
+
+        addToIndex(aName, location);
+        cache.put(Long.valueOf(location), aRecord);
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns the file holding the segment with the given number.
+     */
+    private File segmentFile(int aSegment)
+    {
+        return new File(directory, String.format("segment-%05d.dat", aSegment));
+    }
+
+
+    /**
+     * Adds the location of every complete record in the segment to the index.
+     * A record cut short by a crash ends the scan of its segment.
+     */
+    private void scan(int aSegment) throws IOException
+    {
+        File aFile = segmentFile(aSegment);
+        long length = aFile.length();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(aFile)));
+        try
+        {
+            long offset = 0;
+            while (offset < length)
+            {
+                Name aName = new Name(in.readUTF(), in.readUTF(), in.readUTF());
+                int payloadLength = in.readInt();
+                long next = offset + 3 * 2 + utfLength(aName) + 4 + payloadLength;
+                if (next > length)
+                {
+                    break;
+                }
+                in.skipBytes(payloadLength);
+                addToIndex(aName, ((long) aSegment << 32) | offset);
+                offset = next;
+            }
+        }
+        catch (EOFException ex)
+        {
+            System.out.println("Discharge archive segment " + aSegment + " is truncated.");
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+
+    /**
+     * Reads the record at the given location.
+     */
+    private DischargeRecord read(long aLocation) throws IOException
+    {
+        RandomAccessFile aFile = new RandomAccessFile(segmentFile((int) (aLocation >>> 32)), "r");
+        try
+        {
+            aFile.seek(aLocation & 0xFFFFFFFFL);
+            aFile.readUTF();
+            aFile.readUTF();
+            aFile.readUTF();
+            byte[] payload = new byte[aFile.readInt()];
+            aFile.readFully(payload);
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(payload));
+            return (DischargeRecord) ois.readObject();
+        }
+        catch (ClassNotFoundException ex)
+        {
+            throw new IOException("incompatible discharge record", ex);
+        }
+        finally
+        {
+            aFile.close();
+        }
+    }
+
+
+    /**
+     * Records that a record for aName is at aLocation.
+     */
+    private void addToIndex(Name aName, long aLocation)
+    {
+        List<Long> locations = index.get(aName);
+        if (locations == null)
+        {
+            locations = new ArrayList<Long>(1);
+            index.put(aName, locations);
+        }
+        locations.add(Long.valueOf(aLocation));
+        size++;
+    }
+
+
+    /**
+     * Returns the number of bytes the parts of aName take in modified UTF-8.
+     */
+    private static int utfLength(Name aName)
+    {
+        return utfLength(aName.getTitle()) + utfLength(aName.getFirstName()) + utfLength(aName.getSurname());
+    }
+
+
+    /**
+     * Returns the number of bytes aString takes in modified UTF-8, excluding the length prefix.
+     */
+    private static int utfLength(String aString)
+    {
+        int length = 0;
+        for (int i = 0; i < aString.length(); i++)
+        {
+            char c = aString.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F)
+            {
+                length++;
+            }
+            else if (c > 0x07FF)
+            {
+                length += 3;
+            }
+            else
+            {
+                length += 2;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,35 @@
+package hospitalcore;
+
+import jdk.jfr.*;
+
+/**
+ * DischargeEvent objects are JDK Flight Recorder events recording the discharge of a
+ * patient, including the time taken to add it to the discharge archive.
+ */
+@Name("hospitalcore.Discharge")
+@Label("Discharge")
+@Category("Hospital")
+@Description("Archiving a patient and removing all links with it")
+class DischargeEvent extends Event
+{
+    //attributes
+
+    /**
+     * the type of these events, so that a discharge can ask whether any recording wants
+     * one before creating it
+     */
+    static final EventType TYPE = EventType.getEventType(DischargeEvent.class);
+
+    @Label("Patient Id")
+    int patientId;
+
+    @Label("Ward")
+    String ward;
+
+    @Label("Team")
+    String team;
+
+    @Label("Archived")
+    @Description("Whether the patient was added to the discharge archive")
+    boolean archived;
+}
@@ -0,0 +1,159 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+import m256date.*;
+
+/**
+ * DischargeRecord objects record the discharge of a patient: who the patient
+ * was, the ward they were on, the team that cared for them and the doctors that
+ * treated them.
+ */
+public class DischargeRecord implements java.io.Serializable
+{
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = -1765070004931564659L;
+
+    /**
+     * the person who was a patient
+     */
+    private final Person person;
+
+    /**
+     * the name of the ward the patient was on
+     */
+    private final String wardName;
+
+    /**
+     * the code of the team that cared for the patient
+     */
+    private final String teamCode;
+
+    /**
+     * the names of the doctors that treated the patient
+     */
+    private final List<Name> doctorNames;
+
+    /**
+     * the time of discharge, in milliseconds since the epoch
+     */
+    private final long dischargeTime;
+
+
+    //constructor
+
+    /**
+     * Initialises a new DischargeRecord object for the patient, who must still be
+     * linked to their ward and team.
+     *
+     * @param aPatient a patient about to be discharged
+     * @param aTime the time of discharge
+     */
+    DischargeRecord(Patient aPatient, long aTime)
+    {
+        person = new Person(aPatient.getName(), aPatient.getSex(), aPatient.getBirthDate());
+        wardName = aPatient.getWard().getName();
+        teamCode = aPatient.getTeam().getCode();
+        List<Name> names = new ArrayList<Name>();
+        for (Doctor aDoctor : aPatient.getDoctors())
+        {
+            names.add(aDoctor.getName());
+        }
+        doctorNames = Collections.unmodifiableList(names);
+        dischargeTime = aTime;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the name of the patient.
+     *
+     * @return name
+     */
+    public Name getName()
+    {
+        return person.getName();
+    }
+
+
+    /**
+     * Returns the sex of the patient.
+     *
+     * @return sex
+     */
+    public Sex getSex()
+    {
+        return person.getSex();
+    }
+
+
+    /**
+     * Returns the date of birth of the patient.
+     *
+     * @return dateOfBirth
+     */
+    public M256Date getDateOfBirth()
+    {
+        return person.getDateOfBirth();
+    }
+
+
+    /**
+     * Returns the name of the ward the patient was on.
+     *
+     * @return wardName
+     */
+    public String getWardName()
+    {
+        return wardName;
+    }
+
+
+    /**
+     * Returns the code of the team that cared for the patient.
+     *
+     * @return teamCode
+     */
+    public String getTeamCode()
+    {
+        return teamCode;
+    }
+
+
+    /**
+     * Returns the names of the doctors that treated the patient.
+     *
+     * @return an unmodifiable list of doctorNames
+     */
+    public List<Name> getDoctorNames()
+    {
+        return doctorNames;
+    }
+
+
+    /**
+     * Returns the time the patient was discharged.
+     *
+     * @return dischargeTime, in milliseconds since the epoch
+     */
+    public long getDischargeTime()
+    {
+        return dischargeTime;
+    }
+
+
+    /**
+     * Returns a string representation of this record.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return person + ": " + wardName + ": " + teamCode + ": " + doctorNames + ": " + new Date(dischargeTime);
+    }
+}
@@ -8,12 +8,31 @@ import m256people.*;
 public abstract class Doctor implements java.io.Serializable
 {
     //attributes
+
+    /**
+     * the version of the serialized form, kept at that of the first release so that
+     * the data files it wrote can still be read
+     */
+    private static final long serialVersionUID = 8445940850778137727L;
     
     /** 
      * the person who is a doctor
      */    
     private Person person;
     
+    /**
+     * the id of the doctor, unique among the doctors of the hospital; 0 until it is registered
+     */
+    private int id;
+    
+    
+    //links
+    
+    /**
+     * the treatments given by this doctor in the last hour, created on first use
+     */
+    private transient volatile TreatmentCounter treatments;
+    
     
     //constructor
     
@@ -41,6 +60,18 @@ public abstract class Doctor implements java.io.Serializable
     }
     
     
+    /**
+     * Returns the id of this doctor, which stays the same when the hospital is saved and
+     * read back in.
+     *
+     * @return id
+     */
+    public int getId()
+    {
+        return id;
+    }
+    
+    
     /**
      * Returns a string representation of this doctor's name.
      *
@@ -49,5 +80,42 @@ public abstract class Doctor implements java.io.Serializable
     public String toString()
     {
         return person.getName().toString();
-    }    
+    }
+    
+    
+    //package protocol
+    
+    /**
+     * Sets the id of this doctor; invoked only by EntityRegistry.
+     *
+     * @param anId the id
+     */
+    void setId(int anId)
+    {
+        id = anId;
+    }
+    
+    
+    /**
+     * Returns the counter of treatments given by this doctor, creating it if necessary.
+     *
+     * @return the linked TreatmentCounter object
+     */
+    TreatmentCounter getTreatmentCounter()
+    {
+        TreatmentCounter counter = treatments;
+        if (counter == null)
+        {
+            synchronized (this)
+            {
+                counter = treatments;
+                if (counter == null)
+                {
+                    counter = new TreatmentCounter();
+                    treatments = counter;
+                }
+            }
+        }
+        return counter;
+    }
 }
\ No newline at end of file
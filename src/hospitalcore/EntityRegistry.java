@@ -0,0 +1,317 @@
+package hospitalcore;
+
+import java.util.*;
+
+/**
+ * EntityRegistry objects give each ward, team, doctor and patient of a hospital a small
+ * int id, unique among entities of its kind, and find entities by their ids.<p>
+ * Ids start at 1, so 0 is never the id of a registered entity. Ward, team and doctor
+ * ids are dense and are looked up by index. Patient ids are never reused, so ids of
+ * discharged patients stay unused; patients are looked up in an open-addressed hash
+ * table holding only the admitted patients, which grows and shrinks with their number
+ * rather than with the number of patients ever admitted. Ids are saved with the
+ * hospital and are the same after it is read back in.
+ */
+class EntityRegistry implements java.io.Serializable
+{
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = -3383075790386564836L;
+
+    /**
+     * the id to be given to the next patient registered
+     */
+    private int nextPatientId;
+
+
+    //links
+
+    /**
+     * the registered wards, each at the index one less than its id
+     */
+    private final List<Ward> wards;
+
+    /**
+     * the registered teams, each at the index one less than its id
+     */
+    private final List<Team> teams;
+
+    /**
+     * the registered doctors, each at the index one less than its id
+     */
+    private final List<Doctor> doctors;
+
+    /**
+     * the admitted patients, each in the first free slot at or after the slot its id
+     * hashes to, wrapping round; a power of two in length and at most half full.
+     * It is rebuilt from the wards when the hospital is read back in
+     */
+    private transient Patient[] patients;
+
+    /**
+     * the smallest number of slots in the table of patients
+     */
+    private static final int MIN_PATIENT_SLOTS = 64;
+
+    /**
+     * the number of admitted patients in the table of patients
+     */
+    private transient int patientCount;
+
+
+    //constructor
+
+    /**
+     * Initialises a new EntityRegistry object with nothing registered.
+     */
+    EntityRegistry()
+    {
+        nextPatientId = 1;
+        wards = new ArrayList<Ward>();
+        teams = new ArrayList<Team>();
+        doctors = new ArrayList<Doctor>();
+        patients = new Patient[MIN_PATIENT_SLOTS];
+    }
+
+
+    //package protocol
+
+    /**
+     * Gives aWard the next ward id.
+     *
+     * @param aWard a ward not yet registered
+     */
+    void add(Ward aWard)
+    {
+        wards.add(aWard);
+        aWard.setId(wards.size());
+    }
+
+
+    /**
+     * Gives aTeam the next team id.
+     *
+     * @param aTeam a team not yet registered
+     */
+    void add(Team aTeam)
+    {
+        teams.add(aTeam);
+        aTeam.setId(teams.size());
+    }
+
+
+    /**
+     * Gives aDoctor the next doctor id.
+     *
+     * @param aDoctor a doctor not yet registered
+     */
+    void add(Doctor aDoctor)
+    {
+        doctors.add(aDoctor);
+        aDoctor.setId(doctors.size());
+    }
+
+
+    /**
+     * Gives aPatient a new patient id.
+     *
+     * @param aPatient a patient being admitted
+     */
+    void add(Patient aPatient)
+    {
+        aPatient.setId(nextPatientId++);
+        insert(aPatient);
+    }
+
+
+    /**
+     * Forgets aPatient, which has been discharged. Its id is not given to another patient.
+     *
+     * @param aPatient a registered patient
+     */
+    void remove(Patient aPatient)
+    {
+        int mask = patients.length - 1;
+        int slot = find(aPatient.getId());
+        if (slot < 0)
+        {
+            return;
+        }
+        patients[slot] = null;
+        patientCount--;
+        // move back any later patient of the same run that can no longer be reached
+        for (int next = (slot + 1) & mask; patients[next] != null; next = (next + 1) & mask)
+        {
+            int home = home(patients[next].getId());
+            if (((next - home) & mask) >= ((next - slot) & mask))
+            {
+                patients[slot] = patients[next];
+                patients[next] = null;
+                slot = next;
+            }
+        }
+        if (patients.length > MIN_PATIENT_SLOTS && patientCount < patients.length / 8)
+        {
+            resize(patients.length / 2);
+        }
+    }
+
+
+    /**
+     * Registers again the patients on aWards, which were registered before the
+     * hospital was saved. Patients saved before they had ids are given new ones.
+     *
+     * @param aWards all the wards of the hospital
+     */
+    void restorePatients(Collection<Ward> aWards)
+    {
+        List<Patient> unnumbered = new ArrayList<Patient>();
+        for (Ward aWard : aWards)
+        {
+            for (Patient aPatient : aWard.getPatients())
+            {
+                if (aPatient.getId() == 0)
+                {
+                    unnumbered.add(aPatient);
+                }
+            }
+        }
+        for (Patient aPatient : unnumbered)
+        {
+            aPatient.setId(nextPatientId++);
+        }
+        patients = new Patient[MIN_PATIENT_SLOTS];
+        patientCount = 0;
+        for (Ward aWard : aWards)
+        {
+            for (Patient aPatient : aWard.getPatients())
+            {
+                insert(aPatient);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the ward with the given id.
+     *
+     * @param anId an id
+     *
+     * @return a Ward object, or null if none has that id
+     */
+    Ward getWard(int anId)
+    {
+        return (anId > 0 && anId <= wards.size()) ? wards.get(anId - 1) : null;
+    }
+
+
+    /**
+     * Returns the team with the given id.
+     *
+     * @param anId an id
+     *
+     * @return a Team object, or null if none has that id
+     */
+    Team getTeam(int anId)
+    {
+        return (anId > 0 && anId <= teams.size()) ? teams.get(anId - 1) : null;
+    }
+
+
+    /**
+     * Returns the doctor with the given id.
+     *
+     * @param anId an id
+     *
+     * @return a Doctor object, or null if none has that id
+     */
+    Doctor getDoctor(int anId)
+    {
+        return (anId > 0 && anId <= doctors.size()) ? doctors.get(anId - 1) : null;
+    }
+
+
+    /**
+     * Returns the admitted patient with the given id.
+     *
+     * @param anId an id
+     *
+     * @return a Patient object, or null if no admitted patient has that id
+     */
+    Patient getPatient(int anId)
+    {
+        int slot = find(anId);
+        return (slot < 0) ? null : patients[slot];
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns the slot of the admitted patient with the id, or -1 if there is none.
+     */
+    private int find(int anId)
+    {
+        int mask = patients.length - 1;
+        for (int slot = home(anId); patients[slot] != null; slot = (slot + 1) & mask)
+        {
+            if (patients[slot].getId() == anId)
+            {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Puts aPatient in the table of patients, first doubling the table if it would be
+     * more than half full.
+     */
+    private void insert(Patient aPatient)
+    {
+        if (2 * (patientCount + 1) > patients.length)
+        {
+            resize(patients.length * 2);
+        }
+        int mask = patients.length - 1;
+        int slot = home(aPatient.getId());
+        while (patients[slot] != null)
+        {
+            slot = (slot + 1) & mask;
+        }
+        patients[slot] = aPatient;
+        patientCount++;
+    }
+
+
+    /**
+     * Moves the admitted patients into a new table with the given number of slots.
+     */
+    private void resize(int aLength)
+    {
+        Patient[] old = patients;
+        patients = new Patient[aLength];
+        patientCount = 0;
+        for (Patient aPatient : old)
+        {
+            if (aPatient != null)
+            {
+                insert(aPatient);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the slot a patient id hashes to. Ids are consecutive, so they are spread
+     * by multiplying by the golden ratio, and the slot is taken from the top bits.
+     */
+    private int home(int anId)
+    {
+        return (anId * 0x9E3779B9) >>> (Integer.numberOfLeadingZeros(patients.length) + 1);
+    }
+}
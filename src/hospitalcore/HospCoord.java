@@ -4,6 +4,8 @@ import java.util.*;
 import m256people.*;
 import m256date.*;
 import java.io.*;
+import java.lang.ref.*;
+import java.util.concurrent.*;
 
 /**
  * The coordinating class for the Hospital core system.
@@ -12,6 +14,12 @@ public class HospCoord implements java.io.Serializable
 {
     //links
 
+    /**
+     * the version of the serialized form, kept at that of the first release so that
+     * the data files it wrote can still be read
+     */
+    private static final long serialVersionUID = -4128085430468298665L;
+
     /**
      * a collection of all Ward objects
      */
@@ -24,17 +32,131 @@ public class HospCoord implements java.io.Serializable
      * the coordinating object
      */
     private static HospCoord hospital = null;
+    /**
+     * the name of the file the state of the hospital is saved to
+     */
+    private static final String DATA_FILE = "Hospital.data";
+    /**
+     * the number of query results kept for reuse unless set otherwise
+     */
+    private static final int DEFAULT_QUERY_CACHE_SIZE = 64;
+    /**
+     * the name of the file the state of this hospital is saved to
+     */
+    private String dataFile;
+    /**
+     * the strategy used to choose the ward for each admission
+     */
+    private BedAllocationStrategy allocationStrategy;
+    /**
+     * whether allocationStrategy has indexed the current wards; strategies do not save
+     * their indexes, so this is false after the hospital is read back in
+     */
+    private transient boolean allocationIndexed;
+    /**
+     * the number of changes made to the hospital since it was created or loaded
+     */
+    private transient long version;
+    /**
+     * the most recent snapshot, reused until the hospital next changes; held weakly so
+     * that it can be collected once no longer in use
+     */
+    private transient WeakReference<HospitalSnapshot> latestSnapshot;
+    /**
+     * the references to the snapshots handed out that may still be in use, created on first use
+     */
+    private transient Set<Reference<? extends HospitalSnapshot>> snapshotReferences;
+    /**
+     * the queue to which the references to collected snapshots are added
+     */
+    private transient ReferenceQueue<HospitalSnapshot> collectedSnapshots;
+    /**
+     * the archive of discharged patients, opened on first use
+     */
+    private transient DischargeArchive dischargeArchive;
+    /**
+     * whether discharges are not to be recorded in the archive
+     */
+    private boolean dischargeArchiveDisabled;
+    /**
+     * the greatest number of discharged Patient objects kept for reuse; 0 if none are
+     */
+    private int patientPoolSize;
+    /**
+     * the discharged Patient objects kept for reuse, created on first use
+     */
+    private transient PatientPool patientPool;
+    /**
+     * the off-heap store holding newly admitted patients, or null if they are held on the heap
+     */
+    private ColumnarPatientStore patientStore;
+    /**
+     * the teams keyed by code, built when the hospital is set up or read back in
+     */
+    private transient Map<String, Team> teamsByCode;
+    /**
+     * the wards keyed by name, built when the hospital is set up or read back in
+     */
+    private transient Map<String, Ward> wardsByName;
+    /**
+     * the doctors keyed by name, built when the hospital is set up or read back in
+     */
+    private transient Map<Name, Doctor> doctorsByName;
+    /**
+     * the auditor of the links between wards, teams, patients and doctors, created on first use
+     */
+    private transient HospitalAuditor auditor;
+    /**
+     * the ids of the wards, teams, doctors and patients
+     */
+    private EntityRegistry registry;
+    /**
+     * the number of query results kept for reuse until what they were computed from changes
+     */
+    private int queryCacheSize;
+    /**
+     * the query results kept for reuse, created on first use
+     */
+    private transient QueryCache queryCache;
+    /**
+     * the history of the number of patients on each ward and cared for by each team
+     */
+    private OccupancyHistory occupancyHistory;
+    /**
+     * the wards indexed by type, attributes and free beds, created on first use
+     */
+    private transient WardAttributeIndex wardIndex;
+    /**
+     * the admitted patients indexed by ward, team, doctor and sex, created on first use
+     */
+    private transient PatientBitmapIndex patientIndex;
 
     //constructor
     /**
-     * Initialises a new HospCoord object with default wards, teams and doctors.
+     * Initialises a new HospCoord object with the wards, teams and doctors
+     * detailed in aSetupFile, to be saved to aDataFile.
      * All the wards will initially be empty .
      */
-    private HospCoord()
+    private HospCoord(String aSetupFile, String aDataFile)
     {
         teams = new HashSet<Team>();
         wards = new HashSet<Ward>();
-        readHospitalDetails("hospital.csv");  // initialise the wards, teams and doctors using the default file.
+        dataFile = aDataFile;
+        allocationStrategy = new MostFreeBedsStrategy();
+        registry = new EntityRegistry();
+        queryCacheSize = DEFAULT_QUERY_CACHE_SIZE;
+        occupancyHistory = new OccupancyHistory();
+        index();
+        readHospitalDetails(aSetupFile);  // initialise the wards, teams and doctors.
+        long now = System.currentTimeMillis();
+        for (Ward aWard : wards)
+        {
+            occupancyHistory.record(aWard, now);
+        }
+        for (Team aTeam : teams)
+        {
+            occupancyHistory.record(aTeam, now);
+        }
     }
 
     // <editor-fold defaultstate="collapsed">
@@ -58,12 +180,19 @@ public class HospCoord implements java.io.Serializable
      *
      * @param aTeam a team
      *
-     * @return a map containing, for each Patient object aPatient linked to aTeam, the key-value pair
-     * (aPatient, aWard) where aWard is linked to aPatient
+     * @return an unmodifiable map containing, for each Patient object aPatient linked to aTeam,
+     * the key-value pair (aPatient, aWard) where aWard is linked to aPatient
      */
-    public Map<Patient, Ward> getPatientsAndWards(Team aTeam)
+    public synchronized Map<Patient, Ward> getPatientsAndWards(Team aTeam)
     {
-        return aTeam.getPatientsAndWards();
+        List<Object> key = Arrays.<Object>asList("getPatientsAndWards", aTeam);
+        Map<Patient, Ward> result = getQueryCache().get(key);
+        if (result == null)
+        {
+            result = Collections.unmodifiableMap(aTeam.getPatientsAndWards());
+            queryCache.put(key, result, Collections.singleton(aTeam));
+        }
+        return result;
     }
 
     /**
@@ -109,11 +238,36 @@ public class HospCoord implements java.io.Serializable
      * @param aPatient a patient
      * @param aDoctor a doctor
      *
-     * @throws IllegalArgumentException if aDoctor and aPatient are not linked to the same Team object
+     * @throws IllegalArgumentException if aPatient is not admitted, or aDoctor and aPatient are not
+     * linked to the same Team object
      */
-    public void recordTreatment(Patient aPatient, Doctor aDoctor)
+    public synchronized void recordTreatment(Patient aPatient, Doctor aDoctor)
     {
+        if (aPatient.getWard() == null)
+        {
+            throw new IllegalArgumentException("patient not admitted");
+        }
+        TreatmentEvent event = null;
+        if (TreatmentEvent.TYPE.isEnabled())
+        {
+            event = new TreatmentEvent();
+            event.begin();
+        }
         aPatient.recordTreatmentBy(aDoctor);
+        if (patientIndex != null)
+        {
+            patientIndex.treated(aPatient, aDoctor);
+        }
+        aPatient.getWard().touch();
+        invalidate(aPatient.getWard(), aPatient.getTeam());
+        version++;
+        if (event != null && event.shouldCommit())
+        {
+            event.patientId = aPatient.getId();
+            event.doctorId = aDoctor.getId();
+            event.team = aPatient.getTeam().getCode();
+            event.commit();
+        }
     }
 
     /**
@@ -126,8 +280,9 @@ public class HospCoord implements java.io.Serializable
      * and age according to aDate and:<p>
      * <ol>
      *   <li>
-     *      aPatient is linked to aWard, where aWard is a Ward object of the appropriate type
-     *      with the greatest number of free beds, and numberOfFreeBeds of aWard is decremented.
+     *      aPatient is linked to aWard, where aWard is the Ward object of the appropriate type
+     *      chosen by the bed allocation strategy (by default the one with the greatest number
+     *      of free beds), and numberOfFreeBeds of aWard is decremented.
      *   </li>
      *   <li>
      *      aPatient is linked to aTeam
@@ -150,29 +305,228 @@ public class HospCoord implements java.io.Serializable
      */
     public Ward admit(Name aName, Sex aSex, M256Date aDate, Team aTeam)
     {
-        Ward theWard = null;
-        int mostBeds = 0;
-        int freeBeds = 0;
-        for (Ward aWard : wards)
+        return admit(aName, aSex, CompactDate.of(aDate), aTeam);
+    }
+
+    /**
+     * Admits a patient as admit(Name, Sex, M256Date, Team) does, taking the date of
+     * birth as a CompactDate so that no M256Date object need be made.
+     *
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     * @param aTeam a team
+     *
+     * @return the Ward object to which the new Patient object is linked
+     *         or null if there is no suitable Ward object
+     */
+    public synchronized Ward admit(Name aName, Sex aSex, CompactDate aDate, Team aTeam)
+    {
+        AdmissionEvent event = null;
+        if (AdmissionEvent.TYPE.isEnabled())
         {
-            if (aWard.getType() == aSex)
+            event = new AdmissionEvent();
+            event.begin();
+        }
+        Ward theWard = getBedAllocationStrategy().selectWard(aSex, aTeam);
+        Patient thePatient = admitTo(theWard, aName, aSex, aDate, aTeam);
+        if (event != null && event.shouldCommit())
+        {
+            if (thePatient != null)
             {
-                freeBeds = aWard.getNumberOfFreeBeds();
-                if (freeBeds > mostBeds)
-                {
-                    mostBeds = freeBeds;
-                    theWard = aWard;
-                }
+                event.patientId = thePatient.getId();
+                event.ward = theWard.getName();
+                event.freeBeds = theWard.getNumberOfFreeBeds();
             }
+            event.team = aTeam.getCode();
+            event.sex = String.valueOf(aSex);
+            event.strategy = allocationStrategy.getClass().getSimpleName();
+            event.wardsExamined = allocationStrategy.getWardsExamined();
+            event.commit();
         }
-        if (theWard != null)
+        return theWard;
+    }
+
+    /**
+     * Admits a patient as admit(Name, Sex, CompactDate, Team) does, but only to a ward
+     * that has every one of the given attributes, such as "paediatric" or "isolation".
+     * Of the wards of the appropriate type with those attributes, the one with the
+     * greatest number of free beds is chosen, whatever the bed allocation strategy.
+     *
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     * @param aTeam a team
+     * @param anAttributeCollection the attributes the ward must have, in any case
+     *
+     * @return the Ward object to which the new Patient object is linked
+     *         or null if there is no suitable Ward object
+     */
+    public synchronized Ward admit(Name aName, Sex aSex, CompactDate aDate, Team aTeam, Collection<String> anAttributeCollection)
+    {
+        AdmissionEvent event = null;
+        if (AdmissionEvent.TYPE.isEnabled())
         {
-            Patient thePatient = new Patient(aName, aSex, aDate);
-            thePatient.admit(theWard, aTeam);
+            event = new AdmissionEvent();
+            event.begin();
+        }
+        Ward theWard = getWardIndex().mostFree(aSex, anAttributeCollection);
+        Patient thePatient = admitTo(theWard, aName, aSex, aDate, aTeam);
+        if (event != null && event.shouldCommit())
+        {
+            if (thePatient != null)
+            {
+                event.patientId = thePatient.getId();
+                event.ward = theWard.getName();
+                event.freeBeds = theWard.getNumberOfFreeBeds();
+            }
+            event.team = aTeam.getCode();
+            event.sex = String.valueOf(aSex);
+            event.attributes = anAttributeCollection.toString();
+            event.wardsExamined = 0; // found from the attribute index
+            event.commit();
         }
         return theWard;
     }
 
+    /**
+     * Returns the wards of the given type that have every one of the given attributes,
+     * whether or not they have free beds.
+     *
+     * @param aSex a ward type, or null for wards of either type
+     * @param anAttributeCollection the attributes, in any case
+     *
+     * @return a list of Ward objects
+     */
+    public synchronized List<Ward> getWards(Sex aSex, Collection<String> anAttributeCollection)
+    {
+        return getWardIndex().matching(aSex, anAttributeCollection);
+    }
+
+    /**
+     * Returns the strategy used to choose the ward for each admission.
+     *
+     * @return the BedAllocationStrategy object in use
+     */
+    public synchronized BedAllocationStrategy getBedAllocationStrategy()
+    {
+        if (!allocationIndexed)
+        {
+            allocationStrategy.initialise(wards);
+            allocationIndexed = true;
+        }
+        return allocationStrategy;
+    }
+
+    /**
+     * Sets the strategy used to choose the ward for each admission.
+     *
+     * @param aStrategy a bed allocation strategy
+     */
+    public synchronized void setBedAllocationStrategy(BedAllocationStrategy aStrategy)
+    {
+        allocationStrategy = aStrategy;
+        allocationIndexed = false;
+    }
+
+    /**
+     * Records the transfer of the patient to another ward of the same type.
+     * The patient keeps its team and the doctors that have treated it.<p>
+     * aPatient is unlinked from its current ward, whose numberOfFreeBeds is incremented,
+     * and linked to aWard, whose numberOfFreeBeds is decremented.
+     *
+     * @param aPatient a patient
+     * @param aWard the ward to move aPatient to
+     *
+     * @throws IllegalArgumentException if aPatient is not admitted, if aWard is not of
+     * the appropriate type or if aWard has no free beds
+     */
+    public synchronized void transfer(Patient aPatient, Ward aWard)
+    {
+        if (aPatient.getWard() == null)
+        {
+            throw new IllegalArgumentException("patient not admitted");
+        }
+        if (aPatient.getWard() == aWard)
+        {
+            return;
+        }
+        if (aWard.getType() != aPatient.getSex())
+        {
+            throw new IllegalArgumentException("ward of wrong type");
+        }
+        if (aWard.getNumberOfFreeBeds() < 1)
+        {
+            throw new IllegalArgumentException("no free beds on ward");
+        }
+        Ward oldWard = aPatient.getWard();
+        aPatient.transferTo(aWard);
+        if (patientIndex != null)
+        {
+            patientIndex.transferred(aPatient, oldWard);
+        }
+        getBedAllocationStrategy().patientRemoved(oldWard, aPatient.getTeam());
+        allocationStrategy.patientAdded(aWard, aPatient.getTeam());
+        invalidate(oldWard, aPatient.getTeam());
+        invalidate(aWard, aPatient.getTeam());
+        recordOccupancy(oldWard, aPatient.getTeam());
+        recordOccupancy(aWard, aPatient.getTeam());
+        version++;
+    }
+
+    /**
+     * Evens out the number of free beds across the wards of the given type.
+     * Patients are transferred one at a time from the ward with the fewest free
+     * beds to the ward with the most, until no two wards of that type differ by
+     * more than one free bed.
+     *
+     * @param aSex the type of ward
+     *
+     * @return the number of patients transferred
+     */
+    public synchronized int rebalance(Sex aSex)
+    {
+        int moves = 0;
+        while (true)
+        {
+            Ward fullest = null;
+            Ward emptiest = null;
+            for (Ward aWard : wards)
+            {
+                if (aWard.getType() == aSex)
+                {
+                    if (fullest == null || aWard.getNumberOfFreeBeds() < fullest.getNumberOfFreeBeds())
+                    {
+                        fullest = aWard;
+                    }
+                    if (emptiest == null || aWard.getNumberOfFreeBeds() > emptiest.getNumberOfFreeBeds())
+                    {
+                        emptiest = aWard;
+                    }
+                }
+            }
+            if (fullest == null || fullest.getPatients().isEmpty()
+                    || emptiest.getNumberOfFreeBeds() - fullest.getNumberOfFreeBeds() <= 1)
+            {
+                return moves;
+            }
+            Patient aPatient = fullest.getPatients().iterator().next();
+            aPatient.transferTo(emptiest);
+            if (patientIndex != null)
+            {
+                patientIndex.transferred(aPatient, fullest);
+            }
+            getBedAllocationStrategy().patientRemoved(fullest, aPatient.getTeam());
+            allocationStrategy.patientAdded(emptiest, aPatient.getTeam());
+            invalidate(fullest, aPatient.getTeam());
+            invalidate(emptiest, aPatient.getTeam());
+            recordOccupancy(fullest, aPatient.getTeam());
+            recordOccupancy(emptiest, aPatient.getTeam());
+            version++;
+            moves++;
+        }
+    }
+
     /**
      * Returns the doctors that the team contains.
      *
@@ -186,186 +540,1170 @@ public class HospCoord implements java.io.Serializable
     }
 
     /**
-     * Records the discharge of the patient.
-     * All links with aPatient are removed.
+     * Returns the team with the given code.
      *
-     * @param aPatient a patient
+     * @param aCode a team code
+     *
+     * @return the Team object with code aCode, or null if there is none
      */
-    public void discharge(Patient aPatient)
+    public Team findTeam(String aCode)
     {
-        aPatient.discharge();
+        return teamsByCode.get(aCode);
     }
 
     /**
-     * Returns all patients in the hospital.
+     * Returns the ward with the given name.
+     *
+     * @param aName a ward name
      *
-     * @return a collection of all the Patient objects
+     * @return the Ward object with name aName, or null if there is none
      */
-    public Collection<Patient> getPatients()
+    public Ward findWard(String aName)
     {
-        Collection<Patient> allPatients = new HashSet<Patient>();
-        for (Ward aWard : wards)
-        {
-            allPatients.addAll(aWard.getPatients());
-        }
-        return allPatients;
+        return wardsByName.get(aName);
     }
 
     /**
-     * Returns all the wards in the hospital.
+     * Returns the doctor with the given name. Doctors' names are not required to be
+     * unique; if several doctors share aName, one of them is returned.
      *
-     * @return an unmodifiable collection of all the Ward objects
+     * @param aName a name
+     *
+     * @return a Doctor object with name aName, or null if there is none
      */
-    public Collection<Ward> getWards()
+    public Doctor findDoctor(Name aName)
     {
-        return Collections.unmodifiableCollection(wards);
+        return doctorsByName.get(aName);
     }
 
     /**
-     * Returns all the teams in the hospital.
+     * Returns the team with the given id.
      *
-     * @return an unmodifiable collection of all the Team objects
+     * @param anId an id
+     *
+     * @return the Team object whose id is anId, or null if there is none
      */
-    public Collection<Team> getTeams()
+    public Team findTeam(int anId)
     {
-        return Collections.unmodifiableCollection(teams);
+        return registry.getTeam(anId);
     }
 
     /**
-     * Returns a string representation of all teams and wards.
+     * Returns the ward with the given id.
      *
-     * @return a String object representing the receiver
+     * @param anId an id
+     *
+     * @return the Ward object whose id is anId, or null if there is none
      */
-    public String toString()
+    public Ward findWard(int anId)
     {
-        return teams.toString() + wards.toString();
+        return registry.getWard(anId);
     }
 
-    // </editor-fold>
-   /**
-     * Creates and returns a new HospCoord object.
-     * Reads in the state of the object from the
-     * file Hospital.data; if there is no such file,
-     * or if it is not compatible, returns the object
-     * in its initial state.
-    *
-     * @return a new HospCoord object
+    /**
+     * Returns the doctor with the given id.
+     *
+     * @param anId an id
+     *
+     * @return the Doctor object whose id is anId, or null if there is none
      */
-    public static HospCoord getHospital()
+    public Doctor findDoctor(int anId)
     {
-        FileInputStream fis = null;
-        if (hospital == null) //if a coordinating object does not already exist
-        {
-            try
-            {
-                fis = new FileInputStream("Hospital.data");
-                ObjectInputStream ois = new ObjectInputStream(fis);
-                hospital = (HospCoord) ois.readObject();
-            }
-            catch (Exception ex)
-            {
-                // let user know that previous data file does not exist or is not compatible
-                System.out.println("Data file does not exist or is incompatible with this version of the software.");
-                System.out.println("Hospital will be initialised to default state");
-                hospital = new HospCoord(); // initialise hospital to default state.
-                hospital.save(); //and save it
-            }
-            finally //as we are not exiting make sure the fis stream is closed.
-            {
-                try
-                {
-                    if (fis != null)
-                    {
-                        fis.close();
-                    }
-                }
-                catch (Exception ex)
-                {
-                    System.out.println("Error closing file.");
-                }
-            }
+        return registry.getDoctor(anId);
+    }
 
-        }
-        return hospital;
+    /**
+     * Returns the admitted patient with the given id. Ids of discharged patients
+     * are not given to later patients.
+     *
+     * @param anId an id
+     *
+     * @return the Patient object whose id is anId, or null if no admitted patient has it
+     */
+    public synchronized Patient findPatient(int anId)
+    {
+        return registry.getPatient(anId);
     }
 
     /**
-     * Saves the state of the receiver
-     * to the file Hospital.data.
+     * Returns the doctors that the team contains, in order of name.
+     *
+     * @param aTeam a team
+     *
+     * @return an unmodifiable list of all the Doctor objects linked to aTeam, sorted by name
      */
-    public void save()
+    public List<Doctor> getDoctorRoster(Team aTeam)
     {
-        try
-        {
-            FileOutputStream fos = new FileOutputStream("Hospital.data");
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(this);
-        }
-        catch (Exception ex)
-        {
-            System.out.println("Problem storing state of hospital");
-            System.exit(1);
-        }
+        return aTeam.getSortedDoctors();
     }
 
-    //private protocol
     /**
-     * Sets up a hospital with teams, doctors, wards and patients detailed in setupFile. This should be invoked
-     * only by the constructor.
+     * Returns the number of treatments the doctor has given in the last aMinutes
+     * minutes, the current minute included. Treatments are counted per minute as
+     * they are recorded, so this neither locks the hospital nor replays anything.
+     *
+     * @param aDoctor a doctor
+     * @param aMinutes the length of the window, from 1 to 60
+     *
+     * @return the number of treatments recorded by aDoctor in the window
+     *
+     * @throws IllegalArgumentException if aMinutes is out of range
      */
-    private void readHospitalDetails(String setupFile)
+    public long getTreatmentCount(Doctor aDoctor, int aMinutes)
     {
-        Scanner fileScanner = null;
-        String lineDetails;
-        String fieldName;
-        String teamName = null;
-        Scanner lineScanner;
-        ConsultantDoctor cd1 = null;
-        Collection<Doctor> doctors = new HashSet<Doctor>();
-        List<Object> patientInfo = new ArrayList<Object>();
-        Team aTeam;
-        try
-        {
-            fileScanner = new Scanner(new BufferedReader(new FileReader(setupFile)));
+        checkWindow(aMinutes);
+        return aDoctor.getTreatmentCounter().count(aMinutes);
+    }
 
-            while (fileScanner.hasNextLine())
-            {
-                lineDetails = fileScanner.nextLine();
-                lineScanner = new Scanner(lineDetails);
-                lineScanner.useDelimiter(",");
-                try
-                {
-                    fieldName = lineScanner.next();
-                    if (fieldName.compareToIgnoreCase("Ward") == 0)
-                    {
-                        wards.add(new Ward(lineScanner.next(), Sex.valueOf(lineScanner.next()), Integer.parseInt(lineScanner.next())));
-                    }
-                    else if (fieldName.compareToIgnoreCase("Team") == 0)
+    /**
+     * Returns the number of treatments the doctors of the team have given in the
+     * last aMinutes minutes, the current minute included.
+     *
+     * @param aTeam a team
+     * @param aMinutes the length of the window, from 1 to 60
+     *
+     * @return the number of treatments recorded by doctors of aTeam in the window
+     *
+     * @throws IllegalArgumentException if aMinutes is out of range
+     */
+    public long getTreatmentCount(Team aTeam, int aMinutes)
+    {
+        checkWindow(aMinutes);
+        return aTeam.getTreatmentCounter().count(aMinutes);
+    }
+
+    /**
+     * Returns the average number of treatments per minute the doctor has given
+     * over the last aMinutes minutes.
+     *
+     * @param aDoctor a doctor
+     * @param aMinutes the length of the window, from 1 to 60
+     *
+     * @return the treatment rate of aDoctor, in treatments per minute
+     *
+     * @throws IllegalArgumentException if aMinutes is out of range
+     */
+    public double getTreatmentRate(Doctor aDoctor, int aMinutes)
+    {
+        return (double) getTreatmentCount(aDoctor, aMinutes) / aMinutes;
+    }
+
+    /**
+     * Returns the average number of treatments per minute the doctors of the team
+     * have given over the last aMinutes minutes.
+     *
+     * @param aTeam a team
+     * @param aMinutes the length of the window, from 1 to 60
+     *
+     * @return the treatment rate of aTeam, in treatments per minute
+     *
+     * @throws IllegalArgumentException if aMinutes is out of range
+     */
+    public double getTreatmentRate(Team aTeam, int aMinutes)
+    {
+        return (double) getTreatmentCount(aTeam, aMinutes) / aMinutes;
+    }
+
+    /**
+     * Returns the number of treatments each doctor of the team has given in the
+     * last aMinutes minutes, busiest doctor first.
+     *
+     * @param aTeam a team
+     * @param aMinutes the length of the window, from 1 to 60
+     *
+     * @return a map containing, for each Doctor object aDoctor linked to aTeam, the
+     * key-value pair (aDoctor, count) where count is the number of treatments by aDoctor
+     *
+     * @throws IllegalArgumentException if aMinutes is out of range
+     */
+    public Map<Doctor, Long> getTreatmentCounts(Team aTeam, int aMinutes)
+    {
+        checkWindow(aMinutes);
+        List<Doctor> busiest = new ArrayList<Doctor>(aTeam.getSortedDoctors());
+        final Map<Doctor, Long> counts = new HashMap<Doctor, Long>();
+        for (Doctor aDoctor : busiest)
+        {
+            counts.put(aDoctor, aDoctor.getTreatmentCounter().count(aMinutes));
+        }
+        Collections.sort(busiest, new Comparator<Doctor>()
+        {
+            public int compare(Doctor aDoctor, Doctor anotherDoctor)
+            {
+                return counts.get(anotherDoctor).compareTo(counts.get(aDoctor));
+            }
+        });
+        Map<Doctor, Long> results = new LinkedHashMap<Doctor, Long>();
+        for (Doctor aDoctor : busiest)
+        {
+            results.put(aDoctor, counts.get(aDoctor));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the number of patients that were on the ward at the given time.
+     *
+     * @param aWard a ward
+     * @param aTime a time in milliseconds since 1 January 1970
+     *
+     * @return the number of patients, or -1 if the history of aWard does not go back that far
+     */
+    public synchronized int getOccupancy(Ward aWard, long aTime)
+    {
+        return occupancyHistory.getSeries(aWard).valueAt(aTime);
+    }
+
+    /**
+     * Returns the number of patients that were cared for by the team at the given time.
+     *
+     * @param aTeam a team
+     * @param aTime a time in milliseconds since 1 January 1970
+     *
+     * @return the number of patients, or -1 if the history of aTeam does not go back that far
+     */
+    public synchronized int getOccupancy(Team aTeam, long aTime)
+    {
+        return occupancyHistory.getSeries(aTeam).valueAt(aTime);
+    }
+
+    /**
+     * Returns the history of the number of patients on the ward from aFrom up to aTo,
+     * divided into aBuckets periods of equal length, as for a chart. The history is
+     * kept for 400 days.
+     *
+     * @param aWard a ward
+     * @param aFrom the start of the history in milliseconds since 1 January 1970
+     * @param aTo the end of the history
+     * @param aBuckets the number of periods
+     *
+     * @return a list of OccupancySummary objects, earliest first
+     *
+     * @throws IllegalArgumentException if aTo is not after aFrom, or aBuckets is less
+     * than 1 or more than the number of milliseconds from aFrom to aTo
+     */
+    public synchronized List<OccupancySummary> getOccupancyHistory(Ward aWard, long aFrom, long aTo, int aBuckets)
+    {
+        return summarise(occupancyHistory.getSeries(aWard), aFrom, aTo, aBuckets);
+    }
+
+    /**
+     * Returns the history of the number of patients cared for by the team from aFrom
+     * up to aTo, divided into aBuckets periods of equal length.
+     *
+     * @param aTeam a team
+     * @param aFrom the start of the history in milliseconds since 1 January 1970
+     * @param aTo the end of the history
+     * @param aBuckets the number of periods
+     *
+     * @return a list of OccupancySummary objects, earliest first
+     *
+     * @throws IllegalArgumentException if aTo is not after aFrom, or aBuckets is less
+     * than 1 or more than the number of milliseconds from aFrom to aTo
+     */
+    public synchronized List<OccupancySummary> getOccupancyHistory(Team aTeam, long aFrom, long aTo, int aBuckets)
+    {
+        return summarise(occupancyHistory.getSeries(aTeam), aFrom, aTo, aBuckets);
+    }
+
+    /**
+     * Returns the history of the number of patients on every ward from aFrom up to aTo,
+     * divided into aBuckets periods of equal length.
+     *
+     * @param aFrom the start of the history in milliseconds since 1 January 1970
+     * @param aTo the end of the history
+     * @param aBuckets the number of periods
+     *
+     * @return a map containing, for each Ward object aWard, the key-value pair
+     * (aWard, history) where history is as returned by getOccupancyHistory(aWard, aFrom, aTo, aBuckets)
+     *
+     * @throws IllegalArgumentException if aTo is not after aFrom, or aBuckets is less
+     * than 1 or more than the number of milliseconds from aFrom to aTo
+     */
+    public synchronized Map<Ward, List<OccupancySummary>> getOccupancyHistory(long aFrom, long aTo, int aBuckets)
+    {
+        Map<Ward, List<OccupancySummary>> results = new LinkedHashMap<Ward, List<OccupancySummary>>();
+        for (Ward aWard : wards)
+        {
+            results.put(aWard, summarise(occupancyHistory.getSeries(aWard), aFrom, aTo, aBuckets));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the patients on the ward, in order of name.
+     * The roster is kept in order as patients are admitted and discharged, so
+     * no sorting is done.
+     *
+     * @param aWard a ward
+     *
+     * @return a list of the Patient objects linked to aWard, sorted by name
+     */
+    public synchronized List<Patient> getRoster(Ward aWard)
+    {
+        return aWard.getRoster().getAll();
+    }
+
+    /**
+     * Returns a page of the patients on the ward: those whose names come after
+     * the given name, in order of name. At most aLimit patients are returned,
+     * except that patients sharing a name are never split across pages, so the
+     * name of the last patient on one page can be passed to get the next.
+     *
+     * @param aWard a ward
+     * @param anAfter the name to start after, or null to start at the beginning
+     * @param aLimit the greatest number of patients wanted
+     *
+     * @return a list of the Patient objects linked to aWard, sorted by name
+     */
+    public synchronized List<Patient> getRoster(Ward aWard, Name anAfter, int aLimit)
+    {
+        return aWard.getRoster().getPage(anAfter, aLimit);
+    }
+
+    /**
+     * Returns the patients cared for by the team, in order of name.
+     *
+     * @param aTeam a team
+     *
+     * @return a list of the Patient objects linked to aTeam, sorted by name
+     */
+    public synchronized List<Patient> getRoster(Team aTeam)
+    {
+        return aTeam.getRoster().getAll();
+    }
+
+    /**
+     * Returns a page of the patients cared for by the team: those whose names
+     * come after the given name, in order of name, paged as for wards.
+     *
+     * @param aTeam a team
+     * @param anAfter the name to start after, or null to start at the beginning
+     * @param aLimit the greatest number of patients wanted
+     *
+     * @return a list of the Patient objects linked to aTeam, sorted by name
+     */
+    public synchronized List<Patient> getRoster(Team aTeam, Name anAfter, int aLimit)
+    {
+        return aTeam.getRoster().getPage(anAfter, aLimit);
+    }
+
+    /**
+     * Records the discharge of the patient.
+     * A record of aPatient, its ward, team and treating doctors is added
+     * to the discharge archive, then all links with aPatient are removed.
+     *
+     * @param aPatient a patient
+     *
+     * @throws IllegalArgumentException if aPatient is not admitted
+     */
+    public synchronized void discharge(Patient aPatient)
+    {
+        if (aPatient.getWard() == null)
+        {
+            throw new IllegalArgumentException("patient not admitted");
+        }
+        DischargeEvent event = null;
+        if (DischargeEvent.TYPE.isEnabled())
+        {
+            event = new DischargeEvent();
+            event.begin();
+        }
+        int theId = aPatient.getId();
+        if (!dischargeArchiveDisabled)
+        {
+            try
+            {
+                getDischargeArchive().add(new DischargeRecord(aPatient, System.currentTimeMillis()));
+                if (event != null)
+                {
+                    event.archived = true;
+                }
+            }
+            catch (IOException ex)
+            {
+                System.out.println("Problem archiving discharged patient: " + ex);
+            }
+        }
+        Ward theWard = aPatient.getWard();
+        Team theTeam = aPatient.getTeam();
+        if (patientIndex != null)
+        {
+            patientIndex.remove(aPatient);
+        }
+        aPatient.discharge();
+        registry.remove(aPatient);
+        getBedAllocationStrategy().patientRemoved(theWard, theTeam);
+        invalidate(theWard, theTeam);
+        recordOccupancy(theWard, theTeam);
+        if (patientPoolSize > 0 && !snapshotsInUse())
+        {
+            getPatientPool().release(aPatient);
+        }
+        version++;
+        if (event != null && event.shouldCommit())
+        {
+            event.patientId = theId;
+            event.ward = theWard.getName();
+            event.team = theTeam.getCode();
+            event.commit();
+        }
+    }
+
+    /**
+     * Sets whether discharges are recorded in the discharge archive.
+     * They are unless this is set otherwise.
+     *
+     * @param isEnabled true if discharges are to be archived, false otherwise
+     */
+    public synchronized void setDischargeArchiveEnabled(boolean isEnabled)
+    {
+        dischargeArchiveDisabled = !isEnabled;
+    }
+
+    /**
+     * Sets whether the attributes, ward and team of patients admitted from now on are
+     * held in a columnar store outside the Java heap, leaving each Patient object as
+     * a small handle. This suits hospitals holding very large numbers of patients.
+     * Patients already admitted stay where they are; a discharged patient's attributes
+     * move back into its Patient object.
+     *
+     * @param isEnabled true if new patients are to be held in the columnar store
+     * @param anInitialCapacity the number of patients the store has room for before it grows
+     */
+    public synchronized void setColumnarPatientStore(boolean isEnabled, int anInitialCapacity)
+    {
+        if (!isEnabled)
+        {
+            patientStore = null;
+        }
+        else if (patientStore == null)
+        {
+            patientStore = new ColumnarPatientStore(registry, anInitialCapacity);
+        }
+    }
+
+    /**
+     * Sets the number of Patient objects of discharged patients kept for reuse by
+     * later admissions; 0, the initial value, turns reuse off.<p>
+     * A reused Patient object takes on the identity of the newly admitted patient, so
+     * this must only be turned on where nothing keeps hold of a Patient object once the
+     * patient has been discharged. Snapshots hold Patient objects, so a discharged
+     * patient's object is not reused while any snapshot taken before the discharge may
+     * still be in use.
+     *
+     * @param aSize the greatest number of Patient objects kept
+     */
+    public synchronized void setPatientPoolSize(int aSize)
+    {
+        patientPoolSize = Math.max(0, aSize);
+        patientPool = null;
+    }
+
+    /**
+     * Returns the records of every discharge of a patient with the given name.
+     *
+     * @param aName the name of a patient
+     *
+     * @return a list of DischargeRecord objects, oldest first
+     *
+     * @throws IOException if the discharge archive cannot be read
+     */
+    public synchronized List<DischargeRecord> getDischargeHistory(Name aName) throws IOException
+    {
+        return getDischargeArchive().getRecords(aName);
+    }
+
+    /**
+     * Returns all patients in the hospital.
+     *
+     * @return an unmodifiable collection of all the Patient objects
+     */
+    public synchronized Collection<Patient> getPatients()
+    {
+        List<Object> key = Collections.<Object>singletonList("getPatients");
+        Collection<Patient> allPatients = getQueryCache().get(key);
+        if (allPatients == null)
+        {
+            Collection<Patient> patients = new HashSet<Patient>();
+            for (Ward aWard : wards)
+            {
+                patients.addAll(aWard.getPatients());
+            }
+            allPatients = Collections.unmodifiableCollection(patients);
+            queryCache.put(key, allPatients, wards);
+        }
+        return allPatients;
+    }
+
+    /**
+     * Returns the patients in the cohort, found by combining sets of patients held
+     * for each ward, team, doctor and sex rather than by looking at each patient.
+     *
+     * @param aCohort a cohort
+     *
+     * @return a list of the Patient objects in aCohort, in no particular order
+     */
+    public synchronized List<Patient> getPatients(Cohort aCohort)
+    {
+        PatientBitmapIndex theIndex = getPatientIndex();
+        return theIndex.patientsIn(aCohort.evaluate(theIndex));
+    }
+
+    /**
+     * Returns the number of patients in the cohort.
+     *
+     * @param aCohort a cohort
+     *
+     * @return the number of patients in aCohort
+     */
+    public synchronized int countPatients(Cohort aCohort)
+    {
+        return aCohort.evaluate(getPatientIndex()).cardinality();
+    }
+
+    /**
+     * Returns all the wards in the hospital.
+     *
+     * @return an unmodifiable collection of all the Ward objects
+     */
+    public Collection<Ward> getWards()
+    {
+        return Collections.unmodifiableCollection(wards);
+    }
+
+    /**
+     * Returns all the teams in the hospital.
+     *
+     * @return an unmodifiable collection of all the Team objects
+     */
+    public Collection<Team> getTeams()
+    {
+        return Collections.unmodifiableCollection(teams);
+    }
+
+    /**
+     * Returns an immutable view of all wards, teams, patients and their links
+     * as they are now.<p>
+     * The view is unaffected by later admissions, discharges and treatments, so
+     * long-running reports should read from a snapshot rather than from the
+     * receiver. Taking a snapshot briefly excludes changes to the hospital;
+     * wards and teams unchanged since the previous snapshot are shared with it.
+     *
+     * @return a HospitalSnapshot object representing the current state of the receiver
+     */
+    public synchronized HospitalSnapshot snapshot()
+    {
+        HospitalSnapshot result = (latestSnapshot == null) ? null : latestSnapshot.get();
+        if (result == null || result.getVersion() != version)
+        {
+            result = new HospitalSnapshot(version, wards, teams, result);
+            if (snapshotReferences == null)
+            {
+                snapshotReferences = new HashSet<Reference<? extends HospitalSnapshot>>();
+                collectedSnapshots = new ReferenceQueue<HospitalSnapshot>();
+            }
+            latestSnapshot = new WeakReference<HospitalSnapshot>(result, collectedSnapshots);
+            snapshotReferences.add(latestSnapshot);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new query over the patients of the hospital, with no conditions.
+     * The query is run against a snapshot of the hospital taken when its results are asked for.
+     *
+     * @return a new PatientQuery object
+     */
+    public PatientQuery query()
+    {
+        return new PatientQuery(this);
+    }
+
+    /**
+     * Visits every patient in the hospital, with its ward and team, using all the
+     * available processors. The patients are those in a snapshot taken now;
+     * aVisitor may be called on several threads at once and in any order.
+     *
+     * @param aVisitor a visitor safe for use by several threads at once
+     */
+    public void forEachPatientParallel(final PatientVisitor aVisitor)
+    {
+        reduceOverPatients(new PatientReducer<Object>()
+        {
+            public Object identity()
+            {
+                return null;
+            }
+
+            public Object accumulate(Object aResult, Patient aPatient, Ward aWard, Team aTeam)
+            {
+                aVisitor.visit(aPatient, aWard, aTeam);
+                return null;
+            }
+
+            public Object combine(Object aFirst, Object aSecond)
+            {
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Checks that the links between the wards, teams, patients and doctors agree:
+     * that no ward is over capacity, that every link between a patient and its ward
+     * or team is matched by one back, and that every doctor that has treated a patient
+     * is in the patient's team. Only the wards and teams changed since the last audit
+     * are checked again, in parallel, so this is cheap enough to run continuously;
+     * the hospital cannot be changed while it runs.
+     *
+     * @return a report of the audit, listing every violation known
+     */
+    public synchronized AuditReport audit()
+    {
+        return getAuditor().audit(wards, teams, false);
+    }
+
+    /**
+     * Checks every ward and team as for audit(), whether or not it has changed.
+     * This is the check to make after reading in a data file of unknown provenance.
+     *
+     * @return a report of the audit, listing every violation found
+     */
+    public synchronized AuditReport auditAll()
+    {
+        return getAuditor().audit(wards, teams, true);
+    }
+
+    /**
+     * Combines every patient in the hospital, with its ward and team, into a single
+     * result using all the available processors. The patients are those in a snapshot
+     * taken now, split into runs by ward; partial results are combined in ward order, so
+     * a reducer that keeps the order of its patients gives the same result on every run.
+     *
+     * @param aReducer a reducer
+     *
+     * @return the result of the reduction
+     */
+    public <R> R reduceOverPatients(PatientReducer<R> aReducer)
+    {
+        HospitalSnapshot theSnapshot = snapshot();
+        return ForkJoinPool.commonPool().invoke(
+                new PatientScan<R>(theSnapshot, theSnapshot.getWards().toArray(new Ward[0]), aReducer));
+    }
+
+    /**
+     * Returns a string representation of all teams and wards.
+     *
+     * @return a String object representing the receiver
+     */
+    public synchronized String toString()
+    {
+        List<Object> key = Collections.<Object>singletonList("toString");
+        String result = getQueryCache().get(key);
+        if (result == null)
+        {
+            result = teams.toString() + wards.toString();
+            List<Object> tags = new ArrayList<Object>(teams);
+            tags.addAll(wards);
+            queryCache.put(key, result, tags);
+        }
+        return result;
+    }
+
+    /**
+     * Sets the number of query results kept for reuse. Results of getPatients(),
+     * getPatientsAndWards(Team) and toString() are kept until an admission, discharge,
+     * transfer or treatment changes a ward or team they were computed from; when more
+     * are asked for, the least recently used is dropped. 0 turns the cache off, and
+     * changing the size empties it.
+     *
+     * @param aSize the greatest number of results kept
+     */
+    public synchronized void setQueryCacheSize(int aSize)
+    {
+        queryCacheSize = Math.max(0, aSize);
+        queryCache = null;
+    }
+
+    /**
+     * Returns the statistics of the cache of query results since it was last emptied,
+     * for judging its size.
+     *
+     * @return a QueryCacheStats object
+     */
+    public synchronized QueryCacheStats getQueryCacheStats()
+    {
+        return getQueryCache().getStats();
+    }
+
+    // </editor-fold>
+   /**
+     * Creates and returns a new HospCoord object.
+     * Reads in the state of the object from the
+     * file Hospital.data, falling back to the previous
+     * generation if the latest one is damaged; if there is no
+     * usable file, or if it is not compatible, returns the object
+     * in its initial state.
+    *
+     * @return a new HospCoord object
+     */
+    public static HospCoord getHospital()
+    {
+        if (hospital == null) //if a coordinating object does not already exist
+        {
+            hospital = load("hospital.csv", DATA_FILE); // initialise the wards, teams and doctors using the default file.
+        }
+        return hospital;
+    }
+
+    /**
+     * Creates and returns a new HospCoord object that is independent
+     * of the one returned by getHospital(), for example one partition
+     * of a hospital spread over several sites.
+     * Reads in the state of the object from aDataFile; if there is
+     * no usable file, returns the object with the wards, teams and
+     * doctors detailed in aSetupFile.
+     *
+     * @param aSetupFile the name of the file detailing the wards, teams and doctors
+     * @param aDataFile the name of the file the state of the object is saved to
+     *
+     * @return a new HospCoord object
+     */
+    public static HospCoord getPartition(String aSetupFile, String aDataFile)
+    {
+        return load(aSetupFile, aDataFile);
+    }
+
+    /**
+     * Saves the state of the receiver
+     * to its data file (Hospital.data for the object
+     * returned by getHospital()).
+     * The new state is written to a temporary file and moved into
+     * place only once it is safely on disk, so a crash part way
+     * through leaves the previously saved state intact.
+     */
+    public synchronized void save()
+    {
+        try
+        {
+            store();
+        }
+        catch (Exception ex)
+        {
+            System.out.println("Problem storing state of hospital");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Saves the state of the receiver to its data file as save() does, but reports
+     * a failure to the caller rather than ending the program, so that a server shared
+     * by several clients can refuse the one request and carry on. The previously
+     * saved state is left intact if the save fails.
+     *
+     * @throws IOException if the state cannot be written
+     */
+    public synchronized void store() throws IOException
+    {
+        SaveEvent event = null;
+        if (SaveEvent.TYPE.isEnabled())
+        {
+            event = new SaveEvent();
+            event.begin();
+        }
+        long bytesWritten = new SnapshotFile(dataFile).write(this);
+        if (event != null && event.shouldCommit())
+        {
+            event.bytesWritten = bytesWritten;
+            event.dataFile = dataFile;
+            event.patients = numberOfPatients();
+            event.commit();
+        }
+    }
+
+    //private protocol
+    /**
+     * Returns whether any snapshot handed out may still be in use, first forgetting
+     * those that have been collected.
+     */
+    private boolean snapshotsInUse()
+    {
+        if (snapshotReferences == null)
+        {
+            return false;
+        }
+        Reference<? extends HospitalSnapshot> collected;
+        while ((collected = collectedSnapshots.poll()) != null)
+        {
+            snapshotReferences.remove(collected);
+        }
+        return !snapshotReferences.isEmpty();
+    }
+
+    /**
+     * Returns the pool of Patient objects kept for reuse, creating it if necessary.
+     */
+    private PatientPool getPatientPool()
+    {
+        if (patientPool == null)
+        {
+            patientPool = new PatientPool(patientPoolSize);
+        }
+        return patientPool;
+    }
+
+    /**
+     * Returns the auditor of the hospital, creating it if necessary.
+     */
+    private HospitalAuditor getAuditor()
+    {
+        if (auditor == null)
+        {
+            auditor = new HospitalAuditor();
+        }
+        return auditor;
+    }
+
+    /**
+     * Checks that aMinutes is a window the treatment counters can answer for.
+     */
+    private static void checkWindow(int aMinutes)
+    {
+        if (aMinutes < 1 || aMinutes > TreatmentCounter.WINDOW)
+        {
+            throw new IllegalArgumentException("window must be from 1 to " + TreatmentCounter.WINDOW + " minutes");
+        }
+    }
+
+    /**
+     * Returns the archive of discharged patients, kept in a directory
+     * alongside the data file, opening it if necessary.
+     */
+    private DischargeArchive getDischargeArchive() throws IOException
+    {
+        if (dischargeArchive == null)
+        {
+            dischargeArchive = new DischargeArchive(new File(dataFile + ".archive"));
+        }
+        return dischargeArchive;
+    }
+
+    /**
+     * Returns the index of the wards by type, attributes and free beds, creating it if necessary.
+     */
+    private WardAttributeIndex getWardIndex()
+    {
+        if (wardIndex == null)
+        {
+            wardIndex = new WardAttributeIndex(wards);
+        }
+        return wardIndex;
+    }
+
+    /**
+     * Returns the index of the admitted patients, creating it if necessary.
+     */
+    private PatientBitmapIndex getPatientIndex()
+    {
+        if (patientIndex == null)
+        {
+            patientIndex = new PatientBitmapIndex(wards);
+        }
+        return patientIndex;
+    }
+
+    /**
+     * Returns the cache of query results, creating it if necessary.
+     */
+    private QueryCache getQueryCache()
+    {
+        if (queryCache == null)
+        {
+            queryCache = new QueryCache(queryCacheSize);
+        }
+        return queryCache;
+    }
+
+    /**
+     * Drops the query results computed from aWard or aTeam, which have changed, and
+     * brings the ward's free beds up to date in the ward index.
+     */
+    private void invalidate(Ward aWard, Team aTeam)
+    {
+        if (wardIndex != null)
+        {
+            wardIndex.update(aWard);
+        }
+        if (queryCache != null)
+        {
+            queryCache.invalidate(aWard);
+            queryCache.invalidate(aTeam);
+        }
+    }
+
+    /**
+     * Admits a new patient to theWard, if it is not null, returning the new patient or null.
+     */
+    private Patient admitTo(Ward theWard, Name aName, Sex aSex, CompactDate aDate, Team aTeam)
+    {
+        Patient thePatient = null;
+        if (theWard != null)
+        {
+            if (patientStore != null)
+            {
+                if (!snapshotsInUse())
+                {
+                    patientStore.reclaimRows();
+                }
+                thePatient = new Patient(patientStore, aName, aSex, aDate);
+            }
+            else if (patientPoolSize > 0)
+            {
+                thePatient = getPatientPool().acquire(aName, aSex, aDate);
+            }
+            else
+            {
+                thePatient = new Patient(aName, aSex, aDate);
+            }
+            registry.add(thePatient);
+            thePatient.admit(theWard, aTeam);
+            if (patientIndex != null)
+            {
+                patientIndex.add(thePatient);
+            }
+            getBedAllocationStrategy().patientAdded(theWard, aTeam);
+            invalidate(theWard, aTeam);
+            recordOccupancy(theWard, aTeam);
+            version++;
+        }
+        return thePatient;
+    }
+
+    /**
+     * Records in the occupancy history the current number of patients on aWard and cared for by aTeam.
+     */
+    private void recordOccupancy(Ward aWard, Team aTeam)
+    {
+        long now = System.currentTimeMillis();
+        occupancyHistory.record(aWard, now);
+        occupancyHistory.record(aTeam, now);
+    }
+
+    /**
+     * Returns the summaries of aSeries over aBuckets equal periods from aFrom up to aTo.
+     */
+    private static List<OccupancySummary> summarise(OccupancySeries aSeries, long aFrom, long aTo, int aBuckets)
+    {
+        if (aTo <= aFrom || aBuckets < 1 || aBuckets > aTo - aFrom)
+        {
+            throw new IllegalArgumentException("bad range or number of periods");
+        }
+        long now = System.currentTimeMillis();
+        List<OccupancySummary> results = new ArrayList<OccupancySummary>(aBuckets);
+        for (int i = 0; i < aBuckets; i++)
+        {
+            long start = aFrom + (aTo - aFrom) * i / aBuckets;
+            long end = aFrom + (aTo - aFrom) * (i + 1) / aBuckets;
+            results.add(aSeries.summarise(start, end, now));
+        }
+        return results;
+    }
+
+    /**
+     * Reads in a HospCoord object from aDataFile, or if there is no usable file
+     * creates one from aSetupFile and saves it.
+     */
+    private static HospCoord load(String aSetupFile, String aDataFile)
+    {
+        LoadEvent event = null;
+        if (LoadEvent.TYPE.isEnabled())
+        {
+            event = new LoadEvent();
+            event.begin();
+        }
+        boolean isSetUp = false;
+        HospCoord result;
+        try
+        {
+            result = new SnapshotFile(aDataFile).read();
+            result.dataFile = aDataFile;
+            result.index();
+        }
+        catch (Exception ex)
+        {
+            // let user know that previous data file does not exist or is not compatible
+            System.out.println("Data file does not exist or is incompatible with this version of the software.");
+            System.out.println("Hospital will be initialised to default state");
+            result = new HospCoord(aSetupFile, aDataFile); // initialise hospital to default state.
+            result.save(); //and save it
+            isSetUp = true;
+        }
+        if (event != null && event.shouldCommit())
+        {
+            event.setUp = isSetUp;
+            event.dataFile = aDataFile;
+            event.setupFile = aSetupFile;
+            event.patients = result.numberOfPatients();
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of patients on the wards.
+     */
+    private int numberOfPatients()
+    {
+        int result = 0;
+        for (Ward aWard : wards)
+        {
+            result += aWard.getPatients().size();
+        }
+        return result;
+    }
+
+    /**
+     * Reads in this hospital, giving the fields added since the first release their
+     * initial values when the data file was written by that release.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        if (allocationStrategy == null)
+        {
+            allocationStrategy = new MostFreeBedsStrategy();
+        }
+        if (registry == null)
+        {
+            // written before wards, teams and doctors had ids, and before the query cache
+            registry = new EntityRegistry();
+            for (Ward aWard : wards)
+            {
+                registry.add(aWard);
+            }
+            for (Team aTeam : teams)
+            {
+                for (Doctor aDoctor : aTeam.getDoctors())
+                {
+                    registry.add(aDoctor);
+                }
+                registry.add(aTeam);
+            }
+            queryCacheSize = DEFAULT_QUERY_CACHE_SIZE;
+        }
+        if (occupancyHistory == null)
+        {
+            occupancyHistory = new OccupancyHistory();
+            long now = System.currentTimeMillis();
+            for (Ward aWard : wards)
+            {
+                occupancyHistory.record(aWard, now);
+            }
+            for (Team aTeam : teams)
+            {
+                occupancyHistory.record(aTeam, now);
+            }
+        }
+    }
+
+    /**
+     * Builds the indexes of teams, wards and doctors from the current teams and wards,
+     * and registers again the patients on the wards.
+     */
+    private void index()
+    {
+        registry.restorePatients(wards);
+        teamsByCode = new HashMap<String, Team>();
+        wardsByName = new HashMap<String, Ward>();
+        doctorsByName = new HashMap<Name, Doctor>();
+        for (Ward aWard : wards)
+        {
+            wardsByName.put(aWard.getName(), aWard);
+        }
+        for (Team aTeam : teams)
+        {
+            indexTeam(aTeam);
+        }
+    }
+
+    /**
+     * Adds aTeam and its doctors to the indexes.
+     */
+    private void indexTeam(Team aTeam)
+    {
+        teamsByCode.put(aTeam.getCode(), aTeam);
+        for (Doctor aDoctor : aTeam.getDoctors())
+        {
+            if (!doctorsByName.containsKey(aDoctor.getName()))
+            {
+                doctorsByName.put(aDoctor.getName(), aDoctor);
+            }
+        }
+    }
+
+    /**
+     * Sets up a hospital with teams, doctors, wards and patients detailed in setupFile. This should be invoked
+     * only by the constructor. The records are taken from the bootstrap image of setupFile when it is current.
+     * Wards with the name of an earlier ward, and teams with the code of an earlier team, are rejected.
+     * Any fields of a ward record after its capacity are attributes of the ward.
+     */
+    private void readHospitalDetails(String setupFile)
+    {
+        String fieldName;
+        String teamName = null;
+        ConsultantDoctor cd1 = null;
+        List<Doctor> doctors = new ArrayList<Doctor>();
+        List<Object> patientInfo = new ArrayList<Object>();
+        try
+        {
+            for (String[] fields : new BootstrapImage(setupFile).getRecords())
+            {
+                try
+                {
+                    fieldName = fields[0];
+                    if (fieldName.compareToIgnoreCase("Ward") == 0)
+                    {
+                        if (wardsByName.containsKey(fields[1]))
+                        {
+                            throw new IllegalArgumentException("duplicate ward name " + fields[1]);
+                        }
+                        List<String> attributes = Arrays.asList(fields).subList(Math.min(4, fields.length), fields.length);
+                        Ward aWard = new Ward(fields[1], Sex.valueOf(fields[2]), Integer.parseInt(fields[3]), attributes);
+                        registry.add(aWard);
+                        wards.add(aWard);
+                        wardsByName.put(aWard.getName(), aWard);
+                        allocationIndexed = false;
+                        wardIndex = null;
+                    }
+                    else if (fieldName.compareToIgnoreCase("Team") == 0)
                     {
                         if (teamName != null)
                         {
-                            aTeam = new Team(teamName, doctors, cd1);
-                            teams.add(aTeam);
-                            addPatients(patientInfo, aTeam);
+                            addTeam(teamName, doctors, cd1, patientInfo);
                         }
-                        teamName = lineScanner.next();
-                        doctors = new HashSet<Doctor>();
+                        teamName = fields[1];
+                        doctors = new ArrayList<Doctor>();
                         patientInfo = new ArrayList<Object>();
+                        if (teamsByCode.containsKey(teamName))
+                        {
+                            teamName = null; // the team's doctors and patients are read but ignored
+                            throw new IllegalArgumentException("duplicate team code " + fields[1]);
+                        }
                     }
                     else if (fieldName.compareToIgnoreCase("Consultant") == 0)
                     {
-                        cd1 = new ConsultantDoctor(new Name(lineScanner.next(), lineScanner.next(), lineScanner.next()));
+                        cd1 = new ConsultantDoctor(new Name(fields[1], fields[2], fields[3]));
                         doctors.add(cd1);
                     }
                     else if (fieldName.compareToIgnoreCase("Junior") == 0)
                     {
-                        doctors.add(new JuniorDoctor(new Name(lineScanner.next(), lineScanner.next(), lineScanner.next()), Grade.valueOf(lineScanner.next())));
+                        doctors.add(new JuniorDoctor(new Name(fields[1], fields[2], fields[3]), Grade.valueOf(fields[4])));
                     }
                     else if (fieldName.compareToIgnoreCase("Patient") == 0)
                     {
-                        patientInfo.add(new Name(lineScanner.next(), lineScanner.next(), lineScanner.next()));
-                        patientInfo.add(lineScanner.next());
-                        patientInfo.add(new M256Date(lineScanner.next()));
+                        patientInfo.add(new Name(fields[1], fields[2], fields[3]));
+                        patientInfo.add(fields[4]);
+                        patientInfo.add(CompactDate.parse(fields[5]));
                     }
                 }
                 catch (Exception anException)
@@ -375,25 +1713,38 @@ public class HospCoord implements java.io.Serializable
             }
             if (teamName != null)
             {
-                aTeam = new Team(teamName, doctors, cd1);
-                teams.add(aTeam);
-                addPatients(patientInfo, aTeam);
+                addTeam(teamName, doctors, cd1, patientInfo);
             }
         }
         catch (Exception anException)
         {
             System.out.println("Error: " + anException);
         }
-        finally
+    }
+
+    /**
+     * Registers the doctors of a team read from the setup file, then sets up the team
+     * and admits its patients.
+     */
+    private void addTeam(String aCode, List<Doctor> aDoctorsList, ConsultantDoctor aConsultantDoctor, List<Object> patientInfo)
+    {
+        Collection<Doctor> doctors = new HashSet<Doctor>();
+        for (Doctor aDoctor : aDoctorsList)
         {
-            fileScanner.close();
+            registry.add(aDoctor);
+            doctors.add(aDoctor);
         }
+        Team aTeam = new Team(aCode, doctors, aConsultantDoctor);
+        registry.add(aTeam);
+        teams.add(aTeam);
+        indexTeam(aTeam);
+        addPatients(patientInfo, aTeam);
     }
 
     private void addPatients(List pL, Team aTeam)
     {
         Name aName;
-        M256Date aDate;
+        CompactDate aDate;
         Sex aSex;
         while (!pL.isEmpty())
         {
@@ -406,7 +1757,7 @@ public class HospCoord implements java.io.Serializable
             {
                 aSex = Sex.M;
             }
-            aDate = (M256Date) pL.remove(0);
+            aDate = (CompactDate) pL.remove(0);
             admit(aName, aSex, aDate, aTeam);
         }
     }
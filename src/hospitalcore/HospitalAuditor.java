@@ -0,0 +1,275 @@
+package hospitalcore;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * HospitalAuditor objects check that the links between the wards, teams, patients and
+ * doctors of a hospital agree with one another. The rules checked are that:<p>
+ * <ol>
+ *   <li>no ward has more patients than beds;</li>
+ *   <li>each patient on a ward is linked back to that ward, is of the ward's type, and
+ *       is cared for by a team of the hospital that is linked back to it;</li>
+ *   <li>each patient cared for by a team is linked back to that team and is on a ward
+ *       of the hospital that is linked back to it;</li>
+ *   <li>each doctor that has treated a patient is in the patient's team.</li>
+ * </ol>
+ * Audits are incremental: a ward or team is checked again only if its count of changes
+ * differs from when it was last checked, and the violations found in the others are
+ * carried over. Wards are checked in parallel when there are enough of them to be worth
+ * it. An audit must be made while the hospital is locked against changes.
+ */
+class HospitalAuditor
+{
+    //attributes
+
+    /**
+     * the number of wards and teams to check below which the checks are not shared out
+     */
+    private static final int PARALLEL_THRESHOLD = 16;
+
+
+    //links
+
+    /**
+     * the count of changes each ward had when last checked
+     */
+    private final Map<Ward, Integer> wardChanges;
+
+    /**
+     * the count of changes each team had when last checked
+     */
+    private final Map<Team, Integer> teamChanges;
+
+    /**
+     * the violations found in each ward and team when last checked, if any
+     */
+    private final Map<Object, List<String>> violations;
+
+
+    //constructor
+
+    /**
+     * Initialises a new HospitalAuditor object that has checked nothing.
+     */
+    HospitalAuditor()
+    {
+        wardChanges = new HashMap<Ward, Integer>();
+        teamChanges = new HashMap<Team, Integer>();
+        violations = new LinkedHashMap<Object, List<String>>();
+    }
+
+
+    //package protocol
+
+    /**
+     * Checks the wards and teams that have changed since they were last checked, or
+     * all of them if aFull is true.
+     *
+     * @param aWards all the wards of the hospital
+     * @param aTeams all the teams of the hospital
+     * @param aFull whether to check every ward and team
+     *
+     * @return a report of the audit
+     */
+    AuditReport audit(Collection<Ward> aWards, Collection<Team> aTeams, boolean aFull)
+    {
+        long start = System.nanoTime();
+        final Set<Ward> wardSet = (aWards instanceof Set) ? (Set<Ward>) aWards : new HashSet<Ward>(aWards);
+        final Set<Team> teamSet = (aTeams instanceof Set) ? (Set<Team>) aTeams : new HashSet<Team>(aTeams);
+        List<Callable<List<String>>> checks = new ArrayList<Callable<List<String>>>();
+        final List<Object> checked = new ArrayList<Object>();
+        int wardsChecked = 0;
+        int teamsChecked = 0;
+        for (final Ward aWard : aWards)
+        {
+            Integer last = wardChanges.get(aWard);
+            if (aFull || last == null || last.intValue() != aWard.getChanges())
+            {
+                wardChanges.put(aWard, Integer.valueOf(aWard.getChanges()));
+                checked.add(aWard);
+                checks.add(new Callable<List<String>>()
+                {
+                    public List<String> call()
+                    {
+                        return checkWard(aWard, teamSet);
+                    }
+                });
+                wardsChecked++;
+            }
+        }
+        for (final Team aTeam : aTeams)
+        {
+            Integer last = teamChanges.get(aTeam);
+            if (aFull || last == null || last.intValue() != aTeam.getChanges())
+            {
+                teamChanges.put(aTeam, Integer.valueOf(aTeam.getChanges()));
+                checked.add(aTeam);
+                checks.add(new Callable<List<String>>()
+                {
+                    public List<String> call()
+                    {
+                        return checkTeam(aTeam, wardSet);
+                    }
+                });
+                teamsChecked++;
+            }
+        }
+
+        List<List<String>> results = new ArrayList<List<String>>(checks.size());
+        if (checks.size() < PARALLEL_THRESHOLD)
+        {
+            for (Callable<List<String>> aCheck : checks)
+            {
+                results.add(run(aCheck));
+            }
+        }
+        else
+        {
+            for (Future<List<String>> aResult : ForkJoinPool.commonPool().invokeAll(checks))
+            {
+                results.add(join(aResult));
+            }
+        }
+        for (int i = 0; i < checked.size(); i++)
+        {
+            if (results.get(i).isEmpty())
+            {
+                violations.remove(checked.get(i));
+            }
+            else
+            {
+                violations.put(checked.get(i), results.get(i));
+            }
+        }
+
+        List<String> allViolations = new ArrayList<String>();
+        for (List<String> found : violations.values())
+        {
+            allViolations.addAll(found);
+        }
+        return new AuditReport(wardsChecked, teamsChecked, System.nanoTime() - start, allViolations);
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns the rules broken by aWard and its patients.
+     */
+    private static List<String> checkWard(Ward aWard, Set<Team> teams)
+    {
+        List<String> found = new ArrayList<String>(0);
+        Collection<Patient> patients = aWard.getPatients();
+        if (patients.size() > aWard.getCapacity())
+        {
+            found.add("ward " + aWard.getName() + " has " + patients.size() + " patients in "
+                    + aWard.getCapacity() + " beds");
+        }
+        for (Patient aPatient : patients)
+        {
+            if (aPatient.getWard() != aWard)
+            {
+                found.add(aPatient + " is on ward " + aWard.getName() + " but linked to "
+                        + describe(aPatient.getWard()));
+            }
+            if (aPatient.getSex() != aWard.getType())
+            {
+                found.add(aPatient + " is on ward " + aWard.getName() + " of type " + aWard.getType());
+            }
+            Team aTeam = aPatient.getTeam();
+            if (aTeam == null || !teams.contains(aTeam))
+            {
+                found.add(aPatient + " on ward " + aWard.getName() + " is cared for by no team of the hospital");
+                continue;
+            }
+            if (!aTeam.getPatients().contains(aPatient))
+            {
+                found.add(aPatient + " on ward " + aWard.getName() + " is linked to team "
+                        + aTeam.getCode() + " which does not care for it");
+            }
+            for (Doctor aDoctor : aPatient.getDoctors())
+            {
+                if (!aTeam.contains(aDoctor))
+                {
+                    found.add(aPatient + " was treated by " + aDoctor + " who is not in team " + aTeam.getCode());
+                }
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * Returns the rules broken by aTeam and its patients.
+     */
+    private static List<String> checkTeam(Team aTeam, Set<Ward> wards)
+    {
+        List<String> found = new ArrayList<String>(0);
+        for (Patient aPatient : aTeam.getPatients())
+        {
+            if (aPatient.getTeam() != aTeam)
+            {
+                found.add(aPatient + " is cared for by team " + aTeam.getCode() + " but linked to "
+                        + ((aPatient.getTeam() == null) ? "no team" : "team " + aPatient.getTeam().getCode()));
+            }
+            Ward aWard = aPatient.getWard();
+            if (aWard == null || !wards.contains(aWard))
+            {
+                found.add(aPatient + " cared for by team " + aTeam.getCode() + " is on no ward of the hospital");
+            }
+            else if (!aWard.getPatients().contains(aPatient))
+            {
+                found.add(aPatient + " cared for by team " + aTeam.getCode() + " is linked to ward "
+                        + aWard.getName() + " which does not hold it");
+            }
+        }
+        return found;
+    }
+
+
+    /**
+     * Returns a description of aWard for a violation.
+     */
+    private static String describe(Ward aWard)
+    {
+        return (aWard == null) ? "no ward" : "ward " + aWard.getName();
+    }
+
+
+    /**
+     * Runs aCheck on the calling thread.
+     */
+    private static List<String> run(Callable<List<String>> aCheck)
+    {
+        try
+        {
+            return aCheck.call();
+        }
+        catch (Exception anException)
+        {
+            return Collections.singletonList("audit failed: " + anException);
+        }
+    }
+
+
+    /**
+     * Returns the result of a check run by the pool.
+     */
+    private static List<String> join(Future<List<String>> aResult)
+    {
+        try
+        {
+            return aResult.get();
+        }
+        catch (InterruptedException anException)
+        {
+            Thread.currentThread().interrupt();
+            return Collections.singletonList("audit interrupted");
+        }
+        catch (ExecutionException anException)
+        {
+            return Collections.singletonList("audit failed: " + anException.getCause());
+        }
+    }
+}
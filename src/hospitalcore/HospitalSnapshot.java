@@ -0,0 +1,471 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+
+/**
+ * HospitalSnapshot objects are immutable views of the wards, teams, patients
+ * and their links as they were at one point in time.<p>
+ * A snapshot is obtained from HospCoord.snapshot() and can be read by any number
+ * of threads for as long as required without blocking, or being blocked by,
+ * admissions and discharges. Consecutive snapshots share the views of every ward
+ * and team that has not changed in between. Wards are held in order of name and
+ * teams in order of code, and the patients of each ward in order of name, taken from
+ * the ward's roster, so that the patients with a given name are found by a binary
+ * search of each ward.
+ */
+public class HospitalSnapshot
+{
+    //attributes
+
+    /**
+     * the version of the hospital this snapshot was taken at
+     */
+    private final long version;
+
+
+    //links
+
+    /**
+     * the views of all the wards, keyed by Ward object
+     */
+    private final Map<Ward, WardView> wardViews;
+
+    /**
+     * the views of all the teams, keyed by Team object
+     */
+    private final Map<Team, TeamView> teamViews;
+
+    /**
+     * the ward each patient was on, built on first use
+     */
+    private volatile Map<Patient, Ward> patientWards;
+
+    //constructor
+
+    /**
+     * Initialises a new HospitalSnapshot object from the current state of the wards
+     * and teams, reusing the views held by aPrevious for those that are unchanged.
+     * This should be invoked only while the hospital is locked against changes.
+     *
+     * @param aVersion the version of the hospital
+     * @param aWards all the wards
+     * @param aTeams all the teams
+     * @param aPrevious the previous snapshot, or null
+     */
+    HospitalSnapshot(long aVersion, Collection<Ward> aWards, Collection<Team> aTeams, HospitalSnapshot aPrevious)
+    {
+        version = aVersion;
+        List<Ward> wardList = new ArrayList<Ward>(aWards);
+        Collections.sort(wardList, new Comparator<Ward>()
+        {
+            public int compare(Ward aWard, Ward anotherWard)
+            {
+                return aWard.getName().compareTo(anotherWard.getName());
+            }
+        });
+        Map<Ward, WardView> wardResults = new LinkedHashMap<Ward, WardView>();
+        for (Ward aWard : wardList)
+        {
+            WardView view = (aPrevious == null) ? null : aPrevious.wardViews.get(aWard);
+            if (view == null || view.changes != aWard.getChanges())
+            {
+                view = new WardView(aWard);
+            }
+            wardResults.put(aWard, view);
+        }
+        List<Team> teamList = new ArrayList<Team>(aTeams);
+        Collections.sort(teamList, new Comparator<Team>()
+        {
+            public int compare(Team aTeam, Team anotherTeam)
+            {
+                return aTeam.getCode().compareTo(anotherTeam.getCode());
+            }
+        });
+        Map<Team, TeamView> teamResults = new LinkedHashMap<Team, TeamView>();
+        for (Team aTeam : teamList)
+        {
+            TeamView view = (aPrevious == null) ? null : aPrevious.teamViews.get(aTeam);
+            if (view == null || view.changes != aTeam.getChanges())
+            {
+                view = new TeamView(aTeam);
+            }
+            teamResults.put(aTeam, view);
+        }
+        wardViews = Collections.unmodifiableMap(wardResults);
+        teamViews = Collections.unmodifiableMap(teamResults);
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the version of the hospital this snapshot was taken at.
+     * Versions increase with every change to the hospital.
+     *
+     * @return version
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+
+    /**
+     * Returns all the wards in the hospital.
+     *
+     * @return an unmodifiable collection of all the Ward objects
+     */
+    public Collection<Ward> getWards()
+    {
+        return wardViews.keySet();
+    }
+
+
+    /**
+     * Returns all the teams in the hospital.
+     *
+     * @return an unmodifiable collection of all the Team objects
+     */
+    public Collection<Team> getTeams()
+    {
+        return teamViews.keySet();
+    }
+
+
+    /**
+     * Returns the patients that were on the ward.
+     *
+     * @param aWard a ward
+     *
+     * @return an unmodifiable collection of the Patient objects that were linked to aWard
+     */
+    public Collection<Patient> getPatients(Ward aWard)
+    {
+        return wardView(aWard).patients;
+    }
+
+
+    /**
+     * Returns the patients that were cared for by the team.
+     *
+     * @param aTeam a team
+     *
+     * @return an unmodifiable collection of the Patient objects that were linked to aTeam
+     */
+    public Collection<Patient> getPatients(Team aTeam)
+    {
+        return teamView(aTeam).patients;
+    }
+
+
+    /**
+     * Returns the patients with the given name, ward by ward.
+     *
+     * @param aName a name
+     *
+     * @return an unmodifiable collection of the Patient objects with name aName
+     */
+    public Collection<Patient> getPatients(Name aName)
+    {
+        List<Patient> results = new ArrayList<Patient>();
+        for (WardView view : wardViews.values())
+        {
+            results.addAll(view.named(aName));
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+
+    /**
+     * Returns the patients with the given name that were on the ward.
+     *
+     * @param aWard a ward
+     * @param aName a name
+     *
+     * @return an unmodifiable collection of the Patient objects linked to aWard with name aName
+     */
+    public Collection<Patient> getPatients(Ward aWard, Name aName)
+    {
+        return wardView(aWard).named(aName);
+    }
+
+
+    /**
+     * Returns the number of free beds the ward had.
+     *
+     * @param aWard a ward
+     *
+     * @return the numberOfFreeBeds of aWard
+     */
+    public int getNumberOfFreeBeds(Ward aWard)
+    {
+        return aWard.getCapacity() - wardView(aWard).patients.size();
+    }
+
+
+    /**
+     * Returns all patients in the hospital.
+     *
+     * @return a collection of all the Patient objects
+     */
+    public Collection<Patient> getPatients()
+    {
+        Collection<Patient> allPatients = new ArrayList<Patient>();
+        for (WardView view : wardViews.values())
+        {
+            allPatients.addAll(view.patients);
+        }
+        return allPatients;
+    }
+
+
+    /**
+     * Returns a map of (patient, ward) pairs where the patients are those
+     * that were cared for by the team and each ward is the ward that the
+     * corresponding patient was on.
+     *
+     * @param aTeam a team
+     *
+     * @return a map containing, for each Patient object aPatient that was linked to aTeam,
+     * the key-value pair (aPatient, aWard) where aWard was linked to aPatient
+     */
+    public Map<Patient, Ward> getPatientsAndWards(Team aTeam)
+    {
+        Map<Patient, Ward> results = new HashMap<Patient, Ward>();
+        for (Patient aPatient : teamView(aTeam).patients)
+        {
+            results.put(aPatient, getWard(aPatient));
+        }
+        return results;
+    }
+
+
+    /**
+     * Returns the ward the patient was on.
+     *
+     * @param aPatient a patient
+     *
+     * @return the Ward object that was linked to aPatient, or null if aPatient was not admitted
+     */
+    public Ward getWard(Patient aPatient)
+    {
+        return patientWards().get(aPatient);
+    }
+
+
+    /**
+     * Returns the team that cared for the patient.
+     *
+     * @param aPatient a patient
+     *
+     * @return the Team object that was linked to aPatient, or null if aPatient was not admitted
+     */
+    public Team getTeam(Patient aPatient)
+    {
+        Ward aWard = getWard(aPatient);
+        return (aWard == null) ? null : wardViews.get(aWard).teams.get(aPatient);
+    }
+
+
+    /**
+     * Returns the consultant doctor that was responsible for the patient.
+     *
+     * @param aPatient a patient
+     *
+     * @return the ConsultantDoctor object that was linked to aPatient, or null if aPatient was not admitted
+     */
+    public ConsultantDoctor getConsultantDoctor(Patient aPatient)
+    {
+        Team aTeam = getTeam(aPatient);
+        return (aTeam == null) ? null : aTeam.getConsultantDoctor();
+    }
+
+
+    /**
+     * Returns the doctors that had treated the patient.
+     *
+     * @param aPatient a patient
+     *
+     * @return an unmodifiable collection of the Doctor objects that were linked to aPatient
+     */
+    public Collection<Doctor> getDoctors(Patient aPatient)
+    {
+        Ward aWard = getWard(aPatient);
+        if (aWard == null)
+        {
+            return Collections.emptyList();
+        }
+        return wardViews.get(aWard).doctors.get(aPatient);
+    }
+
+
+    /**
+     * Returns the doctors that the team contains.
+     *
+     * @param aTeam a team
+     *
+     * @return an unmodifiable collection of all the Doctor objects linked to aTeam
+     */
+    public Collection<Doctor> getDoctors(Team aTeam)
+    {
+        return Collections.unmodifiableCollection(aTeam.getDoctors());
+    }
+
+
+    //package protocol
+
+    /**
+     * Returns the team that cared for the patient, which was on the ward.
+     *
+     * @param aPatient a patient
+     * @param aWard the ward aPatient was on
+     *
+     * @return the Team object that was linked to aPatient
+     */
+    Team getTeam(Patient aPatient, Ward aWard)
+    {
+        return wardView(aWard).teams.get(aPatient);
+    }
+
+
+    /**
+     * Returns the patients that were on the ward, in a list.
+     *
+     * @param aWard a ward
+     *
+     * @return an unmodifiable list of the Patient objects that were linked to aWard
+     */
+    List<Patient> getPatientList(Ward aWard)
+    {
+        return wardView(aWard).patients;
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns the view of aWard, which must be a ward of this hospital.
+     */
+    private WardView wardView(Ward aWard)
+    {
+        WardView view = wardViews.get(aWard);
+        if (view == null)
+        {
+            throw new IllegalArgumentException("ward not in this hospital");
+        }
+        return view;
+    }
+
+
+    /**
+     * Returns the view of aTeam, which must be a team of this hospital.
+     */
+    private TeamView teamView(Team aTeam)
+    {
+        TeamView view = teamViews.get(aTeam);
+        if (view == null)
+        {
+            throw new IllegalArgumentException("team not in this hospital");
+        }
+        return view;
+    }
+
+
+    /**
+     * Returns the ward of every patient, building the map on first use.
+     * Concurrent first uses may each build the map; the results are identical.
+     */
+    private Map<Patient, Ward> patientWards()
+    {
+        Map<Patient, Ward> results = patientWards;
+        if (results == null)
+        {
+            results = new HashMap<Patient, Ward>();
+            for (Map.Entry<Ward, WardView> entry : wardViews.entrySet())
+            {
+                for (Patient aPatient : entry.getValue().patients)
+                {
+                    results.put(aPatient, entry.getKey());
+                }
+            }
+            patientWards = results;
+        }
+        return results;
+    }
+
+
+    /**
+     * The state of one ward: its patients, in order of name, with their teams and
+     * treating doctors.
+     */
+    private static class WardView
+    {
+        private final int changes;
+        private final List<Patient> patients;
+        private final Map<Patient, Team> teams;
+        private final Map<Patient, Collection<Doctor>> doctors;
+
+        WardView(Ward aWard)
+        {
+            changes = aWard.getChanges();
+            List<Patient> patientList = aWard.getRoster().getAll();
+            teams = new HashMap<Patient, Team>();
+            doctors = new HashMap<Patient, Collection<Doctor>>();
+            for (Patient aPatient : patientList)
+            {
+                teams.put(aPatient, aPatient.getTeam());
+                Collection<Doctor> treating = aPatient.getDoctors();
+                if (treating.isEmpty())
+                {
+                    doctors.put(aPatient, Collections.<Doctor>emptyList());
+                }
+                else
+                {
+                    doctors.put(aPatient, Collections.unmodifiableList(new ArrayList<Doctor>(treating)));
+                }
+            }
+            patients = Collections.unmodifiableList(patientList);
+        }
+
+        List<Patient> named(Name aName)
+        {
+            int low = 0;
+            int high = patients.size();
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (patients.get(middle).getName().compareTo(aName) < 0)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            int end = low;
+            while (end < patients.size() && patients.get(end).getName().equals(aName))
+            {
+                end++;
+            }
+            return patients.subList(low, end);
+        }
+    }
+
+
+    /**
+     * The state of one team: the patients it cares for.
+     */
+    private static class TeamView
+    {
+        private final int changes;
+        private final Collection<Patient> patients;
+
+        TeamView(Team aTeam)
+        {
+            changes = aTeam.getChanges();
+            patients = Collections.unmodifiableList(new ArrayList<Patient>(aTeam.getPatients()));
+        }
+    }
+}
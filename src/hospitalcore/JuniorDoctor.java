@@ -8,6 +8,12 @@ import m256people.*;
 public class JuniorDoctor extends Doctor
 {
     //attributes
+
+    /**
+     * the version of the serialized form, kept at that of the first release so that
+     * the data files it wrote can still be read
+     */
+    private static final long serialVersionUID = 3442177879187215920L;
     
     /**
      * the grade (1, 2 or 3) of the junior doctor
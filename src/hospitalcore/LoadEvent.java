@@ -0,0 +1,35 @@
+package hospitalcore;
+
+import jdk.jfr.*;
+
+/**
+ * LoadEvent objects are JDK Flight Recorder events recording the loading of a
+ * hospital, either read back in from its data file or set up afresh.
+ */
+@Name("hospitalcore.Load")
+@Label("Load")
+@Category("Hospital")
+@Description("Reading a hospital from its data file, or setting it up from its setup file")
+class LoadEvent extends Event
+{
+    //attributes
+
+    /**
+     * the type of these events, so that a load can ask whether any recording wants
+     * one before creating it
+     */
+    static final EventType TYPE = EventType.getEventType(LoadEvent.class);
+
+    @Label("Data File")
+    String dataFile;
+
+    @Label("Setup File")
+    String setupFile;
+
+    @Label("Set Up Afresh")
+    @Description("Whether the data file was missing or unusable, so the hospital was set up from the setup file")
+    boolean setUp;
+
+    @Label("Patients")
+    int patients;
+}
@@ -0,0 +1,101 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+
+/**
+ * MostFreeBedsStrategy objects choose the ward of the appropriate type with the
+ * greatest number of free beds, spreading patients evenly across the wards.
+ * This is the strategy a hospital uses unless told otherwise.
+ */
+public class MostFreeBedsStrategy implements BedAllocationStrategy
+{
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = 2355387710307315561L;
+
+
+    //links
+
+    /**
+     * the wards indexed by number of free beds
+     */
+    private transient WardBucketIndex index;
+
+
+    //public protocol
+
+    /**
+     * Builds the index over all the wards of the hospital.
+     *
+     * @param aWardCollection all the wards of the hospital
+     */
+    public void initialise(Collection<Ward> aWardCollection)
+    {
+        index = new WardBucketIndex(aWardCollection);
+    }
+
+
+    /**
+     * Returns a ward of type aSex with the greatest number of free beds.
+     *
+     * @param aSex the sex of the patient
+     * @param aTeam the team that will care for the patient
+     *
+     * @return a Ward object with at least one free bed, or null if there is none
+     */
+    public Ward selectWard(Sex aSex, Team aTeam)
+    {
+        return index.mostFree(aSex);
+    }
+
+
+    /**
+     * Records that a patient has been added to the ward.
+     *
+     * @param aWard a ward
+     * @param aTeam a team
+     */
+    public void patientAdded(Ward aWard, Team aTeam)
+    {
+        index.update(aWard);
+    }
+
+
+    /**
+     * Records that a patient has been removed from the ward.
+     *
+     * @param aWard a ward
+     * @param aTeam a team
+     */
+    public void patientRemoved(Ward aWard, Team aTeam)
+    {
+        index.update(aWard);
+    }
+
+
+    /**
+     * Returns the number of candidate wards looked at in turn by the most recent
+     * selectWard, which is always 0 as the ward is found from the index alone.
+     *
+     * @return 0
+     */
+    public int getWardsExamined()
+    {
+        return 0;
+    }
+
+
+    /**
+     * Returns a string naming this strategy.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return "most free beds";
+    }
+}
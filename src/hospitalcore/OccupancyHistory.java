@@ -0,0 +1,113 @@
+package hospitalcore;
+
+import java.util.*;
+
+/**
+ * OccupancyHistory objects keep an OccupancySeries for each ward and each team of a
+ * hospital, indexed by their ids in the hospital's registry.
+ */
+class OccupancyHistory implements java.io.Serializable
+{
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = 3768665958767045294L;
+
+
+    //links
+
+    /**
+     * the series of each ward, at the index one less than the ward's id
+     */
+    private final List<OccupancySeries> wardSeries;
+
+    /**
+     * the series of each team, at the index one less than the team's id
+     */
+    private final List<OccupancySeries> teamSeries;
+
+
+    //constructor
+
+    /**
+     * Initialises a new OccupancyHistory object with no series.
+     */
+    OccupancyHistory()
+    {
+        wardSeries = new ArrayList<OccupancySeries>();
+        teamSeries = new ArrayList<OccupancySeries>();
+    }
+
+
+    //package protocol
+
+    /**
+     * Records the current number of patients on aWard.
+     *
+     * @param aWard a registered ward
+     * @param aTime the time in milliseconds since 1 January 1970
+     */
+    void record(Ward aWard, long aTime)
+    {
+        seriesFor(wardSeries, aWard.getId()).record(aTime, aWard.getPatients().size());
+    }
+
+
+    /**
+     * Records the current number of patients cared for by aTeam.
+     *
+     * @param aTeam a registered team
+     * @param aTime the time in milliseconds since 1 January 1970
+     */
+    void record(Team aTeam, long aTime)
+    {
+        seriesFor(teamSeries, aTeam.getId()).record(aTime, aTeam.getPatients().size());
+    }
+
+
+    /**
+     * Returns the series of aWard.
+     *
+     * @param aWard a registered ward
+     *
+     * @return an OccupancySeries object
+     */
+    OccupancySeries getSeries(Ward aWard)
+    {
+        return seriesFor(wardSeries, aWard.getId());
+    }
+
+
+    /**
+     * Returns the series of aTeam.
+     *
+     * @param aTeam a registered team
+     *
+     * @return an OccupancySeries object
+     */
+    OccupancySeries getSeries(Team aTeam)
+    {
+        return seriesFor(teamSeries, aTeam.getId());
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns the series for the id in aList, adding empty series as necessary.
+     */
+    private static OccupancySeries seriesFor(List<OccupancySeries> aList, int anId)
+    {
+        if (anId < 1)
+        {
+            throw new IllegalArgumentException("not registered");
+        }
+        while (aList.size() < anId)
+        {
+            aList.add(new OccupancySeries());
+        }
+        return aList.get(anId - 1);
+    }
+}
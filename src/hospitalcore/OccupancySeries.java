@@ -0,0 +1,569 @@
+package hospitalcore;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * OccupancySeries objects record how the number of patients on one ward, or cared
+ * for by one team, has changed over time.<p>
+ * Changes are kept to the nearest RESOLUTION milliseconds: the changes within one such
+ * step are merged, and the history holds the occupancy at the end of each step in which
+ * it changed, so that however busy the hospital the history grows by at most a few bytes
+ * a second. Time is divided into segments of SEGMENT_LENGTH milliseconds, and only the
+ * segments in which the occupancy changed are kept. Each change point within a segment is
+ * held as the number of steps since the previous point and the change in occupancy, both
+ * as variable length integers in a single byte array shared by all segments, so a change
+ * costs two or three bytes. Each segment also keeps a summary of its points: the occupancy
+ * at its start and end, the lowest and highest occupancy and the sum of the occupancy over
+ * its length. A query over a range uses the summaries of the segments it covers whole and
+ * decodes only the segments at its ends. Segments older than RETENTION are dropped.
+ */
+class OccupancySeries implements java.io.Serializable
+{
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = -3888756927465836113L;
+
+    /**
+     * the length of a segment in milliseconds
+     */
+    static final long SEGMENT_LENGTH = 60L * 60 * 1000;
+
+    /**
+     * the length in milliseconds of the steps to which changes are kept
+     */
+    static final long RESOLUTION = 1000;
+
+    /**
+     * how long segments are kept, in milliseconds
+     */
+    static final long RETENTION = 400L * 24 * 60 * 60 * 1000;
+
+    /**
+     * the number of segments kept
+     */
+    private int segmentCount;
+
+    /**
+     * the start time of each segment, a multiple of SEGMENT_LENGTH
+     */
+    private long[] starts;
+
+    /**
+     * the offset in data of the first point of each segment
+     */
+    private int[] offsets;
+
+    /**
+     * the occupancy at the start of each segment
+     */
+    private int[] firstValues;
+
+    /**
+     * the occupancy at the end of each segment
+     */
+    private int[] lastValues;
+
+    /**
+     * the lowest occupancy held for any time in each segment, up to the latest point for the last
+     */
+    private int[] minValues;
+
+    /**
+     * the highest occupancy held for any time in each segment, up to the latest point for the last
+     */
+    private int[] maxValues;
+
+    /**
+     * the sum of the occupancy over each millisecond of each segment, up to the latest point for the last
+     */
+    private long[] areas;
+
+    /**
+     * the encoded points of all the segments, in time order
+     */
+    private byte[] data;
+
+    /**
+     * the number of bytes of data in use
+     */
+    private int length;
+
+    /**
+     * the time from which the occupancy is known
+     */
+    private long origin;
+
+    /**
+     * the time of the latest point held in data, or the start of the last segment if that is later
+     */
+    private long lastTime;
+
+    /**
+     * the occupancy since the latest point held in data
+     */
+    private int lastValue;
+
+    /**
+     * the start of the step in which the occupancy last changed, which is not yet held in data
+     */
+    private long pendingTime;
+
+    /**
+     * the occupancy since pendingTime
+     */
+    private int pendingValue;
+
+
+    //constructor
+
+    /**
+     * Initialises a new OccupancySeries object with no points.
+     */
+    OccupancySeries()
+    {
+        starts = new long[8];
+        offsets = new int[8];
+        firstValues = new int[8];
+        lastValues = new int[8];
+        minValues = new int[8];
+        maxValues = new int[8];
+        areas = new long[8];
+        data = new byte[64];
+    }
+
+
+    //package protocol
+
+    /**
+     * Records that the occupancy became aValue at aTime. A time earlier than the latest
+     * one recorded is taken as the latest one.
+     *
+     * @param aTime a time in milliseconds since 1 January 1970
+     * @param aValue the occupancy from that time
+     */
+    void record(long aTime, int aValue)
+    {
+        long time = aTime - Math.floorMod(aTime, RESOLUTION);
+        if (segmentCount == 0)
+        {
+            origin = time;
+            lastTime = time;
+            lastValue = aValue;
+            pendingTime = time;
+            pendingValue = aValue;
+            startSegment(time);
+            return;
+        }
+        if (time > pendingTime)
+        {
+            append(pendingTime, pendingValue);
+            pendingTime = time;
+        }
+        pendingValue = aValue;
+    }
+
+
+    /**
+     * Returns the occupancy at aTime.
+     *
+     * @param aTime a time in milliseconds since 1 January 1970
+     *
+     * @return the occupancy, or -1 if it is not known at that time
+     */
+    int valueAt(long aTime)
+    {
+        if (segmentCount == 0 || aTime < origin)
+        {
+            return -1;
+        }
+        if (aTime >= pendingTime)
+        {
+            return pendingValue;
+        }
+        int i = segmentAt(aTime);
+        if (aTime >= starts[i] + SEGMENT_LENGTH)
+        {
+            return lastValues[i];
+        }
+        long time = Math.max(starts[i], origin);
+        int value = firstValues[i];
+        int end = segmentEnd(i);
+        int position = offsets[i];
+        while (position < end)
+        {
+            long delta = readVarLong(position) * RESOLUTION;
+            position = skipVarLong(position);
+            if (time + delta > aTime)
+            {
+                break;
+            }
+            time += delta;
+            value += unZigZag(readVarLong(position));
+            position = skipVarLong(position);
+        }
+        return value;
+    }
+
+
+    /**
+     * Summarises the occupancy from aFrom up to aTo, as far as it is known before aNow.
+     *
+     * @param aFrom the start of the range in milliseconds since 1 January 1970
+     * @param aTo the end of the range, after aFrom
+     * @param aNow the current time
+     *
+     * @return an OccupancySummary object
+     */
+    OccupancySummary summarise(long aFrom, long aTo, long aNow)
+    {
+        Accumulator total = new Accumulator();
+        if (segmentCount == 0)
+        {
+            return total.toSummary(aFrom, aTo);
+        }
+        long from = Math.max(aFrom, origin);
+        long to = Math.min(aTo, Math.max(aNow, pendingTime + RESOLUTION));
+        long held = Math.min(to, pendingTime);
+        for (int i = segmentAt(from); i < segmentCount && starts[i] < held; i++)
+        {
+            long start = Math.max(starts[i], origin);
+            long end = starts[i] + SEGMENT_LENGTH;
+            if (i < segmentCount - 1 && from <= start && held >= end)
+            {
+                total.add(minValues[i], maxValues[i], areas[i], end - start, lastValues[i]);
+            }
+            else
+            {
+                scan(i, from, held, total);
+            }
+            long gapEnd = (i < segmentCount - 1) ? starts[i + 1] : held;
+            total.add(lastValues[i], Math.max(from, end), Math.min(held, gapEnd));
+        }
+        if (pendingTime >= from && pendingTime < to)
+        {
+            total.add(pendingValue);
+        }
+        total.add(pendingValue, Math.max(from, pendingTime), to);
+        return total.toSummary(aFrom, aTo);
+    }
+
+
+    /**
+     * Returns the number of bytes used to hold the points.
+     *
+     * @return the size of the encoded points
+     */
+    int getEncodedSize()
+    {
+        return length;
+    }
+
+
+    //private protocol
+
+    /**
+     * Adds to data the point at which the occupancy became aValue, unless it already was aValue.
+     */
+    private void append(long aTime, int aValue)
+    {
+        if (aValue == lastValue)
+        {
+            return;
+        }
+        long time = aTime;
+        int last = segmentCount - 1;
+        if (time >= starts[last] + SEGMENT_LENGTH)
+        {
+            areas[last] += (long) lastValue * (starts[last] + SEGMENT_LENGTH - lastTime);
+            held(last, lastValue);
+            startSegment(time);
+            last = segmentCount - 1;
+            lastTime = Math.max(starts[last], origin);
+        }
+        if (time > lastTime)
+        {
+            held(last, lastValue);
+        }
+        areas[last] += (long) lastValue * (time - lastTime);
+        putVarLong((time - lastTime) / RESOLUTION);
+        putVarLong(zigZag(aValue - lastValue));
+        lastTime = time;
+        lastValue = aValue;
+        lastValues[last] = aValue;
+    }
+
+
+    /**
+     * Adds aValue, which has been held for some time in segment i, to the lowest and
+     * highest occupancy of the segment. A value is only added once it has been held,
+     * so that one replaced within the step it was recorded in, such as the first value
+     * recorded, is never taken as a lowest or highest.
+     */
+    private void held(int i, int aValue)
+    {
+        minValues[i] = Math.min(minValues[i], aValue);
+        maxValues[i] = Math.max(maxValues[i], aValue);
+    }
+
+
+    /**
+     * Adds the occupancy over the part of segment i from aFrom up to aTo to aTotal.
+     */
+    private void scan(int i, long aFrom, long aTo, Accumulator aTotal)
+    {
+        long time = Math.max(starts[i], origin);
+        int value = firstValues[i];
+        int end = segmentEnd(i);
+        int position = offsets[i];
+        while (position < end && time < aTo)
+        {
+            long next = time + readVarLong(position) * RESOLUTION;
+            position = skipVarLong(position);
+            aTotal.add(value, Math.max(aFrom, time), Math.min(aTo, next));
+            time = next;
+            value += unZigZag(readVarLong(position));
+            position = skipVarLong(position);
+            if (time >= aFrom && time < aTo)
+            {
+                aTotal.add(value);
+            }
+        }
+        aTotal.add(value, Math.max(aFrom, time), Math.min(aTo, starts[i] + SEGMENT_LENGTH));
+    }
+
+
+    /**
+     * Returns the index of the last segment starting at or before aTime, or 0 if there is none.
+     */
+    private int segmentAt(long aTime)
+    {
+        int index = Arrays.binarySearch(starts, 0, segmentCount, aTime);
+        if (index < 0)
+        {
+            index = -index - 2;
+        }
+        return Math.max(0, index);
+    }
+
+
+    /**
+     * Returns the offset in data just after the points of segment i.
+     */
+    private int segmentEnd(int i)
+    {
+        return (i < segmentCount - 1) ? offsets[i + 1] : length;
+    }
+
+
+    /**
+     * Starts a new segment for the points at and after aTime, dropping segments that
+     * have passed out of RETENTION.
+     */
+    private void startSegment(long aTime)
+    {
+        dropBefore(aTime - RETENTION);
+        if (segmentCount == starts.length)
+        {
+            int capacity = Math.max(8, 2 * segmentCount);
+            starts = Arrays.copyOf(starts, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            firstValues = Arrays.copyOf(firstValues, capacity);
+            lastValues = Arrays.copyOf(lastValues, capacity);
+            minValues = Arrays.copyOf(minValues, capacity);
+            maxValues = Arrays.copyOf(maxValues, capacity);
+            areas = Arrays.copyOf(areas, capacity);
+        }
+        int i = segmentCount++;
+        starts[i] = aTime - Math.floorMod(aTime, SEGMENT_LENGTH);
+        offsets[i] = length;
+        firstValues[i] = lastValue;
+        lastValues[i] = lastValue;
+        minValues[i] = Integer.MAX_VALUE;
+        maxValues[i] = Integer.MIN_VALUE;
+        areas[i] = 0;
+        if (i == 0)
+        {
+            origin = Math.max(origin, starts[0]);
+        }
+    }
+
+
+    /**
+     * Drops the segments that end at or before aTime.
+     */
+    private void dropBefore(long aTime)
+    {
+        int dropped = 0;
+        while (dropped < segmentCount && starts[dropped] + SEGMENT_LENGTH <= aTime)
+        {
+            dropped++;
+        }
+        if (dropped == 0)
+        {
+            return;
+        }
+        int bytes = (dropped < segmentCount) ? offsets[dropped] : length;
+        segmentCount -= dropped;
+        System.arraycopy(starts, dropped, starts, 0, segmentCount);
+        System.arraycopy(offsets, dropped, offsets, 0, segmentCount);
+        System.arraycopy(firstValues, dropped, firstValues, 0, segmentCount);
+        System.arraycopy(lastValues, dropped, lastValues, 0, segmentCount);
+        System.arraycopy(minValues, dropped, minValues, 0, segmentCount);
+        System.arraycopy(maxValues, dropped, maxValues, 0, segmentCount);
+        System.arraycopy(areas, dropped, areas, 0, segmentCount);
+        for (int i = 0; i < segmentCount; i++)
+        {
+            offsets[i] -= bytes;
+        }
+        length -= bytes;
+        System.arraycopy(data, bytes, data, 0, length);
+        origin = (segmentCount > 0) ? starts[0] : aTime;
+    }
+
+
+    /**
+     * Writes the series without the unused ends of its arrays.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException
+    {
+        starts = Arrays.copyOf(starts, segmentCount);
+        offsets = Arrays.copyOf(offsets, segmentCount);
+        firstValues = Arrays.copyOf(firstValues, segmentCount);
+        lastValues = Arrays.copyOf(lastValues, segmentCount);
+        minValues = Arrays.copyOf(minValues, segmentCount);
+        maxValues = Arrays.copyOf(maxValues, segmentCount);
+        areas = Arrays.copyOf(areas, segmentCount);
+        data = Arrays.copyOf(data, length);
+        out.defaultWriteObject();
+    }
+
+
+    /**
+     * Appends aValue, which must not be negative, to data seven bits at a time.
+     */
+    private void putVarLong(long aValue)
+    {
+        if (length + 10 > data.length)
+        {
+            data = Arrays.copyOf(data, 2 * data.length + 10);
+        }
+        while ((aValue & ~0x7FL) != 0)
+        {
+            data[length++] = (byte) ((aValue & 0x7F) | 0x80);
+            aValue >>>= 7;
+        }
+        data[length++] = (byte) aValue;
+    }
+
+
+    /**
+     * Returns the variable length integer at aPosition of data.
+     */
+    private long readVarLong(int aPosition)
+    {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = data[aPosition++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (b < 0);
+        return value;
+    }
+
+
+    /**
+     * Returns the position just after the variable length integer at aPosition of data.
+     */
+    private int skipVarLong(int aPosition)
+    {
+        while (data[aPosition++] < 0)
+        {
+        }
+        return aPosition;
+    }
+
+
+    /**
+     * Maps a signed change onto an unsigned one, small changes either way staying small.
+     */
+    private static long zigZag(int aChange)
+    {
+        return ((aChange << 1) ^ (aChange >> 31)) & 0xFFFFFFFFL;
+    }
+
+
+    /**
+     * Reverses zigZag.
+     */
+    private static int unZigZag(long aValue)
+    {
+        int value = (int) aValue;
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+
+    /**
+     * Accumulator objects gather the lowest, highest and summed occupancy over a range.
+     */
+    private static class Accumulator
+    {
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        private long area;
+        private long duration;
+        private int last = -1;
+
+        /**
+         * Adds the occupancy aValue held from aFrom up to aTo, if aTo is after aFrom.
+         */
+        void add(int aValue, long aFrom, long aTo)
+        {
+            if (aTo > aFrom)
+            {
+                add(aValue);
+                area += (long) aValue * (aTo - aFrom);
+                duration += aTo - aFrom;
+            }
+        }
+
+        /**
+         * Adds the occupancy aValue reached at a point in time, however briefly it was held.
+         */
+        void add(int aValue)
+        {
+            min = Math.min(min, aValue);
+            max = Math.max(max, aValue);
+            last = aValue;
+        }
+
+        /**
+         * Adds the summary of a whole segment.
+         */
+        void add(int aMin, int aMax, long anArea, long aDuration, int aLast)
+        {
+            min = Math.min(min, aMin);
+            max = Math.max(max, aMax);
+            area += anArea;
+            duration += aDuration;
+            last = aLast;
+        }
+
+        OccupancySummary toSummary(long aFrom, long aTo)
+        {
+            if (last < 0)
+            {
+                return new OccupancySummary(aFrom, aTo, -1, -1, -1.0, -1, 0);
+            }
+            double mean = (duration == 0) ? last : (double) area / duration;
+            return new OccupancySummary(aFrom, aTo, min, max, mean, last, duration);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package hospitalcore;
+
+import java.util.Date;
+
+/**
+ * OccupancySummary objects describe the number of patients on a ward, or cared for
+ * by a team, over a period of time: the lowest, highest and mean number, and the number
+ * at the end of the part of the period for which the occupancy is known.
+ */
+public class OccupancySummary
+{
+    //attributes
+
+    /**
+     * the start of the period, in milliseconds since 1 January 1970
+     */
+    private final long start;
+
+    /**
+     * the end of the period, in milliseconds since 1 January 1970
+     */
+    private final long end;
+
+    /**
+     * the lowest occupancy in the period, or -1 if it is not known
+     */
+    private final int min;
+
+    /**
+     * the highest occupancy in the period, or -1 if it is not known
+     */
+    private final int max;
+
+    /**
+     * the mean occupancy over the known part of the period, or -1 if it is not known
+     */
+    private final double mean;
+
+    /**
+     * the occupancy at the end of the known part of the period, or -1 if it is not known
+     */
+    private final int last;
+
+    /**
+     * the number of milliseconds of the period for which the occupancy is known
+     */
+    private final long coverage;
+
+
+    //constructor
+
+    /**
+     * Initialises a new OccupancySummary object with the given attribute values.
+     *
+     * @param aStart the start of the period
+     * @param anEnd the end of the period
+     * @param aMin the lowest occupancy
+     * @param aMax the highest occupancy
+     * @param aMean the mean occupancy
+     * @param aLast the occupancy at the end of the known part
+     * @param aCoverage the length of the known part in milliseconds
+     */
+    OccupancySummary(long aStart, long anEnd, int aMin, int aMax, double aMean, int aLast, long aCoverage)
+    {
+        start = aStart;
+        end = anEnd;
+        min = aMin;
+        max = aMax;
+        mean = aMean;
+        last = aLast;
+        coverage = aCoverage;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the start of the period.
+     *
+     * @return start, in milliseconds since 1 January 1970
+     */
+    public long getStart()
+    {
+        return start;
+    }
+
+
+    /**
+     * Returns the end of the period.
+     *
+     * @return end, in milliseconds since 1 January 1970
+     */
+    public long getEnd()
+    {
+        return end;
+    }
+
+
+    /**
+     * Returns whether the occupancy is known for any part of the period.
+     *
+     * @return true if it is, false otherwise
+     */
+    public boolean isKnown()
+    {
+        return last >= 0;
+    }
+
+
+    /**
+     * Returns the lowest occupancy in the period.
+     *
+     * @return min, or -1 if it is not known
+     */
+    public int getMin()
+    {
+        return min;
+    }
+
+
+    /**
+     * Returns the highest occupancy in the period.
+     *
+     * @return max, or -1 if it is not known
+     */
+    public int getMax()
+    {
+        return max;
+    }
+
+
+    /**
+     * Returns the mean occupancy over the part of the period for which it is known.
+     *
+     * @return mean, or -1 if it is not known
+     */
+    public double getMean()
+    {
+        return mean;
+    }
+
+
+    /**
+     * Returns the occupancy at the end of the part of the period for which it is known.
+     *
+     * @return last, or -1 if it is not known
+     */
+    public int getLast()
+    {
+        return last;
+    }
+
+
+    /**
+     * Returns the length of the part of the period for which the occupancy is known.
+     *
+     * @return coverage, in milliseconds
+     */
+    public long getCoverage()
+    {
+        return coverage;
+    }
+
+
+    /**
+     * Returns a string representation of the summary.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        if (!isKnown())
+        {
+            return new Date(start) + ": unknown";
+        }
+        return new Date(start) + ": min " + min + ", max " + max + ", mean "
+                + String.format("%.2f", mean) + ", last " + last;
+    }
+}
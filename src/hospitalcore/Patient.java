@@ -10,11 +10,33 @@ import m256date.*;
 public class Patient implements java.io.Serializable
 {
     //attributes
+
+    /**
+     * the version of the serialized form, kept at that of the first release so that
+     * the data files it wrote can still be read
+     */
+    private static final long serialVersionUID = -7680113100395492029L;
+    
+    /**
+     * the name of the patient
+     */
+    private Name name; 
+    
+    /**
+     * the sex of the patient
+     */
+    private Sex sex; 
+    
+    /**
+     * the date of birth of the patient
+     */
+    private CompactDate dateOfBirth; 
     
     /**
-     * the person who is a patient
+     * the id of the patient, unique among the patients ever admitted to the hospital;
+     * 0 until it is registered
      */
-    private Person person; 
+    private int id; 
    
     
     //links
@@ -30,10 +52,27 @@ public class Patient implements java.io.Serializable
     private Team team; 
     
     /**
-     * all the linked Doctor objects
+     * all the linked Doctor objects; null until this patient is first treated
      */
     private Collection<Doctor> doctors; 
     
+    /**
+     * the store holding this patient's attributes, ward and team, or null if they
+     * are held by this object; it is read once by each getter, since a reader of a
+     * snapshot may run while the patient is discharged
+     */
+    private volatile ColumnarPatientStore store; 
+    
+    /**
+     * this patient's row in store
+     */
+    private int row; 
+    
+    /**
+     * this patient's slot in the hospital's patient index, while it is admitted
+     */
+    private transient int slot; 
+    
     
     //constructor
     
@@ -44,10 +83,25 @@ public class Patient implements java.io.Serializable
      * @param aSex the sex of the patient
      * @param aDate the date of birth of the patient
      */
-    Patient(Name aName, Sex aSex, M256Date aDate)
+    Patient(Name aName, Sex aSex, CompactDate aDate)
+    {
+        reset(aName, aSex, aDate);
+    }
+    
+    
+    /**
+     * Initialises a new Patient object whose attributes, ward and team are held in
+     * a row of aStore with the given attribute values.
+     *
+     * @param aStore a columnar patient store
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     */
+    Patient(ColumnarPatientStore aStore, Name aName, Sex aSex, CompactDate aDate)
     {
-        person = new Person(aName, aSex, aDate);
-        doctors = new HashSet<Doctor>();
+        store = aStore;
+        row = aStore.add(aName, aSex, aDate);
     }
     
     
@@ -60,7 +114,8 @@ public class Patient implements java.io.Serializable
      */
     public Name getName()
     {
-        return person.getName();
+        ColumnarPatientStore theStore = store;
+        return (theStore == null) ? name : theStore.getName(row);
     }
     
     
@@ -71,7 +126,8 @@ public class Patient implements java.io.Serializable
      */
     public Sex getSex()
     {
-        return person.getSex();
+        ColumnarPatientStore theStore = store;
+        return (theStore == null) ? sex : theStore.getSex(row);
     }
     
     
@@ -82,7 +138,8 @@ public class Patient implements java.io.Serializable
      */
     public int getAge()
     {
-        return person.getAge();
+        ColumnarPatientStore theStore = store;
+        return (theStore == null) ? dateOfBirth.getAge() : theStore.getAge(row);
     }
     
     
@@ -93,7 +150,32 @@ public class Patient implements java.io.Serializable
      */
     public M256Date getDateOfBirth()
     {
-        return person.getDateOfBirth();
+        CompactDate date = getBirthDate();
+        return (date == null) ? null : date.toM256Date();
+    }
+    
+    
+    /**
+     * Returns the date of birth of this patient as a CompactDate.
+     *
+     * @return dateOfBirth
+     */
+    public CompactDate getBirthDate()
+    {
+        ColumnarPatientStore theStore = store;
+        return (theStore == null) ? dateOfBirth : theStore.getBirthDate(row);
+    }
+    
+    
+    /**
+     * Returns the id of this patient, which stays the same when the hospital is saved and
+     * read back in.
+     *
+     * @return id
+     */
+    public int getId()
+    {
+        return id;
     }
     
     
@@ -104,12 +186,45 @@ public class Patient implements java.io.Serializable
      */
     public String toString()
     {
-        return person.toString();
+        return getName() + " " + getSex() + " " + getBirthDate();
     }
     
    
     //package protocol
     
+    /**
+     * Sets the id of this patient; invoked only by EntityRegistry.
+     *
+     * @param anId the id
+     */
+    void setId(int anId)
+    {
+        id = anId;
+    }
+    
+    
+    /**
+     * Returns the slot of this patient in the hospital's patient index.
+     *
+     * @return slot
+     */
+    int getSlot()
+    {
+        return slot;
+    }
+    
+    
+    /**
+     * Sets the slot of this patient; invoked only by PatientBitmapIndex.
+     *
+     * @param aSlot the slot
+     */
+    void setSlot(int aSlot)
+    {
+        slot = aSlot;
+    }
+    
+    
     /**
      * Returns the ward this patient is on.
      *
@@ -117,7 +232,8 @@ public class Patient implements java.io.Serializable
      */
     Ward getWard()
     {
-        return ward;
+        ColumnarPatientStore theStore = store;
+        return (theStore == null) ? ward : theStore.getWard(row);
     }
     
     
@@ -128,7 +244,7 @@ public class Patient implements java.io.Serializable
      */
     ConsultantDoctor getConsultantDoctor()
     {
-        return team.getConsultantDoctor();
+        return getTeam().getConsultantDoctor();
     }
     
     
@@ -139,7 +255,8 @@ public class Patient implements java.io.Serializable
      */
     Team getTeam()
     {
-        return team;
+        ColumnarPatientStore theStore = store;
+        return (theStore == null) ? team : theStore.getTeam(row);
     }
     
     
@@ -150,13 +267,18 @@ public class Patient implements java.io.Serializable
      */
     Collection<Doctor> getDoctors()
     {
+        if (doctors == null)
+        {
+            return Collections.emptySet();
+        }
         return doctors;
     }
     
     
     /**
      * Records the treatment of this patient by the doctor.
-     * Ensures that a reference to aDoctor is recorded.
+     * Ensures that a reference to aDoctor is recorded, and counts the treatment
+     * against aDoctor and the receiver's team.
      *
      * @param aDoctor a doctor
      *
@@ -165,9 +287,15 @@ public class Patient implements java.io.Serializable
      */
     void recordTreatmentBy(Doctor aDoctor)
     {
-        if (team.contains(aDoctor))
+        if (getTeam().contains(aDoctor))
         {
+            if (doctors == null)
+            {
+                doctors = new HashSet<Doctor>();
+            }
             doctors.add(aDoctor);
+            aDoctor.getTreatmentCounter().record();
+            getTeam().getTreatmentCounter().record();
         }
         else
         {
@@ -186,24 +314,129 @@ public class Patient implements java.io.Serializable
      */
     void admit(Ward aWard, Team aTeam)
     {
-        ward = aWard;
-        ward.addPatient(this);
-        team = aTeam;
-        team.addPatient(this);
+        setWard(aWard);
+        aWard.addPatient(this);
+        setTeam(aTeam);
+        aTeam.addPatient(this);
+    }
+    
+    
+    /**
+     * Records the transfer of this patient to another ward.
+     * The reference to the current ward is replaced by a reference to aWard; the current
+     * ward removes its reference to the receiver and aWard records a reference to the receiver.
+     *
+     * @param aWard a ward
+     */
+    void transferTo(Ward aWard)
+    {
+        getWard().removePatient(this);
+        setWard(aWard);
+        aWard.addPatient(this);
     }
     
     
     /**
      * Records the discharge of this patient.
      *
-     * All links with the receiver are removed.
+     * All links with the receiver are removed. A patient held in a columnar store
+     * takes its attributes back from the store before it lets go of the store, and
+     * then gives up its row.
      */
     void discharge()
     {
-        ward.removePatient(this);
+        getWard().removePatient(this);
+        getTeam().removePatient(this);
+        if (store != null)
+        {
+            ColumnarPatientStore oldStore = store;
+            reset(oldStore.getName(row), oldStore.getSex(row), oldStore.getBirthDate(row));
+            store = null;
+            oldStore.free(row);
+        }
         ward = null;
-        team.removePatient(this);
         team = null;
-        doctors = new HashSet<Doctor>();
+        if (doctors != null)
+        {
+            doctors.clear();
+        }
+    }
+    
+    
+    /**
+     * Gives this patient the given attribute values, as if it had just been created.
+     * This is used to reuse the Patient object of a discharged patient.
+     *
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     */
+    void reset(Name aName, Sex aSex, CompactDate aDate)
+    {
+        name = aName;
+        sex = aSex;
+        dateOfBirth = aDate;
+    }
+    
+    
+    //private protocol
+    
+    /**
+     * Reads in this patient. A patient saved by the first release held its name, sex
+     * and date of birth in a Person object, from which they are taken.
+     */
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException
+    {
+        java.io.ObjectInputStream.GetField fields = in.readFields();
+        if (fields.getObjectStreamClass().getField("person") != null)
+        {
+            Person person = (Person) fields.get("person", null);
+            reset(person.getName(), person.getSex(), person.getBirthDate());
+        }
+        else
+        {
+            reset((Name) fields.get("name", null), (Sex) fields.get("sex", null),
+                    (CompactDate) fields.get("dateOfBirth", null));
+        }
+        id = fields.get("id", 0);
+        ward = (Ward) fields.get("ward", null);
+        team = (Team) fields.get("team", null);
+        @SuppressWarnings("unchecked")
+        Collection<Doctor> theDoctors = (Collection<Doctor>) fields.get("doctors", null);
+        doctors = theDoctors;
+        store = (ColumnarPatientStore) fields.get("store", null);
+        row = fields.get("row", 0);
+    }
+    
+    
+    /**
+     * Records a reference to aWard, in the store if this patient is held in one.
+     */
+    private void setWard(Ward aWard)
+    {
+        if (store == null)
+        {
+            ward = aWard;
+        }
+        else
+        {
+            store.setWard(row, aWard);
+        }
+    }
+    
+    
+    /**
+     * Records a reference to aTeam, in the store if this patient is held in one.
+     */
+    private void setTeam(Team aTeam)
+    {
+        if (store == null)
+        {
+            team = aTeam;
+        }
+        else
+        {
+            store.setTeam(row, aTeam);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,270 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+
+/**
+ * PatientBitmapIndex objects hold the admitted patients of a hospital as sets of small
+ * ints, so that the patients meeting several conditions are found by combining sets
+ * rather than by looking at each patient.<p>
+ * Each admitted patient is given a slot, the lowest not held by another patient, and
+ * the index keeps a RoaringBitmap of the slots of the patients on each ward, cared for
+ * by each team, treated by each doctor and of each sex. The hospital tells the index
+ * of each admission, transfer, treatment and discharge.
+ */
+class PatientBitmapIndex
+{
+    //attributes
+
+    /**
+     * the number of slots ever used
+     */
+    private int slots;
+
+
+    //links
+
+    /**
+     * the patient in each slot, or null if the slot is free
+     */
+    private Patient[] patients;
+
+    /**
+     * the slots given up by discharged patients and not yet used again
+     */
+    private final BitSet freeSlots;
+
+    /**
+     * the slots of all the admitted patients
+     */
+    private final RoaringBitmap all;
+
+    /**
+     * the slots of the patients on each ward
+     */
+    private final Map<Ward, RoaringBitmap> byWard;
+
+    /**
+     * the slots of the patients cared for by each team
+     */
+    private final Map<Team, RoaringBitmap> byTeam;
+
+    /**
+     * the slots of the patients treated by each doctor
+     */
+    private final Map<Doctor, RoaringBitmap> byDoctor;
+
+    /**
+     * the slots of the patients of each sex
+     */
+    private final Map<Sex, RoaringBitmap> bySex;
+
+
+    //constructor
+
+    /**
+     * Initialises a new PatientBitmapIndex object holding the patients on the wards.
+     *
+     * @param aWardCollection the wards of a hospital
+     */
+    PatientBitmapIndex(Collection<Ward> aWardCollection)
+    {
+        patients = new Patient[64];
+        freeSlots = new BitSet();
+        all = new RoaringBitmap();
+        byWard = new HashMap<Ward, RoaringBitmap>();
+        byTeam = new HashMap<Team, RoaringBitmap>();
+        byDoctor = new HashMap<Doctor, RoaringBitmap>();
+        bySex = new EnumMap<Sex, RoaringBitmap>(Sex.class);
+        for (Ward aWard : aWardCollection)
+        {
+            for (Patient aPatient : aWard.getPatients())
+            {
+                add(aPatient);
+            }
+        }
+    }
+
+
+    //package protocol
+
+    /**
+     * Gives the newly admitted patient a slot and adds it to the sets of its ward, team,
+     * doctors and sex.
+     *
+     * @param aPatient an admitted patient
+     */
+    void add(Patient aPatient)
+    {
+        int slot = freeSlots.nextSetBit(0);
+        if (slot < 0)
+        {
+            slot = slots++;
+            if (slot == patients.length)
+            {
+                patients = Arrays.copyOf(patients, slot * 2);
+            }
+        }
+        else
+        {
+            freeSlots.clear(slot);
+        }
+        patients[slot] = aPatient;
+        aPatient.setSlot(slot);
+        all.add(slot);
+        bitmap(byWard, aPatient.getWard()).add(slot);
+        bitmap(byTeam, aPatient.getTeam()).add(slot);
+        bitmap(bySex, aPatient.getSex()).add(slot);
+        for (Doctor aDoctor : aPatient.getDoctors())
+        {
+            bitmap(byDoctor, aDoctor).add(slot);
+        }
+    }
+
+
+    /**
+     * Moves the patient from the set of aWard to the set of the ward it is now on.
+     *
+     * @param aPatient an indexed patient
+     * @param aWard the ward aPatient has been transferred from
+     */
+    void transferred(Patient aPatient, Ward aWard)
+    {
+        int slot = aPatient.getSlot();
+        bitmap(byWard, aWard).remove(slot);
+        bitmap(byWard, aPatient.getWard()).add(slot);
+    }
+
+
+    /**
+     * Adds the patient to the set of aDoctor.
+     *
+     * @param aPatient an indexed patient
+     * @param aDoctor a doctor that has treated aPatient
+     */
+    void treated(Patient aPatient, Doctor aDoctor)
+    {
+        bitmap(byDoctor, aDoctor).add(aPatient.getSlot());
+    }
+
+
+    /**
+     * Removes the patient from all its sets and frees its slot. The patient must not
+     * yet have been discharged, so that its ward, team and doctors are still known.
+     *
+     * @param aPatient an indexed patient
+     */
+    void remove(Patient aPatient)
+    {
+        int slot = aPatient.getSlot();
+        all.remove(slot);
+        bitmap(byWard, aPatient.getWard()).remove(slot);
+        bitmap(byTeam, aPatient.getTeam()).remove(slot);
+        bitmap(bySex, aPatient.getSex()).remove(slot);
+        for (Doctor aDoctor : aPatient.getDoctors())
+        {
+            bitmap(byDoctor, aDoctor).remove(slot);
+        }
+        patients[slot] = null;
+        freeSlots.set(slot);
+    }
+
+
+    /**
+     * Returns the slots of all the admitted patients; the set must not be changed.
+     *
+     * @return a RoaringBitmap object
+     */
+    RoaringBitmap all()
+    {
+        return all;
+    }
+
+
+    /**
+     * Returns the slots of the patients on aWard; the set must not be changed.
+     *
+     * @param aWard a ward
+     *
+     * @return a RoaringBitmap object
+     */
+    RoaringBitmap onWard(Ward aWard)
+    {
+        return bitmap(byWard, aWard);
+    }
+
+
+    /**
+     * Returns the slots of the patients cared for by aTeam; the set must not be changed.
+     *
+     * @param aTeam a team
+     *
+     * @return a RoaringBitmap object
+     */
+    RoaringBitmap caredForBy(Team aTeam)
+    {
+        return bitmap(byTeam, aTeam);
+    }
+
+
+    /**
+     * Returns the slots of the patients treated by aDoctor; the set must not be changed.
+     *
+     * @param aDoctor a doctor
+     *
+     * @return a RoaringBitmap object
+     */
+    RoaringBitmap treatedBy(Doctor aDoctor)
+    {
+        return bitmap(byDoctor, aDoctor);
+    }
+
+
+    /**
+     * Returns the slots of the patients of aSex; the set must not be changed.
+     *
+     * @param aSex a sex
+     *
+     * @return a RoaringBitmap object
+     */
+    RoaringBitmap ofSex(Sex aSex)
+    {
+        return bitmap(bySex, aSex);
+    }
+
+
+    /**
+     * Returns the patients in the slots of aBitmap.
+     *
+     * @param aBitmap a set of slots
+     *
+     * @return a list of Patient objects, in order of slot
+     */
+    List<Patient> patientsIn(RoaringBitmap aBitmap)
+    {
+        int[] members = aBitmap.toArray();
+        List<Patient> results = new ArrayList<Patient>(members.length);
+        for (int slot : members)
+        {
+            results.add(patients[slot]);
+        }
+        return results;
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns the bitmap for aKey in aMap, adding an empty one if there is none.
+     */
+    private static <K> RoaringBitmap bitmap(Map<K, RoaringBitmap> aMap, K aKey)
+    {
+        RoaringBitmap result = aMap.get(aKey);
+        if (result == null)
+        {
+            result = new RoaringBitmap();
+            aMap.put(aKey, result);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+
+/**
+ * PatientPool objects hold the Patient objects of discharged patients so that
+ * they can be reused for later admissions instead of creating new ones.
+ */
+class PatientPool
+{
+    //attributes
+
+    /**
+     * the greatest number of Patient objects held
+     */
+    private final int capacity;
+
+
+    //links
+
+    /**
+     * the Patient objects available for reuse
+     */
+    private final ArrayDeque<Patient> free;
+
+
+    //constructor
+
+    /**
+     * Initialises a new, empty PatientPool object holding at most aCapacity Patient objects.
+     *
+     * @param aCapacity the greatest number of Patient objects held
+     */
+    PatientPool(int aCapacity)
+    {
+        capacity = aCapacity;
+        free = new ArrayDeque<Patient>(aCapacity);
+    }
+
+
+    //package protocol
+
+    /**
+     * Returns a Patient object with the given attribute values, reusing one from the
+     * pool if there is one.
+     *
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     *
+     * @return a Patient object not linked to any ward, team or doctor
+     */
+    Patient acquire(Name aName, Sex aSex, CompactDate aDate)
+    {
+        Patient aPatient = free.pollFirst();
+        if (aPatient == null)
+        {
+            return new Patient(aName, aSex, aDate);
+        }
+        aPatient.reset(aName, aSex, aDate);
+        return aPatient;
+    }
+
+
+    /**
+     * Adds the Patient object of a discharged patient to the pool, unless the pool is full.
+     *
+     * @param aPatient a discharged patient
+     */
+    void release(Patient aPatient)
+    {
+        if (free.size() < capacity)
+        {
+            aPatient.reset(null, null, null);
+            free.offerFirst(aPatient);
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package hospitalcore;
+
+import java.util.*;
+import java.util.concurrent.*;
+import m256people.*;
+
+/**
+ * PatientQuery objects find the patients meeting a set of conditions on the patients
+ * themselves and on their wards, teams and treating doctors.<p>
+ * A query is built by calling its condition methods, each of which returns the receiver,
+ * and is run by one of list(), count(), select() or groupBy() against a snapshot of the
+ * hospital taken at that moment. Before looking at any patient the query narrows down the
+ * wards and teams that can qualify, then starts from the patients with the required name
+ * on each qualifying ward, found by a binary search of the ward's patients in order of
+ * name, or else from whichever of the patients of the qualifying teams or the patients
+ * on the qualifying wards is smaller, checking only the remaining conditions on each.
+ * Scans of wards can be run in parallel. Results come back ward by ward, except that
+ * those found from the patients of teams come back team by team.
+ */
+public class PatientQuery
+{
+    //attributes
+
+    /**
+     * the required name, or null
+     */
+    private Name name;
+
+    /**
+     * the required sex, or null
+     */
+    private Sex sex;
+
+    /**
+     * whether large scans are run in parallel
+     */
+    private boolean parallel;
+
+
+    //links
+
+    /**
+     * the hospital queried
+     */
+    private final HospCoord hospital;
+
+    /**
+     * the required ward, or null
+     */
+    private Ward ward;
+
+    /**
+     * the required team, or null
+     */
+    private Team team;
+
+    /**
+     * the doctor that must have treated the patient, or null
+     */
+    private Doctor doctor;
+
+    /**
+     * the conditions on wards
+     */
+    private final List<Criterion<Ward>> wardCriteria;
+
+    /**
+     * the conditions on teams
+     */
+    private final List<Criterion<Team>> teamCriteria;
+
+    /**
+     * the conditions on patients
+     */
+    private final List<Criterion<Patient>> patientCriteria;
+
+
+    //constructor
+
+    /**
+     * Initialises a new PatientQuery object over the hospital, with no conditions.
+     *
+     * @param aHospital the hospital to be queried
+     */
+    PatientQuery(HospCoord aHospital)
+    {
+        hospital = aHospital;
+        wardCriteria = new ArrayList<Criterion<Ward>>();
+        teamCriteria = new ArrayList<Criterion<Team>>();
+        patientCriteria = new ArrayList<Criterion<Patient>>();
+    }
+
+
+    //public protocol
+
+    /**
+     * Requires patients to be on the ward.
+     *
+     * @param aWard a ward
+     *
+     * @return the receiver
+     */
+    public PatientQuery onWard(Ward aWard)
+    {
+        ward = aWard;
+        return this;
+    }
+
+
+    /**
+     * Requires patients to be on wards meeting the criterion.
+     *
+     * @param aCriterion a condition on wards
+     *
+     * @return the receiver
+     */
+    public PatientQuery onWardsWhere(Criterion<Ward> aCriterion)
+    {
+        wardCriteria.add(aCriterion);
+        return this;
+    }
+
+
+    /**
+     * Requires patients to be of the given sex.
+     *
+     * @param aSex a sex
+     *
+     * @return the receiver
+     */
+    public PatientQuery ofSex(Sex aSex)
+    {
+        sex = aSex;
+        return this;
+    }
+
+
+    /**
+     * Requires patients to have the given name.
+     *
+     * @param aName a name
+     *
+     * @return the receiver
+     */
+    public PatientQuery named(Name aName)
+    {
+        name = aName;
+        return this;
+    }
+
+
+    /**
+     * Requires patients to be cared for by the team.
+     *
+     * @param aTeam a team
+     *
+     * @return the receiver
+     */
+    public PatientQuery caredForBy(Team aTeam)
+    {
+        team = aTeam;
+        return this;
+    }
+
+
+    /**
+     * Requires patients to be cared for by teams meeting the criterion.
+     *
+     * @param aCriterion a condition on teams
+     *
+     * @return the receiver
+     */
+    public PatientQuery caredForByTeamsWhere(Criterion<Team> aCriterion)
+    {
+        teamCriteria.add(aCriterion);
+        return this;
+    }
+
+
+    /**
+     * Requires patients to have been treated by the doctor.
+     *
+     * @param aDoctor a doctor
+     *
+     * @return the receiver
+     */
+    public PatientQuery treatedBy(Doctor aDoctor)
+    {
+        doctor = aDoctor;
+        return this;
+    }
+
+
+    /**
+     * Requires patients to meet the criterion.
+     *
+     * @param aCriterion a condition on patients
+     *
+     * @return the receiver
+     */
+    public PatientQuery where(Criterion<Patient> aCriterion)
+    {
+        patientCriteria.add(aCriterion);
+        return this;
+    }
+
+
+    /**
+     * Sets whether large scans of wards are split up and run in parallel.
+     *
+     * @param isParallel true if large scans are to be run in parallel
+     *
+     * @return the receiver
+     */
+    public PatientQuery parallel(boolean isParallel)
+    {
+        parallel = isParallel;
+        return this;
+    }
+
+
+    /**
+     * Returns the patients meeting all the conditions.
+     *
+     * @return a list of Patient objects
+     */
+    public List<Patient> list()
+    {
+        return select(new Projection<Patient>()
+        {
+            public Patient project(Patient aPatient, Ward aWard, Team aTeam)
+            {
+                return aPatient;
+            }
+        });
+    }
+
+
+    /**
+     * Returns the number of patients meeting all the conditions.
+     *
+     * @return the number of Patient objects
+     */
+    public int count()
+    {
+        return list().size();
+    }
+
+
+    /**
+     * Returns the value derived by the projection from each patient meeting all the conditions.
+     *
+     * @param aProjection a projection
+     *
+     * @return a list of the derived values
+     */
+    public <T> List<T> select(Projection<T> aProjection)
+    {
+        return run(hospital.snapshot(), aProjection);
+    }
+
+
+    /**
+     * Returns the patients meeting all the conditions, grouped by the value the projection
+     * derives from each. Groups are in the order their first patient was found.
+     *
+     * @param aProjection a projection giving the key of each patient's group
+     *
+     * @return a map from each key to the Patient objects with that key
+     */
+    public <K> Map<K, List<Patient>> groupBy(final Projection<K> aProjection)
+    {
+        List<Object[]> pairs = select(new Projection<Object[]>()
+        {
+            public Object[] project(Patient aPatient, Ward aWard, Team aTeam)
+            {
+                return new Object[] {aProjection.project(aPatient, aWard, aTeam), aPatient};
+            }
+        });
+        Map<K, List<Patient>> groups = new LinkedHashMap<K, List<Patient>>();
+        for (Object[] pair : pairs)
+        {
+            @SuppressWarnings("unchecked")
+            K key = (K) pair[0];
+            List<Patient> group = groups.get(key);
+            if (group == null)
+            {
+                group = new ArrayList<Patient>();
+                groups.put(key, group);
+            }
+            group.add((Patient) pair[1]);
+        }
+        return groups;
+    }
+
+
+    /**
+     * Returns a description of how the query would be run against the current state of the hospital.
+     *
+     * @return a String object describing the plan
+     */
+    public String explain()
+    {
+        return plan(hospital.snapshot()).toString();
+    }
+
+
+    /**
+     * Returns a projection giving the team caring for each patient.
+     *
+     * @return a Projection object
+     */
+    public static Projection<Team> byTeam()
+    {
+        return new Projection<Team>()
+        {
+            public Team project(Patient aPatient, Ward aWard, Team aTeam)
+            {
+                return aTeam;
+            }
+        };
+    }
+
+
+    /**
+     * Returns a projection giving the ward each patient is on.
+     *
+     * @return a Projection object
+     */
+    public static Projection<Ward> byWard()
+    {
+        return new Projection<Ward>()
+        {
+            public Ward project(Patient aPatient, Ward aWard, Team aTeam)
+            {
+                return aWard;
+            }
+        };
+    }
+
+
+    /**
+     * Returns a criterion met by patients older than the given age.
+     *
+     * @param anAge an age in years
+     *
+     * @return a Criterion object
+     */
+    public static Criterion<Patient> olderThan(final int anAge)
+    {
+        return new Criterion<Patient>()
+        {
+            public boolean matches(Patient aPatient, HospitalSnapshot aSnapshot)
+            {
+                return aPatient.getAge() > anAge;
+            }
+        };
+    }
+
+
+    /**
+     * Returns a criterion met by wards whose free beds are less than the given fraction of their capacity.
+     *
+     * @param aFraction a fraction between 0 and 1
+     *
+     * @return a Criterion object
+     */
+    public static Criterion<Ward> freeBedsBelow(final double aFraction)
+    {
+        return new Criterion<Ward>()
+        {
+            public boolean matches(Ward aWard, HospitalSnapshot aSnapshot)
+            {
+                return aSnapshot.getNumberOfFreeBeds(aWard) < aFraction * aWard.getCapacity();
+            }
+        };
+    }
+
+
+    //private protocol
+
+    /**
+     * Works out which wards and teams can qualify and where to start looking for patients.
+     */
+    private Plan plan(HospitalSnapshot aSnapshot)
+    {
+        Plan thePlan = new Plan(aSnapshot);
+        for (Ward aWard : aSnapshot.getWards())
+        {
+            if ((ward == null || aWard == ward) && (sex == null || aWard.getType() == sex)
+                    && meetsAll(wardCriteria, aWard, aSnapshot))
+            {
+                thePlan.wards.add(aWard);
+                thePlan.wardRows += aSnapshot.getPatients(aWard).size();
+            }
+        }
+        for (Team aTeam : aSnapshot.getTeams())
+        {
+            if ((team == null || aTeam == team) && (doctor == null || aTeam.contains(doctor))
+                    && meetsAll(teamCriteria, aTeam, aSnapshot))
+            {
+                thePlan.teams.add(aTeam);
+                thePlan.teamRows += aSnapshot.getPatients(aTeam).size();
+            }
+        }
+        boolean teamsNarrowed = team != null || doctor != null || !teamCriteria.isEmpty();
+        if (name != null)
+        {
+            thePlan.source = Plan.NAME_INDEX;
+        }
+        else if (teamsNarrowed && thePlan.teamRows < thePlan.wardRows)
+        {
+            thePlan.source = Plan.TEAMS;
+        }
+        else
+        {
+            thePlan.source = Plan.WARDS;
+        }
+        return thePlan;
+    }
+
+
+    /**
+     * Runs the query against the snapshot, projecting each qualifying patient.
+     */
+    private <T> List<T> run(final HospitalSnapshot aSnapshot, final Projection<T> aProjection)
+    {
+        final Plan thePlan = plan(aSnapshot);
+        if (thePlan.source == Plan.WARDS)
+        {
+            PatientScan<List<T>> scan = new PatientScan<List<T>>(aSnapshot, thePlan.wards.toArray(new Ward[0]),
+                    new PatientReducer<List<T>>()
+            {
+                public List<T> identity()
+                {
+                    return new ArrayList<T>();
+                }
+
+                public List<T> accumulate(List<T> aResult, Patient aPatient, Ward aWard, Team aTeam)
+                {
+                    if (qualifies(thePlan, aPatient, aTeam))
+                    {
+                        aResult.add(aProjection.project(aPatient, aWard, aTeam));
+                    }
+                    return aResult;
+                }
+
+                public List<T> combine(List<T> aFirst, List<T> aSecond)
+                {
+                    aFirst.addAll(aSecond);
+                    return aFirst;
+                }
+            });
+            return parallel ? ForkJoinPool.commonPool().invoke(scan) : scan.runDirectly();
+        }
+
+        List<T> results = new ArrayList<T>();
+        if (thePlan.source == Plan.NAME_INDEX)
+        {
+            for (Ward aWard : thePlan.wards)
+            {
+                for (Patient aPatient : aSnapshot.getPatients(aWard, name))
+                {
+                    Team aTeam = aSnapshot.getTeam(aPatient, aWard);
+                    if (qualifies(thePlan, aPatient, aTeam))
+                    {
+                        results.add(aProjection.project(aPatient, aWard, aTeam));
+                    }
+                }
+            }
+            return results;
+        }
+        Collection<Patient> candidates = new ArrayList<Patient>();
+        for (Team aTeam : thePlan.teams)
+        {
+            candidates.addAll(aSnapshot.getPatients(aTeam));
+        }
+        for (Patient aPatient : candidates)
+        {
+            Ward aWard = aSnapshot.getWard(aPatient);
+            if (aWard != null && thePlan.wards.contains(aWard))
+            {
+                Team aTeam = aSnapshot.getTeam(aPatient, aWard);
+                if (qualifies(thePlan, aPatient, aTeam))
+                {
+                    results.add(aProjection.project(aPatient, aWard, aTeam));
+                }
+            }
+        }
+        return results;
+    }
+
+
+    /**
+     * Returns true if the patient, already known to be on a qualifying ward, meets the remaining conditions.
+     */
+    private boolean qualifies(Plan aPlan, Patient aPatient, Team aTeam)
+    {
+        return aPlan.teams.contains(aTeam)
+                && (name == null || name.equals(aPatient.getName()))
+                && (sex == null || aPatient.getSex() == sex)
+                && (doctor == null || aPlan.snapshot.getDoctors(aPatient).contains(doctor))
+                && meetsAll(patientCriteria, aPatient, aPlan.snapshot);
+    }
+
+
+    /**
+     * Returns true if anObject meets every criterion in aList.
+     */
+    private static <T> boolean meetsAll(List<Criterion<T>> aList, T anObject, HospitalSnapshot aSnapshot)
+    {
+        for (Criterion<T> aCriterion : aList)
+        {
+            if (!aCriterion.matches(anObject, aSnapshot))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * The qualifying wards and teams and where to start looking for patients.
+     */
+    private static class Plan
+    {
+        private static final int NAME_INDEX = 0;
+        private static final int TEAMS = 1;
+        private static final int WARDS = 2;
+
+        private final HospitalSnapshot snapshot;
+        private final Set<Ward> wards = new LinkedHashSet<Ward>();
+        private final Set<Team> teams = new HashSet<Team>();
+        private int wardRows;
+        private int teamRows;
+        private int source;
+
+        Plan(HospitalSnapshot aSnapshot)
+        {
+            snapshot = aSnapshot;
+        }
+
+        public String toString()
+        {
+            String start = (source == NAME_INDEX) ? "name search of " + wards.size() + " ward(s)"
+                         : (source == TEAMS) ? "patients of " + teams.size() + " team(s), " + teamRows + " rows"
+                         : "scan of " + wards.size() + " ward(s), " + wardRows + " rows";
+            return "start from " + start + "; qualifying wards " + wards.size() + ", qualifying teams " + teams.size();
+        }
+    }
+}
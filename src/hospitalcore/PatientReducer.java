@@ -0,0 +1,44 @@
+package hospitalcore;
+
+/**
+ * A PatientReducer combines the patients of the hospital into a single result.<p>
+ * The patients are split into runs, each run is folded into its own partial result
+ * starting from identity(), and the partial results are then combined in the order of
+ * their runs, so a reducer that keeps the order of its patients gives the same result
+ * however the work was split.
+ *
+ * @param <R> the type of result
+ */
+public interface PatientReducer<R>
+{
+    /**
+     * Returns a new, empty result.
+     *
+     * @return a result to which no patient has been added
+     */
+    R identity();
+
+
+    /**
+     * Adds the patient to the result.
+     *
+     * @param aResult a partial result
+     * @param aPatient a patient
+     * @param aWard the ward aPatient is on
+     * @param aTeam the team caring for aPatient
+     *
+     * @return the partial result with aPatient added
+     */
+    R accumulate(R aResult, Patient aPatient, Ward aWard, Team aTeam);
+
+
+    /**
+     * Combines two partial results, the first holding patients that come before those of the second.
+     *
+     * @param aFirst a partial result
+     * @param aSecond a partial result following aFirst
+     *
+     * @return the combined result
+     */
+    R combine(R aFirst, R aSecond);
+}
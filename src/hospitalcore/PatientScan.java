@@ -0,0 +1,184 @@
+package hospitalcore;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * PatientScan objects reduce the patients on a list of wards of a snapshot, splitting
+ * the work across the threads of a fork-join pool.<p>
+ * The patients are numbered ward by ward, and a scan over a range of those numbers is
+ * split in half until it is small enough to run directly, so one large ward is shared
+ * out as readily as many small ones. Partial results are combined in order of patient
+ * number.
+ *
+ * @param <R> the type of result
+ */
+@SuppressWarnings("serial")
+class PatientScan<R> extends RecursiveTask<R>
+{
+    //attributes
+
+    /**
+     * the number of patients below which a scan is run directly
+     */
+    static final int THRESHOLD = 1024;
+
+    /**
+     * the number of the first patient on each ward, and the total number of patients
+     */
+    private final int[] starts;
+
+    /**
+     * the number of the first patient in this scan
+     */
+    private final int from;
+
+    /**
+     * the number after the last patient in this scan
+     */
+    private final int to;
+
+
+    //links
+
+    /**
+     * the snapshot scanned
+     */
+    private final HospitalSnapshot snapshot;
+
+    /**
+     * the wards scanned
+     */
+    private final Ward[] wards;
+
+    /**
+     * the patients on each ward
+     */
+    private final List<List<Patient>> patients;
+
+    /**
+     * the reducer applied to each patient
+     */
+    private final PatientReducer<R> reducer;
+
+
+    //constructors
+
+    /**
+     * Initialises a new PatientScan object over all the patients on the wards.
+     *
+     * @param aSnapshot a snapshot
+     * @param aWardArray the wards to be scanned, in order
+     * @param aReducer the reducer to be applied
+     */
+    PatientScan(HospitalSnapshot aSnapshot, Ward[] aWardArray, PatientReducer<R> aReducer)
+    {
+        snapshot = aSnapshot;
+        wards = aWardArray;
+        reducer = aReducer;
+        patients = new ArrayList<List<Patient>>(aWardArray.length);
+        starts = new int[aWardArray.length + 1];
+        for (int i = 0; i < aWardArray.length; i++)
+        {
+            List<Patient> onWard = aSnapshot.getPatientList(aWardArray[i]);
+            patients.add(onWard);
+            starts[i + 1] = starts[i] + onWard.size();
+        }
+        from = 0;
+        to = starts[aWardArray.length];
+    }
+
+
+    /**
+     * Initialises a new PatientScan object over part of the patients of aScan.
+     */
+    private PatientScan(PatientScan<R> aScan, int aFrom, int aTo)
+    {
+        snapshot = aScan.snapshot;
+        wards = aScan.wards;
+        reducer = aScan.reducer;
+        patients = aScan.patients;
+        starts = aScan.starts;
+        from = aFrom;
+        to = aTo;
+    }
+
+
+    //package protocol
+
+    /**
+     * Returns the total number of patients on the wards scanned.
+     *
+     * @return the number of patients
+     */
+    int size()
+    {
+        return to - from;
+    }
+
+
+    /**
+     * Runs the scan on the calling thread only.
+     *
+     * @return the result of the reduction
+     */
+    R runDirectly()
+    {
+        return reduce(from, to);
+    }
+
+
+    //protected protocol
+
+    /**
+     * Runs the scan, splitting it if it is large.
+     *
+     * @return the result of the reduction
+     */
+    protected R compute()
+    {
+        if (to - from <= THRESHOLD)
+        {
+            return reduce(from, to);
+        }
+        int middle = (from + to) >>> 1;
+        PatientScan<R> first = new PatientScan<R>(this, from, middle);
+        first.fork();
+        R second = new PatientScan<R>(this, middle, to).compute();
+        return reducer.combine(first.join(), second);
+    }
+
+
+    //private protocol
+
+    /**
+     * Folds the patients numbered aFrom to aTo - 1 into a new result.
+     */
+    private R reduce(int aFrom, int aTo)
+    {
+        R result = reducer.identity();
+        if (aFrom >= aTo)
+        {
+            return result;
+        }
+        int ward = Arrays.binarySearch(starts, aFrom);
+        if (ward < 0)
+        {
+            ward = -ward - 2;
+        }
+        while (ward < wards.length && starts[ward + 1] == starts[ward])
+        {
+            ward++; // skip empty wards
+        }
+        for (int number = aFrom; number < aTo; number++)
+        {
+            while (number >= starts[ward + 1])
+            {
+                ward++;
+            }
+            Patient aPatient = patients.get(ward).get(number - starts[ward]);
+            result = reducer.accumulate(result, aPatient, wards[ward], snapshot.getTeam(aPatient, wards[ward]));
+        }
+        return result;
+    }
+}
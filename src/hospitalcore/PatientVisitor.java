@@ -0,0 +1,18 @@
+package hospitalcore;
+
+/**
+ * A PatientVisitor is given each patient in turn, with the ward the patient is on
+ * and the team caring for the patient. Visitors used in parallel may be given
+ * patients on several threads at once.
+ */
+public interface PatientVisitor
+{
+    /**
+     * Visits the patient.
+     *
+     * @param aPatient a patient
+     * @param aWard the ward aPatient is on
+     * @param aTeam the team caring for aPatient
+     */
+    void visit(Patient aPatient, Ward aWard, Team aTeam);
+}
@@ -0,0 +1,21 @@
+package hospitalcore;
+
+/**
+ * A Projection derives a value from a patient and the ward and team the patient is linked to,
+ * for example to report on or to group patients by.
+ *
+ * @param <T> the type of value derived
+ */
+public interface Projection<T>
+{
+    /**
+     * Returns the value derived from the patient.
+     *
+     * @param aPatient a patient
+     * @param aWard the ward aPatient is on
+     * @param aTeam the team caring for aPatient
+     *
+     * @return the derived value
+     */
+    T project(Patient aPatient, Ward aWard, Team aTeam);
+}
@@ -0,0 +1,207 @@
+package hospitalcore;
+
+import java.util.*;
+
+/**
+ * QueryCache objects hold the results of recent queries of a hospital, keyed by the
+ * query and its arguments, so that asking the same question again before anything it
+ * depends on has changed costs a lookup.<p>
+ * Each result is tagged with the wards and teams it was computed from; when a ward or
+ * team changes, only the results tagged with it are dropped. When the cache is full the
+ * least recently used result is dropped. A QueryCache object is not safe for use by
+ * several threads at once; the hospital uses it only while locked.
+ */
+class QueryCache
+{
+    //attributes
+
+    /**
+     * the greatest number of results held; 0 if none are
+     */
+    private final int capacity;
+
+    /**
+     * the number of lookups that found a result
+     */
+    private long hits;
+
+    /**
+     * the number of lookups that found none
+     */
+    private long misses;
+
+    /**
+     * the number of results dropped to make room for others
+     */
+    private long evictions;
+
+    /**
+     * the number of results dropped because a ward or team they were tagged with changed
+     */
+    private long invalidations;
+
+
+    //links
+
+    /**
+     * the results held, keyed by query, least recently used first
+     */
+    private final LinkedHashMap<List<Object>, Entry> entries;
+
+    /**
+     * the keys of the results tagged with each ward or team
+     */
+    private final Map<Object, Set<List<Object>>> keysByTag;
+
+
+    //constructor
+
+    /**
+     * Initialises a new, empty QueryCache object holding at most aCapacity results.
+     *
+     * @param aCapacity the greatest number of results held; 0 to hold none
+     */
+    QueryCache(int aCapacity)
+    {
+        capacity = aCapacity;
+        entries = new LinkedHashMap<List<Object>, Entry>(16, 0.75f, true);
+        keysByTag = new HashMap<Object, Set<List<Object>>>();
+    }
+
+
+    //package protocol
+
+    /**
+     * Returns the result held for the query, if any.
+     *
+     * @param aKey the name of the query followed by its arguments
+     *
+     * @return the result, or null if none is held
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(List<Object> aKey)
+    {
+        Entry anEntry = entries.get(aKey);
+        if (anEntry == null)
+        {
+            misses++;
+            return null;
+        }
+        hits++;
+        return (T) anEntry.value;
+    }
+
+
+    /**
+     * Holds the result of the query until one of aTags changes or the result is the
+     * least recently used when room is needed. The result must not be changed afterwards.
+     *
+     * @param aKey the name of the query followed by its arguments
+     * @param aValue the result
+     * @param aTags the wards and teams the result was computed from
+     */
+    void put(List<Object> aKey, Object aValue, Collection<?> aTags)
+    {
+        if (capacity == 0)
+        {
+            return;
+        }
+        Entry old = entries.remove(aKey);
+        if (old != null)
+        {
+            unlink(aKey, old);
+        }
+        Entry anEntry = new Entry(aValue, new ArrayList<Object>(aTags));
+        entries.put(aKey, anEntry);
+        for (Object aTag : anEntry.tags)
+        {
+            Set<List<Object>> keys = keysByTag.get(aTag);
+            if (keys == null)
+            {
+                keys = new HashSet<List<Object>>();
+                keysByTag.put(aTag, keys);
+            }
+            keys.add(aKey);
+        }
+        if (entries.size() > capacity)
+        {
+            Map.Entry<List<Object>, Entry> eldest = entries.entrySet().iterator().next();
+            entries.remove(eldest.getKey());
+            unlink(eldest.getKey(), eldest.getValue());
+            evictions++;
+        }
+    }
+
+
+    /**
+     * Drops every result tagged with aTag.
+     *
+     * @param aTag a ward or team that has changed
+     */
+    void invalidate(Object aTag)
+    {
+        Set<List<Object>> keys = keysByTag.remove(aTag);
+        if (keys == null)
+        {
+            return;
+        }
+        for (List<Object> aKey : keys)
+        {
+            Entry anEntry = entries.remove(aKey);
+            if (anEntry != null)
+            {
+                unlink(aKey, anEntry);
+                invalidations++;
+            }
+        }
+    }
+
+
+    /**
+     * Returns the statistics of this cache as they are now.
+     *
+     * @return a QueryCacheStats object
+     */
+    QueryCacheStats getStats()
+    {
+        return new QueryCacheStats(capacity, entries.size(), hits, misses, evictions, invalidations);
+    }
+
+
+    //private protocol
+
+    /**
+     * Removes aKey from the keys held for each tag of anEntry.
+     */
+    private void unlink(List<Object> aKey, Entry anEntry)
+    {
+        for (Object aTag : anEntry.tags)
+        {
+            Set<List<Object>> keys = keysByTag.get(aTag);
+            if (keys != null)
+            {
+                keys.remove(aKey);
+                if (keys.isEmpty())
+                {
+                    keysByTag.remove(aTag);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A result held by the cache, with the wards and teams it was computed from.
+     */
+    private static class Entry
+    {
+        final Object value;
+        final List<Object> tags;
+
+        Entry(Object aValue, List<Object> aTags)
+        {
+            value = aValue;
+            tags = aTags;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package hospitalcore;
+
+/**
+ * QueryCacheStats objects hold the statistics of the cache of query results kept
+ * by a hospital, as they were when asked for.
+ */
+public class QueryCacheStats
+{
+    //attributes
+
+    /**
+     * the greatest number of results the cache holds
+     */
+    private final int capacity;
+
+    /**
+     * the number of results held
+     */
+    private final int size;
+
+    /**
+     * the number of lookups that found a result
+     */
+    private final long hits;
+
+    /**
+     * the number of lookups that found none
+     */
+    private final long misses;
+
+    /**
+     * the number of results dropped to make room for others
+     */
+    private final long evictions;
+
+    /**
+     * the number of results dropped because a ward or team they depended on changed
+     */
+    private final long invalidations;
+
+
+    //constructor
+
+    /**
+     * Initialises a new QueryCacheStats object with the given attribute values.
+     *
+     * @param aCapacity the greatest number of results the cache holds
+     * @param aSize the number of results held
+     * @param aHits the number of lookups that found a result
+     * @param aMisses the number of lookups that found none
+     * @param anEvictions the number of results dropped to make room
+     * @param anInvalidations the number of results dropped because of changes
+     */
+    QueryCacheStats(int aCapacity, int aSize, long aHits, long aMisses, long anEvictions, long anInvalidations)
+    {
+        capacity = aCapacity;
+        size = aSize;
+        hits = aHits;
+        misses = aMisses;
+        evictions = anEvictions;
+        invalidations = anInvalidations;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the greatest number of results the cache holds.
+     *
+     * @return capacity
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+
+    /**
+     * Returns the number of results held.
+     *
+     * @return size
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+
+    /**
+     * Returns the number of lookups that found a result.
+     *
+     * @return hits
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+
+    /**
+     * Returns the number of lookups that found no result, so that the query was computed.
+     *
+     * @return misses
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+
+    /**
+     * Returns the number of results dropped to make room for others. Many evictions
+     * and a low hit rate suggest the cache is too small.
+     *
+     * @return evictions
+     */
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+
+    /**
+     * Returns the number of results dropped because a ward or team they depended on changed.
+     *
+     * @return invalidations
+     */
+    public long getInvalidations()
+    {
+        return invalidations;
+    }
+
+
+    /**
+     * Returns the fraction of lookups that found a result.
+     *
+     * @return the hit rate from 0 to 1, or 0 if there have been no lookups
+     */
+    public double getHitRate()
+    {
+        long lookups = hits + misses;
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+    }
+
+
+    /**
+     * Returns a string summarising these statistics.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return String.format("%d/%d results, %d hits, %d misses (%.1f%% hit rate), %d evictions, %d invalidations",
+                size, capacity, hits, misses, 100 * getHitRate(), evictions, invalidations);
+    }
+}
@@ -0,0 +1,655 @@
+package hospitalcore;
+
+import java.util.*;
+
+/**
+ * RoaringBitmap objects are compressed sets of non-negative ints.<p>
+ * The ints are split on their high 16 bits into chunks of up to 65536 values, and
+ * each chunk is held in the container that suits it: a sorted array of the low 16 bits
+ * while the chunk has at most 4096 values, and a bitmap of 1024 words once it has more.
+ * A sparse set therefore takes two bytes per value and a dense one an eighth of a byte,
+ * and the set operations work a container at a time on whichever pair of containers
+ * the two sets hold.
+ */
+class RoaringBitmap
+{
+    //attributes
+
+    /**
+     * the greatest number of values held in an array container
+     */
+    private static final int ARRAY_LIMIT = 4096;
+
+    /**
+     * the high 16 bits of the values in each container, in increasing order
+     */
+    private char[] keys;
+
+    /**
+     * the number of containers
+     */
+    private int size;
+
+
+    //links
+
+    /**
+     * the containers, in the order of keys; none is empty
+     */
+    private Container[] containers;
+
+
+    //constructor
+
+    /**
+     * Initialises a new empty RoaringBitmap object.
+     */
+    RoaringBitmap()
+    {
+        this(new char[4], new Container[4], 0);
+    }
+
+
+    /**
+     * Initialises a new RoaringBitmap object holding the given containers.
+     */
+    private RoaringBitmap(char[] aKeyArray, Container[] aContainerArray, int aSize)
+    {
+        keys = aKeyArray;
+        containers = aContainerArray;
+        size = aSize;
+    }
+
+
+    //package protocol
+
+    /**
+     * Adds aValue to this set.
+     *
+     * @param aValue a non-negative int
+     */
+    void add(int aValue)
+    {
+        char key = (char) (aValue >>> 16);
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i >= 0)
+        {
+            containers[i] = containers[i].add((char) aValue);
+        }
+        else
+        {
+            insert(-i - 1, key, new ArrayContainer(new char[4], 0).add((char) aValue));
+        }
+    }
+
+
+    /**
+     * Removes aValue from this set.
+     *
+     * @param aValue a non-negative int
+     */
+    void remove(int aValue)
+    {
+        int i = Arrays.binarySearch(keys, 0, size, (char) (aValue >>> 16));
+        if (i >= 0)
+        {
+            Container result = containers[i].remove((char) aValue);
+            if (result.cardinality() == 0)
+            {
+                System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+                System.arraycopy(containers, i + 1, containers, i, size - i - 1);
+                size--;
+                containers[size] = null;
+            }
+            else
+            {
+                containers[i] = result;
+            }
+        }
+    }
+
+
+    /**
+     * Returns true if aValue is in this set, false otherwise.
+     *
+     * @param aValue a non-negative int
+     *
+     * @return true if aValue is in this set, false otherwise
+     */
+    boolean contains(int aValue)
+    {
+        int i = Arrays.binarySearch(keys, 0, size, (char) (aValue >>> 16));
+        return i >= 0 && containers[i].contains((char) aValue);
+    }
+
+
+    /**
+     * Returns the number of values in this set.
+     *
+     * @return the number of values
+     */
+    int cardinality()
+    {
+        int result = 0;
+        for (int i = 0; i < size; i++)
+        {
+            result += containers[i].cardinality();
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the values in both this set and aBitmap, as a new set.
+     *
+     * @param aBitmap a set
+     *
+     * @return a RoaringBitmap object
+     */
+    RoaringBitmap and(RoaringBitmap aBitmap)
+    {
+        RoaringBitmap result = new RoaringBitmap(new char[Math.min(size, aBitmap.size)],
+                new Container[Math.min(size, aBitmap.size)], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < aBitmap.size)
+        {
+            if (keys[i] < aBitmap.keys[j])
+            {
+                i++;
+            }
+            else if (keys[i] > aBitmap.keys[j])
+            {
+                j++;
+            }
+            else
+            {
+                result.append(keys[i], containers[i].and(aBitmap.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the values in either this set or aBitmap, as a new set.
+     *
+     * @param aBitmap a set
+     *
+     * @return a RoaringBitmap object
+     */
+    RoaringBitmap or(RoaringBitmap aBitmap)
+    {
+        RoaringBitmap result = new RoaringBitmap(new char[size + aBitmap.size],
+                new Container[size + aBitmap.size], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < aBitmap.size)
+        {
+            if (j == aBitmap.size || (i < size && keys[i] < aBitmap.keys[j]))
+            {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            }
+            else if (i == size || keys[i] > aBitmap.keys[j])
+            {
+                result.append(aBitmap.keys[j], aBitmap.containers[j].copy());
+                j++;
+            }
+            else
+            {
+                result.append(keys[i], containers[i].or(aBitmap.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the values in this set that are not in aBitmap, as a new set.
+     *
+     * @param aBitmap a set
+     *
+     * @return a RoaringBitmap object
+     */
+    RoaringBitmap andNot(RoaringBitmap aBitmap)
+    {
+        RoaringBitmap result = new RoaringBitmap(new char[size], new Container[size], 0);
+        int j = 0;
+        for (int i = 0; i < size; i++)
+        {
+            while (j < aBitmap.size && aBitmap.keys[j] < keys[i])
+            {
+                j++;
+            }
+            if (j < aBitmap.size && aBitmap.keys[j] == keys[i])
+            {
+                result.append(keys[i], containers[i].andNot(aBitmap.containers[j]));
+            }
+            else
+            {
+                result.append(keys[i], containers[i].copy());
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the values in this set.
+     *
+     * @return an array of the values, in increasing order
+     */
+    int[] toArray()
+    {
+        int[] result = new int[cardinality()];
+        int position = 0;
+        for (int i = 0; i < size; i++)
+        {
+            position = containers[i].fill(result, position, keys[i] << 16);
+        }
+        return result;
+    }
+
+
+    //private protocol
+
+    /**
+     * Inserts aContainer with aKey at index i.
+     */
+    private void insert(int i, char aKey, Container aContainer)
+    {
+        if (size == keys.length)
+        {
+            keys = Arrays.copyOf(keys, Math.max(4, size * 2));
+            containers = Arrays.copyOf(containers, Math.max(4, size * 2));
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        keys[i] = aKey;
+        containers[i] = aContainer;
+        size++;
+    }
+
+
+    /**
+     * Adds aContainer with aKey after the last container, unless it is empty; the
+     * arrays are large enough.
+     */
+    private void append(char aKey, Container aContainer)
+    {
+        if (aContainer.cardinality() > 0)
+        {
+            keys[size] = aKey;
+            containers[size] = aContainer;
+            size++;
+        }
+    }
+
+
+    /**
+     * Container objects hold the low 16 bits of the values in one chunk of a set.
+     * Those that change the set may return another container in place of the receiver.
+     */
+    private abstract static class Container
+    {
+        abstract int cardinality();
+
+        abstract boolean contains(char aValue);
+
+        abstract Container add(char aValue);
+
+        abstract Container remove(char aValue);
+
+        abstract Container copy();
+
+        abstract Container and(Container aContainer);
+
+        abstract Container or(Container aContainer);
+
+        abstract Container andNot(Container aContainer);
+
+        /**
+         * Writes the values, each or-ed with aHigh, into anArray from aPosition,
+         * returning the position after the last.
+         */
+        abstract int fill(int[] anArray, int aPosition, int aHigh);
+    }
+
+
+    /**
+     * ArrayContainer objects hold up to ARRAY_LIMIT values in a sorted array.
+     */
+    private static final class ArrayContainer extends Container
+    {
+        private char[] values;
+
+        private int cardinality;
+
+        ArrayContainer(char[] aValueArray, int aCardinality)
+        {
+            values = aValueArray;
+            cardinality = aCardinality;
+        }
+
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        boolean contains(char aValue)
+        {
+            return Arrays.binarySearch(values, 0, cardinality, aValue) >= 0;
+        }
+
+        Container add(char aValue)
+        {
+            int i = Arrays.binarySearch(values, 0, cardinality, aValue);
+            if (i >= 0)
+            {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT)
+            {
+                return toBitmap().add(aValue);
+            }
+            i = -i - 1;
+            if (cardinality == values.length)
+            {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, cardinality * 2));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = aValue;
+            cardinality++;
+            return this;
+        }
+
+        Container remove(char aValue)
+        {
+            int i = Arrays.binarySearch(values, 0, cardinality, aValue);
+            if (i >= 0)
+            {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        Container copy()
+        {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        Container and(Container aContainer)
+        {
+            return select(aContainer, true);
+        }
+
+        Container or(Container aContainer)
+        {
+            if (aContainer instanceof BitmapContainer)
+            {
+                return aContainer.or(this);
+            }
+            ArrayContainer other = (ArrayContainer) aContainer;
+            char[] result = new char[cardinality + other.cardinality];
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < other.cardinality)
+            {
+                if (j == other.cardinality || (i < cardinality && values[i] < other.values[j]))
+                {
+                    result[n++] = values[i++];
+                }
+                else if (i == cardinality || values[i] > other.values[j])
+                {
+                    result[n++] = other.values[j++];
+                }
+                else
+                {
+                    result[n++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer union = new ArrayContainer(result, n);
+            return (n > ARRAY_LIMIT) ? union.toBitmap() : union;
+        }
+
+        Container andNot(Container aContainer)
+        {
+            return select(aContainer, false);
+        }
+
+        int fill(int[] anArray, int aPosition, int aHigh)
+        {
+            for (int i = 0; i < cardinality; i++)
+            {
+                anArray[aPosition++] = aHigh | values[i];
+            }
+            return aPosition;
+        }
+
+        /**
+         * Returns an array container holding the values of the receiver that are in
+         * aContainer if isIn is true, or that are not in it if isIn is false. Another
+         * array is merged with the receiver, and a bitmap is looked up directly, rather
+         * than each value being searched for.
+         */
+        private Container select(Container aContainer, boolean isIn)
+        {
+            char[] result = new char[cardinality];
+            int n = 0;
+            if (aContainer instanceof ArrayContainer)
+            {
+                ArrayContainer other = (ArrayContainer) aContainer;
+                int j = 0;
+                for (int i = 0; i < cardinality; i++)
+                {
+                    char value = values[i];
+                    while (j < other.cardinality && other.values[j] < value)
+                    {
+                        j++;
+                    }
+                    if ((j < other.cardinality && other.values[j] == value) == isIn)
+                    {
+                        result[n++] = value;
+                    }
+                }
+            }
+            else
+            {
+                long[] words = ((BitmapContainer) aContainer).words;
+                for (int i = 0; i < cardinality; i++)
+                {
+                    char value = values[i];
+                    if (((words[value >>> 6] & (1L << value)) != 0) == isIn)
+                    {
+                        result[n++] = value;
+                    }
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        /**
+         * Returns a bitmap container holding the same values.
+         */
+        private BitmapContainer toBitmap()
+        {
+            long[] words = new long[1024];
+            for (int i = 0; i < cardinality; i++)
+            {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+
+    /**
+     * BitmapContainer objects hold more than ARRAY_LIMIT values as a bitmap of 65536 bits.
+     */
+    private static final class BitmapContainer extends Container
+    {
+        private final long[] words;
+
+        private int cardinality;
+
+        BitmapContainer(long[] aWordArray, int aCardinality)
+        {
+            words = aWordArray;
+            cardinality = aCardinality;
+        }
+
+        int cardinality()
+        {
+            return cardinality;
+        }
+
+        boolean contains(char aValue)
+        {
+            return (words[aValue >>> 6] & (1L << aValue)) != 0;
+        }
+
+        Container add(char aValue)
+        {
+            long bit = 1L << aValue;
+            if ((words[aValue >>> 6] & bit) == 0)
+            {
+                words[aValue >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        Container remove(char aValue)
+        {
+            long bit = 1L << aValue;
+            if ((words[aValue >>> 6] & bit) != 0)
+            {
+                words[aValue >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return (cardinality > ARRAY_LIMIT) ? this : toArrayContainer();
+        }
+
+        Container copy()
+        {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        Container and(Container aContainer)
+        {
+            if (aContainer instanceof ArrayContainer)
+            {
+                return aContainer.and(this);
+            }
+            long[] other = ((BitmapContainer) aContainer).words;
+            long[] result = new long[1024];
+            int n = 0;
+            for (int i = 0; i < 1024; i++)
+            {
+                result[i] = words[i] & other[i];
+                n += Long.bitCount(result[i]);
+            }
+            return new BitmapContainer(result, n).shrink();
+        }
+
+        Container or(Container aContainer)
+        {
+            BitmapContainer result = new BitmapContainer(words.clone(), cardinality);
+            if (aContainer instanceof ArrayContainer)
+            {
+                ArrayContainer other = (ArrayContainer) aContainer;
+                for (int i = 0; i < other.cardinality; i++)
+                {
+                    result.add(other.values[i]);
+                }
+                return result;
+            }
+            long[] other = ((BitmapContainer) aContainer).words;
+            int n = 0;
+            for (int i = 0; i < 1024; i++)
+            {
+                result.words[i] |= other[i];
+                n += Long.bitCount(result.words[i]);
+            }
+            result.cardinality = n;
+            return result;
+        }
+
+        Container andNot(Container aContainer)
+        {
+            long[] result = words.clone();
+            if (aContainer instanceof ArrayContainer)
+            {
+                ArrayContainer other = (ArrayContainer) aContainer;
+                for (int i = 0; i < other.cardinality; i++)
+                {
+                    result[other.values[i] >>> 6] &= ~(1L << other.values[i]);
+                }
+            }
+            else
+            {
+                long[] other = ((BitmapContainer) aContainer).words;
+                for (int i = 0; i < 1024; i++)
+                {
+                    result[i] &= ~other[i];
+                }
+            }
+            int n = 0;
+            for (int i = 0; i < 1024; i++)
+            {
+                n += Long.bitCount(result[i]);
+            }
+            return new BitmapContainer(result, n).shrink();
+        }
+
+        int fill(int[] anArray, int aPosition, int aHigh)
+        {
+            for (int i = 0; i < 1024; i++)
+            {
+                long word = words[i];
+                while (word != 0)
+                {
+                    anArray[aPosition++] = aHigh | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return aPosition;
+        }
+
+        /**
+         * Returns the receiver, or an array container with the same values if it has few
+         * enough of them.
+         */
+        private Container shrink()
+        {
+            return (cardinality > ARRAY_LIMIT) ? this : toArrayContainer();
+        }
+
+        /**
+         * Returns an array container holding the same values.
+         */
+        private ArrayContainer toArrayContainer()
+        {
+            char[] values = new char[Math.max(cardinality, 4)];
+            int n = 0;
+            for (int i = 0; i < 1024; i++)
+            {
+                long word = words[i];
+                while (word != 0)
+                {
+                    values[n++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, n);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+
+/**
+ * Roster objects keep people in order of name, so that the whole list, or the next
+ * page of it after a given name, can be had without sorting.<p>
+ * People are held in a red-black tree keyed by name; people sharing a name are kept
+ * together in the order they were added. Adding, removing and finding the start of
+ * a page each take time proportional to the logarithm of the number of names.
+ *
+ * @param <T> the type of the people on the roster
+ */
+class Roster<T>
+{
+    //links
+
+    /**
+     * the people with each name, held as the person itself or, for a shared name, a list
+     */
+    private final TreeMap<Name, Object> entries;
+
+    /**
+     * the number of people on the roster
+     */
+    private int size;
+
+
+    //constructor
+
+    /**
+     * Initialises a new, empty Roster object.
+     */
+    Roster()
+    {
+        entries = new TreeMap<Name, Object>();
+    }
+
+
+    //package protocol
+
+    /**
+     * Adds the person with the given name.
+     *
+     * @param aName the name of aPerson
+     * @param aPerson the person to be added
+     */
+    @SuppressWarnings("unchecked")
+    void add(Name aName, T aPerson)
+    {
+        Object existing = entries.get(aName);
+        if (existing == null)
+        {
+            entries.put(aName, aPerson);
+        }
+        else if (existing instanceof SharedName)
+        {
+            ((SharedName) existing).add(aPerson);
+        }
+        else
+        {
+            SharedName shared = new SharedName();
+            shared.add(existing);
+            shared.add(aPerson);
+            entries.put(aName, shared);
+        }
+        size++;
+    }
+
+
+    /**
+     * Removes the person with the given name.
+     *
+     * @param aName the name of aPerson
+     * @param aPerson the person to be removed
+     */
+    void remove(Name aName, T aPerson)
+    {
+        Object existing = entries.get(aName);
+        if (existing == aPerson)
+        {
+            entries.remove(aName);
+            size--;
+        }
+        else if (existing instanceof SharedName)
+        {
+            SharedName shared = (SharedName) existing;
+            if (shared.remove(aPerson))
+            {
+                size--;
+                if (shared.size() == 1)
+                {
+                    entries.put(aName, shared.get(0));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns everyone on the roster in order of name.
+     *
+     * @return a list of people
+     */
+    List<T> getAll()
+    {
+        return getPage(null, size);
+    }
+
+
+    /**
+     * Returns the people whose names come after the given name, in order of name.
+     * At most aLimit people are returned, except that people sharing a name are never
+     * split across pages, so the last name of one page can be used to ask for the next.
+     *
+     * @param anAfter the name to start after, or null to start at the beginning
+     * @param aLimit the greatest number of people wanted
+     *
+     * @return a list of people
+     */
+    @SuppressWarnings("unchecked")
+    List<T> getPage(Name anAfter, int aLimit)
+    {
+        List<T> results = new ArrayList<T>(Math.min(aLimit, size));
+        SortedMap<Name, Object> rest = (anAfter == null) ? entries : entries.tailMap(anAfter, false);
+        for (Object entry : rest.values())
+        {
+            if (results.size() >= aLimit)
+            {
+                break;
+            }
+            if (entry instanceof SharedName)
+            {
+                for (Object aPerson : (SharedName) entry)
+                {
+                    results.add((T) aPerson);
+                }
+            }
+            else
+            {
+                results.add((T) entry);
+            }
+        }
+        return results;
+    }
+
+
+    /**
+     * Returns the number of people on the roster.
+     *
+     * @return size
+     */
+    int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * The people sharing one name. Rosters are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private static class SharedName extends ArrayList<Object>
+    {
+        SharedName()
+        {
+            super(2);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+
+/**
+ * RoundRobinStrategy objects choose the wards of the appropriate type in turn,
+ * skipping wards that are full.<p>
+ * The wards of each type with free beds are kept in a ring; a ward leaves the ring
+ * when it fills and rejoins it, just behind the current position, when a bed is
+ * freed. Choosing a ward is therefore constant time however many wards are full.
+ */
+public class RoundRobinStrategy implements BedAllocationStrategy
+{
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = -2743597296826411650L;
+
+
+    //links
+
+    /**
+     * the ring position of each ward
+     */
+    private transient Map<Ward, Node> nodes;
+
+    /**
+     * for each ward type, the ward chosen most recently, or any ward in the ring
+     */
+    private transient Map<Sex, Node> cursors;
+
+
+    //public protocol
+
+    /**
+     * Builds the rings over all the wards of the hospital, in order of ward name.
+     *
+     * @param aWardCollection all the wards of the hospital
+     */
+    public void initialise(Collection<Ward> aWardCollection)
+    {
+        nodes = new HashMap<Ward, Node>();
+        cursors = new EnumMap<Sex, Node>(Sex.class);
+        List<Ward> ordered = new ArrayList<Ward>(aWardCollection);
+        Collections.sort(ordered, new Comparator<Ward>()
+        {
+            public int compare(Ward aWard, Ward anotherWard)
+            {
+                return aWard.getName().compareTo(anotherWard.getName());
+            }
+        });
+        for (Ward aWard : ordered)
+        {
+            Node aNode = new Node(aWard);
+            nodes.put(aWard, aNode);
+            if (aWard.getNumberOfFreeBeds() > 0)
+            {
+                join(aNode);
+            }
+        }
+        for (Map.Entry<Sex, Node> entry : cursors.entrySet())
+        {
+            entry.setValue(entry.getValue().previous); // so that the first ward by name is chosen first
+        }
+    }
+
+
+    /**
+     * Returns the ward of type aSex with free beds that follows the one chosen last.
+     *
+     * @param aSex the sex of the patient
+     * @param aTeam the team that will care for the patient
+     *
+     * @return a Ward object with at least one free bed, or null if there is none
+     */
+    public Ward selectWard(Sex aSex, Team aTeam)
+    {
+        Node cursor = cursors.get(aSex);
+        if (cursor == null)
+        {
+            return null;
+        }
+        cursor = cursor.next;
+        cursors.put(aSex, cursor);
+        return cursor.ward;
+    }
+
+
+    /**
+     * Records that a patient has been added to the ward, which leaves the ring if it is now full.
+     *
+     * @param aWard a ward
+     * @param aTeam a team
+     */
+    public void patientAdded(Ward aWard, Team aTeam)
+    {
+        Node aNode = nodes.get(aWard);
+        if (aNode.inRing && aWard.getNumberOfFreeBeds() <= 0)
+        {
+            leave(aNode);
+        }
+    }
+
+
+    /**
+     * Records that a patient has been removed from the ward, which rejoins the ring if it was full.
+     *
+     * @param aWard a ward
+     * @param aTeam a team
+     */
+    public void patientRemoved(Ward aWard, Team aTeam)
+    {
+        Node aNode = nodes.get(aWard);
+        if (!aNode.inRing && aWard.getNumberOfFreeBeds() > 0)
+        {
+            join(aNode);
+        }
+    }
+
+
+    /**
+     * Returns the number of candidate wards looked at in turn by the most recent
+     * selectWard, which is always 0 as the ward is the next in the ring.
+     *
+     * @return 0
+     */
+    public int getWardsExamined()
+    {
+        return 0;
+    }
+
+
+    /**
+     * Returns a string naming this strategy.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return "round robin";
+    }
+
+
+    //private protocol
+
+    /**
+     * Adds aNode to the ring of its ward type just behind the cursor, so that it is
+     * chosen once every ward already in the ring has had its turn.
+     */
+    private void join(Node aNode)
+    {
+        Sex type = aNode.ward.getType();
+        Node cursor = cursors.get(type);
+        if (cursor == null)
+        {
+            aNode.next = aNode;
+            aNode.previous = aNode;
+            cursors.put(type, aNode);
+        }
+        else
+        {
+            aNode.previous = cursor.previous;
+            aNode.next = cursor;
+            cursor.previous.next = aNode;
+            cursor.previous = aNode;
+        }
+        aNode.inRing = true;
+    }
+
+
+    /**
+     * Removes aNode from the ring of its ward type.
+     */
+    private void leave(Node aNode)
+    {
+        Sex type = aNode.ward.getType();
+        if (aNode.next == aNode)
+        {
+            cursors.remove(type);
+        }
+        else
+        {
+            aNode.previous.next = aNode.next;
+            aNode.next.previous = aNode.previous;
+            if (cursors.get(type) == aNode)
+            {
+                cursors.put(type, aNode.previous);
+            }
+        }
+        aNode.next = null;
+        aNode.previous = null;
+        aNode.inRing = false;
+    }
+
+
+    /**
+     * A ward's place in the ring of its type.
+     */
+    private static class Node
+    {
+        private final Ward ward;
+        private boolean inRing;
+        private Node previous;
+        private Node next;
+
+        Node(Ward aWard)
+        {
+            ward = aWard;
+        }
+    }
+}
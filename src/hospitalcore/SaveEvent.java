@@ -0,0 +1,32 @@
+package hospitalcore;
+
+import jdk.jfr.*;
+
+/**
+ * SaveEvent objects are JDK Flight Recorder events recording the saving of a hospital:
+ * the time taken to serialize it and force it to disk, and the size of the snapshot.
+ */
+@Name("hospitalcore.Save")
+@Label("Save")
+@Category("Hospital")
+@Description("Serializing the hospital and writing it to its data file")
+class SaveEvent extends Event
+{
+    //attributes
+
+    /**
+     * the type of these events, so that a save can ask whether any recording wants
+     * one before creating it
+     */
+    static final EventType TYPE = EventType.getEventType(SaveEvent.class);
+
+    @Label("Data File")
+    String dataFile;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytesWritten;
+
+    @Label("Patients")
+    int patients;
+}
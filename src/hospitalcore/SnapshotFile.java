@@ -0,0 +1,302 @@
+package hospitalcore;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.zip.CRC32C;
+
+/**
+ * SnapshotFile objects store the state of a HospCoord object in a crash-safe way.<p>
+ * A snapshot is written to a sibling temporary file, forced to disk and then
+ * atomically moved over the live file; the live file it replaces is kept as the
+ * previous generation. Each snapshot starts with a header holding a format version,
+ * the number of wards, teams and patients, and a CRC32C checksum of the payload.<p>
+ * A data file written by the first release, which holds the serialized hospital with no
+ * header, is still read. A generation that cannot be read is never rotated or written
+ * over: it is renamed with the suffix ".unreadable" and the time, so it can be recovered.
+ */
+class SnapshotFile
+{
+    //attributes
+
+    /**
+     * the value identifying a snapshot file ("HSPD")
+     */
+    private static final int MAGIC = 0x48535044;
+
+    /**
+     * the version of the snapshot format; it must change whenever the serialized form of
+     * a saved class changes in a way its readObject method cannot make up for
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * the first two bytes of a serialized object stream, as written by the first release
+     */
+    private static final short STREAM_MAGIC = (short) 0xACED;
+
+    /**
+     * the length in bytes of the header
+     */
+    private static final int HEADER_LENGTH = 32;
+
+    /**
+     * the file holding the current generation
+     */
+    private final Path current;
+
+    /**
+     * the file holding the previous generation
+     */
+    private final Path previous;
+
+    /**
+     * the file a new generation is written to before it is moved into place
+     */
+    private final Path temporary;
+
+
+    //constructor
+
+    /**
+     * Initialises a new SnapshotFile object for the file with the given name.
+     *
+     * @param aFileName the name of the live data file
+     */
+    SnapshotFile(String aFileName)
+    {
+        current = Paths.get(aFileName).toAbsolutePath();
+        previous = current.resolveSibling(current.getFileName() + ".1");
+        temporary = current.resolveSibling(current.getFileName() + ".tmp");
+    }
+
+
+    //package protocol
+
+    /**
+     * Writes a new generation holding the state of the hospital.
+     * The current generation becomes the previous generation.
+     *
+     * @param aHospital the hospital to be stored
+     *
+     * @return the number of bytes written
+     *
+     * @throws IOException if the snapshot could not be written
+     */
+    long write(HospCoord aHospital) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(aHospital);
+        oos.close();
+        byte[] payload = bytes.toByteArray();
+
+        CRC32C checksum = new CRC32C();
+        checksum.update(payload, 0, payload.length);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(aHospital.getWards().size());
+        header.putInt(aHospital.getTeams().size());
+        header.putInt(aHospital.getPatients().size());
+        header.putInt(payload.length);
+        header.putLong(checksum.getValue());
+        header.flip();
+
+        FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try
+        {
+            ByteBuffer body = ByteBuffer.wrap(payload);
+            while (header.hasRemaining())
+            {
+                channel.write(header);
+            }
+            while (body.hasRemaining())
+            {
+                channel.write(body);
+            }
+            channel.force(true);
+        }
+        finally
+        {
+            channel.close();
+        }
+
+        if (Files.exists(current))
+        {
+            Files.move(current, previous, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(temporary, current, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+        return HEADER_LENGTH + payload.length;
+    }
+
+
+    /**
+     * Returns true if there is a current generation, whether or not it can be read.
+     *
+     * @return true if the live data file exists, false otherwise
+     */
+    boolean exists()
+    {
+        return Files.exists(current);
+    }
+
+
+    /**
+     * Reads the most recent generation that passes its checks.
+     * If the current generation is missing, truncated or corrupt the previous
+     * generation is used instead. A generation that exists but cannot be read is set
+     * aside, so that the next write neither rotates it over the previous generation
+     * nor replaces it.
+     *
+     * @return the stored HospCoord object
+     *
+     * @throws IOException if neither generation could be read
+     */
+    HospCoord read() throws IOException
+    {
+        try
+        {
+            return read(current);
+        }
+        catch (IOException ex)
+        {
+            if (!Files.exists(previous))
+            {
+                setAside(current);
+                throw ex;
+            }
+            System.out.println("Data file " + current.getFileName() + " unusable (" + ex.getMessage()
+                    + "); using previous generation.");
+            setAside(current);
+            try
+            {
+                return read(previous);
+            }
+            catch (IOException anotherEx)
+            {
+                setAside(previous);
+                throw anotherEx;
+            }
+        }
+    }
+
+
+    //private protocol
+
+    /**
+     * Forces the directory holding the data file to disk, so that the renames of the
+     * generations survive a crash as well as their contents. Where directories cannot
+     * be opened, as on Windows, the renames are left to the file system.
+     */
+    private void forceDirectory()
+    {
+        try
+        {
+            FileChannel directory = FileChannel.open(current.getParent(), StandardOpenOption.READ);
+            try
+            {
+                directory.force(true);
+            }
+            finally
+            {
+                directory.close();
+            }
+        }
+        catch (IOException ex)
+        {
+            // not supported on this platform
+        }
+    }
+
+
+    /**
+     * Reads and verifies the snapshot held in aFile.
+     */
+    private HospCoord read(Path aFile) throws IOException
+    {
+        byte[] contents = Files.readAllBytes(aFile);
+        if (contents.length < HEADER_LENGTH)
+        {
+            throw new IOException("truncated header");
+        }
+        ByteBuffer header = ByteBuffer.wrap(contents, 0, HEADER_LENGTH);
+        if (header.getShort(0) == STREAM_MAGIC)
+        {
+            return readObject(contents, 0, contents.length);
+        }
+        if (header.getInt() != MAGIC)
+        {
+            throw new IOException("not a snapshot file");
+        }
+        if (header.getInt() != VERSION)
+        {
+            throw new IOException("unsupported snapshot version");
+        }
+        int wardCount = header.getInt();
+        int teamCount = header.getInt();
+        int patientCount = header.getInt();
+        int length = header.getInt();
+        long expected = header.getLong();
+        if (length != contents.length - HEADER_LENGTH)
+        {
+            throw new IOException("truncated payload");
+        }
+
+        CRC32C checksum = new CRC32C();
+        checksum.update(contents, HEADER_LENGTH, length);
+        if (checksum.getValue() != expected)
+        {
+            throw new IOException("checksum mismatch");
+        }
+
+        HospCoord result = readObject(contents, HEADER_LENGTH, length);
+        if (result.getWards().size() != wardCount || result.getTeams().size() != teamCount
+                || result.getPatients().size() != patientCount)
+        {
+            throw new IOException("record counts do not match header");
+        }
+        return result;
+    }
+
+
+    /**
+     * Reads the HospCoord object serialized in aLength bytes of anArray from anOffset.
+     */
+    private static HospCoord readObject(byte[] anArray, int anOffset, int aLength) throws IOException
+    {
+        Object stored;
+        try
+        {
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(anArray, anOffset, aLength));
+            stored = ois.readObject();
+        }
+        catch (ClassNotFoundException | RuntimeException ex)
+        {
+            throw new IOException("incompatible snapshot", ex);
+        }
+        if (!(stored instanceof HospCoord))
+        {
+            throw new IOException("incompatible snapshot");
+        }
+        return (HospCoord) stored;
+    }
+
+
+    /**
+     * Renames aFile, if it exists, with the suffix ".unreadable" and the current time.
+     */
+    private static void setAside(Path aFile) throws IOException
+    {
+        if (Files.exists(aFile))
+        {
+            Path aside = aFile.resolveSibling(aFile.getFileName() + ".unreadable." + System.currentTimeMillis());
+            Files.move(aFile, aside);
+            System.out.println("Data file " + aFile.getFileName() + " could not be read; kept as " + aside.getFileName());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package hospitalcore;
 
 import java.util.*;
+import m256people.*;
 
 /**
  * Team objects represent the teams in the hospital.
@@ -8,12 +9,23 @@ import java.util.*;
 public class Team implements java.io.Serializable
 {
     //attributes
+
+    /**
+     * the version of the serialized form, kept at that of the first release so that
+     * the data files it wrote can still be read
+     */
+    private static final long serialVersionUID = 809084577823747526L;
     
     /**
      * the unique code of the team
      */
     private String code;
     
+    /**
+     * the id of the team, unique among the teams of the hospital; 0 until it is registered
+     */
+    private int id;
+    
     
     //links
     
@@ -32,6 +44,27 @@ public class Team implements java.io.Serializable
      */
     private Collection<Doctor> doctors; 
     
+    /**
+     * the number of changes made to this team's patients, used by snapshots to
+     * tell whether the team has changed
+     */
+    private transient int changes;
+    
+    /**
+     * the linked Patient objects in order of name, built on first use
+     */
+    private transient Roster<Patient> roster;
+    
+    /**
+     * the linked Doctor objects in order of name, built on first use
+     */
+    private transient List<Doctor> sortedDoctors;
+    
+    /**
+     * the treatments given by this team's doctors in the last hour, created on first use
+     */
+    private transient volatile TreatmentCounter treatments;
+    
     
     //constructor
     
@@ -66,6 +99,18 @@ public class Team implements java.io.Serializable
     }
     
     
+    /**
+     * Returns the id of this team, which stays the same when the hospital is saved and
+     * read back in.
+     *
+     * @return id
+     */
+    public int getId()
+    {
+        return id;
+    }
+    
+    
     /**
      * Returns a string representation of this team's code, doctors and patients
      *
@@ -79,6 +124,17 @@ public class Team implements java.io.Serializable
     
     //package protocol
     
+    /**
+     * Sets the id of this team; invoked only by EntityRegistry.
+     *
+     * @param anId the id
+     */
+    void setId(int anId)
+    {
+        id = anId;
+    }
+    
+    
     /**
      * Returns a map of (patient, ward) pairs where the patients are those
      * cared for by this team and each ward is the ward that the corresponding patient
@@ -108,6 +164,11 @@ public class Team implements java.io.Serializable
     void addPatient(Patient aPatient)
     {
         patients.add(aPatient);
+        if (roster != null)
+        {
+            roster.add(aPatient.getName(), aPatient);
+        }
+        changes++;
     }
     
     
@@ -154,6 +215,99 @@ public class Team implements java.io.Serializable
      */
     void removePatient(Patient aPatient)
     {
-        patients.remove(aPatient);
+        if (patients.remove(aPatient) && roster != null)
+        {
+            roster.remove(aPatient.getName(), aPatient);
+        }
+        changes++;
+    }
+    
+    
+    /**
+     * Returns all the patients cared for by this team.
+     *
+     * @return a collection of all the linked Patient objects
+     */
+    Collection<Patient> getPatients()
+    {
+        return patients;
+    }
+    
+    
+    /**
+     * Returns the number of changes made to this team's patients.
+     *
+     * @return changes
+     */
+    int getChanges()
+    {
+        return changes;
+    }
+    
+    
+    /**
+     * Returns the patients cared for by this team in order of name.
+     * The roster is built the first time it is used and kept up to date from then on.
+     *
+     * @return the roster of the linked Patient objects
+     */
+    Roster<Patient> getRoster()
+    {
+        if (roster == null)
+        {
+            roster = new Roster<Patient>();
+            for (Patient aPatient : patients)
+            {
+                roster.add(aPatient.getName(), aPatient);
+            }
+        }
+        return roster;
+    }
+    
+    
+    /**
+     * Returns the doctors this team contains in order of name.
+     * Teams do not change, so the list is sorted once, the first time it is used.
+     *
+     * @return an unmodifiable list of the linked Doctor objects
+     */
+    List<Doctor> getSortedDoctors()
+    {
+        List<Doctor> results = sortedDoctors;
+        if (results == null)
+        {
+            Roster<Doctor> sorted = new Roster<Doctor>();
+            for (Doctor aDoctor : doctors)
+            {
+                sorted.add(aDoctor.getName(), aDoctor);
+            }
+            results = Collections.unmodifiableList(sorted.getAll());
+            sortedDoctors = results;
+        }
+        return results;
+    }
+    
+    
+    /**
+     * Returns the counter of treatments given by this team's doctors, creating it if necessary.
+     *
+     * @return the linked TreatmentCounter object
+     */
+    TreatmentCounter getTreatmentCounter()
+    {
+        TreatmentCounter counter = treatments;
+        if (counter == null)
+        {
+            synchronized (this)
+            {
+                counter = treatments;
+                if (counter == null)
+                {
+                    counter = new TreatmentCounter();
+                    treatments = counter;
+                }
+            }
+        }
+        return counter;
     }
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+
+/**
+ * TeamAffinityStrategy objects choose, among the wards of the appropriate type
+ * with free beds, the ward where the patient's team already has the most patients,
+ * so that the team's doctors have fewer wards to visit. If the team has no patients
+ * on a suitable ward, the ward with the greatest number of free beds is chosen.<p>
+ * Only the wards the team already uses are considered, so choosing a ward costs
+ * no more than the number of such wards.
+ */
+public class TeamAffinityStrategy implements BedAllocationStrategy
+{
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = 6653166115453198005L;
+
+    /**
+     * the number of wards looked at by the most recent selectWard
+     */
+    private transient int wardsExamined;
+
+
+    //links
+
+    /**
+     * the wards indexed by number of free beds
+     */
+    private transient WardBucketIndex index;
+
+    /**
+     * for each team, the number of its patients on each ward it uses
+     */
+    private transient Map<Team, Map<Ward, int[]>> teamWards;
+
+
+    //public protocol
+
+    /**
+     * Builds the index over all the wards of the hospital.
+     *
+     * @param aWardCollection all the wards of the hospital
+     */
+    public void initialise(Collection<Ward> aWardCollection)
+    {
+        index = new WardBucketIndex(aWardCollection);
+        teamWards = new HashMap<Team, Map<Ward, int[]>>();
+        for (Ward aWard : aWardCollection)
+        {
+            for (Patient aPatient : aWard.getPatients())
+            {
+                count(aWard, aPatient.getTeam())[0]++;
+            }
+        }
+    }
+
+
+    /**
+     * Returns the ward of type aSex with free beds where aTeam has the most patients,
+     * or if there is none, a ward of type aSex with the greatest number of free beds.
+     *
+     * @param aSex the sex of the patient
+     * @param aTeam the team that will care for the patient
+     *
+     * @return a Ward object with at least one free bed, or null if there is none
+     */
+    public Ward selectWard(Sex aSex, Team aTeam)
+    {
+        Ward theWard = null;
+        int mostPatients = 0;
+        Map<Ward, int[]> counts = teamWards.get(aTeam);
+        wardsExamined = (counts == null) ? 0 : counts.size();
+        if (counts != null)
+        {
+            for (Map.Entry<Ward, int[]> entry : counts.entrySet())
+            {
+                Ward aWard = entry.getKey();
+                int patients = entry.getValue()[0];
+                if (aWard.getType() == aSex && aWard.getNumberOfFreeBeds() > 0
+                        && (patients > mostPatients || (patients == mostPatients && patients > 0
+                                && aWard.getNumberOfFreeBeds() > theWard.getNumberOfFreeBeds())))
+                {
+                    mostPatients = patients;
+                    theWard = aWard;
+                }
+            }
+        }
+        return (theWard != null) ? theWard : index.mostFree(aSex);
+    }
+
+
+    /**
+     * Records that a patient cared for by the team has been added to the ward.
+     *
+     * @param aWard a ward
+     * @param aTeam a team
+     */
+    public void patientAdded(Ward aWard, Team aTeam)
+    {
+        index.update(aWard);
+        count(aWard, aTeam)[0]++;
+    }
+
+
+    /**
+     * Records that a patient cared for by the team has been removed from the ward.
+     *
+     * @param aWard a ward
+     * @param aTeam a team
+     */
+    public void patientRemoved(Ward aWard, Team aTeam)
+    {
+        index.update(aWard);
+        count(aWard, aTeam)[0]--;
+    }
+
+
+    /**
+     * Returns the number of candidate wards looked at in turn by the most recent
+     * selectWard: the wards its team was using, whether or not one was chosen.
+     *
+     * @return the number of wards examined
+     */
+    public int getWardsExamined()
+    {
+        return wardsExamined;
+    }
+
+
+    /**
+     * Returns a string naming this strategy.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return "team affinity";
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns the counter of aTeam's patients on aWard, creating it if necessary.
+     */
+    private int[] count(Ward aWard, Team aTeam)
+    {
+        Map<Ward, int[]> counts = teamWards.get(aTeam);
+        if (counts == null)
+        {
+            counts = new HashMap<Ward, int[]>();
+            teamWards.put(aTeam, counts);
+        }
+        int[] counter = counts.get(aWard);
+        if (counter == null)
+        {
+            counter = new int[1];
+            counts.put(aWard, counter);
+        }
+        return counter;
+    }
+}
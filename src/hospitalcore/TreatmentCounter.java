@@ -0,0 +1,119 @@
+package hospitalcore;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TreatmentCounter objects count treatments minute by minute over the last hour.<p>
+ * The counts are kept in a ring of slots, one per minute. Each slot is a single long
+ * holding the minute it counts for in its upper bits and the count in its lower bits,
+ * so recording a treatment is one compare-and-set and a slot left over from an earlier
+ * turn of the ring is recognised and restarted without any lock.
+ */
+class TreatmentCounter
+{
+    //attributes
+
+    /**
+     * the greatest number of minutes that can be asked about
+     */
+    static final int WINDOW = 60;
+
+    /**
+     * the number of slots in the ring, a power of two greater than WINDOW
+     */
+    private static final int SLOTS = 64;
+
+    /**
+     * the number of bits in a slot holding the count
+     */
+    private static final int COUNT_BITS = 24;
+
+    /**
+     * the greatest count a slot can hold
+     */
+    private static final long MAX_COUNT = (1L << COUNT_BITS) - 1;
+
+    /**
+     * the ring of slots, indexed by minute modulo SLOTS
+     */
+    private final AtomicLongArray slots;
+
+
+    //constructor
+
+    /**
+     * Initialises a new TreatmentCounter object with no treatments counted.
+     */
+    TreatmentCounter()
+    {
+        slots = new AtomicLongArray(SLOTS);
+    }
+
+
+    //package protocol
+
+    /**
+     * Counts one treatment in the current minute.
+     */
+    void record()
+    {
+        long minute = currentMinute();
+        int index = (int) (minute & (SLOTS - 1));
+        while (true)
+        {
+            long slot = slots.get(index);
+            long updated;
+            if ((slot >>> COUNT_BITS) != minute)
+            {
+                updated = (minute << COUNT_BITS) | 1;
+            }
+            else if ((slot & MAX_COUNT) == MAX_COUNT)
+            {
+                return; // saturated
+            }
+            else
+            {
+                updated = slot + 1;
+            }
+            if (slots.compareAndSet(index, slot, updated))
+            {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Returns the number of treatments counted in the last aMinutes minutes, the
+     * current minute included.
+     *
+     * @param aMinutes the length of the window, from 1 to WINDOW
+     *
+     * @return the number of treatments
+     */
+    long count(int aMinutes)
+    {
+        long now = currentMinute();
+        long total = 0;
+        for (long minute = now - aMinutes + 1; minute <= now; minute++)
+        {
+            long slot = slots.get((int) (minute & (SLOTS - 1)));
+            if ((slot >>> COUNT_BITS) == minute)
+            {
+                total += slot & MAX_COUNT;
+            }
+        }
+        return total;
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns the number of minutes since the epoch.
+     */
+    private static long currentMinute()
+    {
+        return System.currentTimeMillis() / 60000;
+    }
+}
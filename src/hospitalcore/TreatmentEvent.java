@@ -0,0 +1,31 @@
+package hospitalcore;
+
+import jdk.jfr.*;
+
+/**
+ * TreatmentEvent objects are JDK Flight Recorder events recording the treatment of a
+ * patient by a doctor.
+ */
+@Name("hospitalcore.Treatment")
+@Label("Treatment")
+@Category("Hospital")
+@Description("Recording the treatment of a patient by a doctor")
+class TreatmentEvent extends Event
+{
+    //attributes
+
+    /**
+     * the type of these events, so that a treatment can ask whether any recording wants
+     * one before creating it
+     */
+    static final EventType TYPE = EventType.getEventType(TreatmentEvent.class);
+
+    @Label("Patient Id")
+    int patientId;
+
+    @Label("Doctor Id")
+    int doctorId;
+
+    @Label("Team")
+    String team;
+}
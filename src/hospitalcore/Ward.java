@@ -9,6 +9,12 @@ import m256people.*;
 public class Ward implements java.io.Serializable
 {    
     //attributes
+
+    /**
+     * the version of the serialized form, kept at that of the first release so that
+     * the data files it wrote can still be read
+     */
+    private static final long serialVersionUID = 4942064504914273376L;
     
     /**
      * the unique name of the ward
@@ -25,6 +31,16 @@ public class Ward implements java.io.Serializable
      */
     private int capacity; 
     
+    /**
+     * the id of the ward, unique among the wards of the hospital; 0 until it is registered
+     */
+    private int id;
+    
+    /**
+     * the attributes of the ward beyond its type, such as its specialty, in lower case
+     */
+    private Set<String> attributes;
+    
     
     //links
     
@@ -33,6 +49,17 @@ public class Ward implements java.io.Serializable
      */
     private Collection<Patient> patients; 
     
+    /**
+     * the number of changes made to this ward's patients, used by snapshots to
+     * tell whether the ward has changed
+     */
+    private transient int changes;
+    
+    /**
+     * the linked Patient objects in order of name, built on first use
+     */
+    private transient Roster<Patient> roster;
+    
     
     //constructor
     
@@ -44,11 +71,36 @@ public class Ward implements java.io.Serializable
      * @param aCapacity the capacity of the ward
      */
     Ward(String aName, Sex aSex, int aCapacity)
+    {
+        this(aName, aSex, aCapacity, Collections.<String>emptySet());
+    }
+    
+    
+    /**
+     * Initialises a new Ward object with the given attribute values and further attributes,
+     * such as "paediatric" or "isolation". Attributes are not case sensitive and empty
+     * ones are ignored.
+     *
+     * @param aName the name of the ward
+     * @param aSex the type of the ward
+     * @param aCapacity the capacity of the ward
+     * @param anAttributeCollection the further attributes of the ward
+     */
+    Ward(String aName, Sex aSex, int aCapacity, Collection<String> anAttributeCollection)
     {
         name = aName;
         type = aSex;
         capacity = aCapacity;
         patients = new HashSet<Patient>();
+        attributes = new TreeSet<String>();
+        for (String anAttribute : anAttributeCollection)
+        {
+            String attribute = normalise(anAttribute);
+            if (!attribute.isEmpty())
+            {
+                attributes.add(attribute);
+            }
+        }
     }
     
     
@@ -76,6 +128,30 @@ public class Ward implements java.io.Serializable
     }
     
     
+    /**
+     * Returns the attributes of this ward beyond its type.
+     *
+     * @return an unmodifiable set of the attributes, in lower case
+     */
+    public Set<String> getAttributes()
+    {
+        return Collections.unmodifiableSet(attributes);
+    }
+    
+    
+    /**
+     * Returns whether this ward has the attribute.
+     *
+     * @param anAttribute an attribute, in any case
+     *
+     * @return true if it has, false otherwise
+     */
+    public boolean hasAttribute(String anAttribute)
+    {
+        return attributes.contains(normalise(anAttribute));
+    }
+    
+    
     /**
      * Returns the capacity of this ward.
      *
@@ -99,18 +175,54 @@ public class Ward implements java.io.Serializable
     
     
     /**
-     * Returns a string representation of this ward's name, type, capacity and patients.
+     * Returns the id of this ward, which stays the same when the hospital is saved and
+     * read back in.
+     *
+     * @return id
+     */
+    public int getId()
+    {
+        return id;
+    }
+    
+    
+    /**
+     * Returns a string representation of this ward's name, type, capacity, attributes and patients.
      *
      * @return a String object representing the receiver
      */
     public String toString()
     {
-        return name + ": " + type + ": " + capacity + ": " + patients;
+        return name + ": " + type + ": " + capacity + ": " + (attributes.isEmpty() ? "" : attributes + ": ") + patients;
     }
     
     
     //package protocol
     
+    /**
+     * Returns anAttribute as it is held by wards: trimmed and in lower case.
+     *
+     * @param anAttribute an attribute
+     *
+     * @return the normalised attribute
+     */
+    static String normalise(String anAttribute)
+    {
+        return anAttribute.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    
+    /**
+     * Sets the id of this ward; invoked only by EntityRegistry.
+     *
+     * @param anId the id
+     */
+    void setId(int anId)
+    {
+        id = anId;
+    }
+    
+    
     /**
      * Returns all the patients on this ward.
      *
@@ -131,6 +243,11 @@ public class Ward implements java.io.Serializable
     void addPatient(Patient aPatient)
     {
         patients.add(aPatient);
+        if (roster != null)
+        {
+            roster.add(aPatient.getName(), aPatient);
+        }
+        changes++;
     }
     
     
@@ -142,6 +259,65 @@ public class Ward implements java.io.Serializable
      */
     void removePatient(Patient aPatient)
     {
-        patients.remove(aPatient);
+        if (patients.remove(aPatient) && roster != null)
+        {
+            roster.remove(aPatient.getName(), aPatient);
+        }
+        changes++;
+    }
+    
+    
+    /**
+     * Records that one of the patients on this ward has changed.
+     */
+    void touch()
+    {
+        changes++;
+    }
+    
+    
+    /**
+     * Returns the number of changes made to this ward's patients.
+     *
+     * @return changes
+     */
+    int getChanges()
+    {
+        return changes;
+    }
+    
+    
+    /**
+     * Returns the patients on this ward in order of name.
+     * The roster is built the first time it is used and kept up to date from then on.
+     *
+     * @return the roster of the linked Patient objects
+     */
+    Roster<Patient> getRoster()
+    {
+        if (roster == null)
+        {
+            roster = new Roster<Patient>();
+            for (Patient aPatient : patients)
+            {
+                roster.add(aPatient.getName(), aPatient);
+            }
+        }
+        return roster;
+    }
+    
+    
+    //private protocol
+    
+    /**
+     * Reads in this ward, giving it no further attributes if it was saved before wards had them.
+     */
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        if (attributes == null)
+        {
+            attributes = new TreeSet<String>();
+        }
     }
 }
\ No newline at end of file
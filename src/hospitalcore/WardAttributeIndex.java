@@ -0,0 +1,252 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+
+/**
+ * WardAttributeIndex objects find the wards that have a given type and attributes,
+ * and among them the ward with the most free beds.<p>
+ * The index holds one bitmap over ward ids for each ward type and one for each
+ * attribute, so the wards with several attributes are found by AND-ing a few words per
+ * 64 wards rather than by looking at each ward. The wards are also held in one bitmap
+ * per number of free beds; the best ward is the first matching ward in the highest of
+ * these bitmaps that holds any. Taking or freeing a bed moves a ward between two of them.
+ */
+class WardAttributeIndex
+{
+    //attributes
+
+    /**
+     * the number of free beds of each ward, by id, as last indexed
+     */
+    private int[] freeBeds;
+
+    /**
+     * the highest number of free beds of any ward
+     */
+    private int top;
+
+
+    //links
+
+    /**
+     * the indexed wards, by id
+     */
+    private final Ward[] wards;
+
+    /**
+     * the wards of each type
+     */
+    private final Map<Sex, BitSet> byType;
+
+    /**
+     * the wards with each attribute
+     */
+    private final Map<String, BitSet> byAttribute;
+
+    /**
+     * the wards with each number of free beds, from 1 up
+     */
+    private final BitSet[] byFreeBeds;
+
+    /**
+     * the bitmap in which matches are worked out, reused so that choosing a ward allocates nothing
+     */
+    private final BitSet scratch;
+
+
+    //constructor
+
+    /**
+     * Initialises a new WardAttributeIndex object over the wards, which must all be registered.
+     *
+     * @param aWardCollection the wards to be indexed
+     */
+    WardAttributeIndex(Collection<Ward> aWardCollection)
+    {
+        int highestId = 0;
+        int largest = 0;
+        for (Ward aWard : aWardCollection)
+        {
+            highestId = Math.max(highestId, aWard.getId());
+            largest = Math.max(largest, aWard.getCapacity());
+        }
+        wards = new Ward[highestId + 1];
+        freeBeds = new int[highestId + 1];
+        byType = new EnumMap<Sex, BitSet>(Sex.class);
+        byAttribute = new HashMap<String, BitSet>();
+        byFreeBeds = new BitSet[largest + 1];
+        scratch = new BitSet(highestId + 1);
+        for (Ward aWard : aWardCollection)
+        {
+            int id = aWard.getId();
+            wards[id] = aWard;
+            bitmap(byType, aWard.getType()).set(id);
+            for (String anAttribute : aWard.getAttributes())
+            {
+                bitmap(byAttribute, anAttribute).set(id);
+            }
+            move(id, freeBeds(aWard));
+        }
+    }
+
+
+    //package protocol
+
+    /**
+     * Moves the ward to the bitmap for its current number of free beds.
+     *
+     * @param aWard an indexed ward
+     */
+    void update(Ward aWard)
+    {
+        int id = aWard.getId();
+        if (id < wards.length && wards[id] == aWard)
+        {
+            move(id, freeBeds(aWard));
+        }
+    }
+
+
+    /**
+     * Returns a ward of the given type with all the given attributes that has the most
+     * free beds; of wards with equally many, the one with the lowest id.
+     *
+     * @param aSex a ward type
+     * @param anAttributeCollection the attributes required, in any case
+     *
+     * @return a Ward object with at least one free bed, or null if there is none
+     */
+    Ward mostFree(Sex aSex, Collection<String> anAttributeCollection)
+    {
+        if (!match(aSex, anAttributeCollection))
+        {
+            return null;
+        }
+        for (int free = top; free > 0; free--)
+        {
+            BitSet withFree = byFreeBeds[free];
+            if (withFree != null && withFree.intersects(scratch))
+            {
+                scratch.and(withFree);
+                return wards[scratch.nextSetBit(0)];
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the wards of the given type with all the given attributes.
+     *
+     * @param aSex a ward type, or null for wards of either type
+     * @param anAttributeCollection the attributes required, in any case
+     *
+     * @return a list of Ward objects, in order of id
+     */
+    List<Ward> matching(Sex aSex, Collection<String> anAttributeCollection)
+    {
+        List<Ward> results = new ArrayList<Ward>();
+        if (match(aSex, anAttributeCollection))
+        {
+            for (int id = scratch.nextSetBit(0); id >= 0; id = scratch.nextSetBit(id + 1))
+            {
+                results.add(wards[id]);
+            }
+        }
+        return results;
+    }
+
+
+    //private protocol
+
+    /**
+     * Sets scratch to the wards of the given type with all the given attributes,
+     * returning false if there are none.
+     */
+    private boolean match(Sex aSex, Collection<String> anAttributeCollection)
+    {
+        scratch.clear();
+        if (aSex == null)
+        {
+            scratch.set(1, wards.length);
+            for (int id = 1; id < wards.length; id++)
+            {
+                if (wards[id] == null)
+                {
+                    scratch.clear(id);
+                }
+            }
+        }
+        else
+        {
+            BitSet ofType = byType.get(aSex);
+            if (ofType == null)
+            {
+                return false;
+            }
+            scratch.or(ofType);
+        }
+        for (String anAttribute : anAttributeCollection)
+        {
+            BitSet withAttribute = byAttribute.get(Ward.normalise(anAttribute));
+            if (withAttribute == null)
+            {
+                return false;
+            }
+            scratch.and(withAttribute);
+        }
+        return !scratch.isEmpty();
+    }
+
+
+    /**
+     * Moves ward id from the bitmap for its last number of free beds to the one for aFree.
+     */
+    private void move(int id, int aFree)
+    {
+        int old = freeBeds[id];
+        if (old > 0)
+        {
+            byFreeBeds[old].clear(id);
+        }
+        freeBeds[id] = aFree;
+        if (aFree > 0)
+        {
+            if (byFreeBeds[aFree] == null)
+            {
+                byFreeBeds[aFree] = new BitSet(wards.length);
+            }
+            byFreeBeds[aFree].set(id);
+            top = Math.max(top, aFree);
+        }
+        while (top > 0 && (byFreeBeds[top] == null || byFreeBeds[top].isEmpty()))
+        {
+            top--;
+        }
+    }
+
+
+    /**
+     * Returns the number of free beds of aWard, treating an over-full ward as full.
+     */
+    private static int freeBeds(Ward aWard)
+    {
+        return Math.max(0, aWard.getNumberOfFreeBeds());
+    }
+
+
+    /**
+     * Returns the bitmap for aKey in aMap, adding an empty one if there is none.
+     */
+    private static <K> BitSet bitmap(Map<K, BitSet> aMap, K aKey)
+    {
+        BitSet result = aMap.get(aKey);
+        if (result == null)
+        {
+            result = new BitSet();
+            aMap.put(aKey, result);
+        }
+        return result;
+    }
+}
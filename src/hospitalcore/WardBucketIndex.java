@@ -0,0 +1,229 @@
+package hospitalcore;
+
+import java.util.*;
+import m256people.*;
+
+/**
+ * WardBucketIndex objects index wards of each type by their number of free beds.<p>
+ * For each type there is one bucket per possible number of free beds, each holding
+ * the wards with that many free beds in a doubly linked list. Moving a ward between
+ * buckets when a bed is taken or freed is constant time and allocates nothing, and
+ * finding the ward with the most or fewest free beds costs at most one step per bed
+ * of the largest ward, however many wards there are.
+ */
+class WardBucketIndex
+{
+    //links
+
+    /**
+     * the node of each indexed ward
+     */
+    private final Map<Ward, Node> nodes;
+
+    /**
+     * the buckets of each ward type
+     */
+    private final Map<Sex, Buckets> bucketsByType;
+
+
+    //constructor
+
+    /**
+     * Initialises a new WardBucketIndex object over the wards.
+     *
+     * @param aWardCollection the wards to be indexed
+     */
+    WardBucketIndex(Collection<Ward> aWardCollection)
+    {
+        nodes = new HashMap<Ward, Node>();
+        bucketsByType = new EnumMap<Sex, Buckets>(Sex.class);
+        Map<Sex, Integer> largest = new EnumMap<Sex, Integer>(Sex.class);
+        for (Ward aWard : aWardCollection)
+        {
+            Integer size = largest.get(aWard.getType());
+            if (size == null || size.intValue() < aWard.getCapacity())
+            {
+                largest.put(aWard.getType(), Integer.valueOf(aWard.getCapacity()));
+            }
+        }
+        for (Map.Entry<Sex, Integer> entry : largest.entrySet())
+        {
+            bucketsByType.put(entry.getKey(), new Buckets(entry.getValue().intValue()));
+        }
+        for (Ward aWard : aWardCollection)
+        {
+            Node aNode = new Node(aWard);
+            nodes.put(aWard, aNode);
+            bucketsByType.get(aWard.getType()).link(aNode, freeBeds(aWard));
+        }
+    }
+
+
+    //package protocol
+
+    /**
+     * Moves the ward to the bucket for its current number of free beds.
+     *
+     * @param aWard an indexed ward
+     */
+    void update(Ward aWard)
+    {
+        Node aNode = nodes.get(aWard);
+        int free = freeBeds(aWard);
+        if (aNode != null && aNode.bucket != free)
+        {
+            Buckets buckets = bucketsByType.get(aWard.getType());
+            buckets.unlink(aNode);
+            buckets.link(aNode, free);
+        }
+    }
+
+
+    /**
+     * Returns a ward of the given type with the most free beds.
+     *
+     * @param aSex a ward type
+     *
+     * @return a Ward object with at least one free bed, or null if there is none
+     */
+    Ward mostFree(Sex aSex)
+    {
+        Buckets buckets = bucketsByType.get(aSex);
+        if (buckets == null || buckets.top == 0)
+        {
+            return null;
+        }
+        return buckets.heads[buckets.top].ward;
+    }
+
+
+    /**
+     * Returns a ward of the given type with the fewest free beds, but at least one.
+     *
+     * @param aSex a ward type
+     *
+     * @return a Ward object with at least one free bed, or null if there is none
+     */
+    Ward leastFree(Sex aSex)
+    {
+        Buckets buckets = bucketsByType.get(aSex);
+        if (buckets == null)
+        {
+            return null;
+        }
+        for (int free = 1; free <= buckets.top; free++)
+        {
+            if (buckets.heads[free] != null)
+            {
+                return buckets.heads[free].ward;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the wards of the given type that have free beds, most free beds first.
+     *
+     * @param aSex a ward type
+     *
+     * @return a list of Ward objects
+     */
+    List<Ward> inOrderOfFreeBeds(Sex aSex)
+    {
+        List<Ward> results = new ArrayList<Ward>();
+        Buckets buckets = bucketsByType.get(aSex);
+        if (buckets != null)
+        {
+            for (int free = buckets.top; free > 0; free--)
+            {
+                for (Node aNode = buckets.heads[free]; aNode != null; aNode = aNode.next)
+                {
+                    results.add(aNode.ward);
+                }
+            }
+        }
+        return results;
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns the number of free beds of aWard, treating an over-full ward as full.
+     */
+    private static int freeBeds(Ward aWard)
+    {
+        return Math.max(0, aWard.getNumberOfFreeBeds());
+    }
+
+
+    /**
+     * A ward's place in its bucket list.
+     */
+    private static class Node
+    {
+        private final Ward ward;
+        private int bucket;
+        private Node previous;
+        private Node next;
+
+        Node(Ward aWard)
+        {
+            ward = aWard;
+        }
+    }
+
+
+    /**
+     * The buckets of one ward type and the highest bucket that is not empty.
+     */
+    private static class Buckets
+    {
+        private final Node[] heads;
+        private int top;
+
+        Buckets(int aLargestCapacity)
+        {
+            heads = new Node[aLargestCapacity + 1];
+        }
+
+        void link(Node aNode, int aBucket)
+        {
+            aNode.bucket = aBucket;
+            aNode.previous = null;
+            aNode.next = heads[aBucket];
+            if (aNode.next != null)
+            {
+                aNode.next.previous = aNode;
+            }
+            heads[aBucket] = aNode;
+            if (aBucket > top)
+            {
+                top = aBucket;
+            }
+        }
+
+        void unlink(Node aNode)
+        {
+            if (aNode.previous != null)
+            {
+                aNode.previous.next = aNode.next;
+            }
+            else
+            {
+                heads[aNode.bucket] = aNode.next;
+            }
+            if (aNode.next != null)
+            {
+                aNode.next.previous = aNode.previous;
+            }
+            aNode.previous = null;
+            aNode.next = null;
+            while (top > 0 && heads[top] == null)
+            {
+                top--;
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package hospitalfeed;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import hospitalcore.*;
+
+/**
+ * AdmissionFeed objects admit patients to a hospital from a continuous stream of lines
+ * of text, such as an upstream patient feed.<p>
+ * Each line passes through the stages parse, validate, admit, batch and persist, each
+ * running on its own thread and connected by bounded, backpressured buffers. Lines that
+ * cannot be parsed, fail validation or find no free bed are counted as rejected by the
+ * stage concerned, whose statistics also give the latest reason. Admissions are gathered
+ * into batches, several batches are saved at a time, and each batch is published to the
+ * subscribers of the feed once it has been saved. If the hospital cannot be saved the
+ * feed fails, and its subscribers are told why. When the buffers are full, submit blocks,
+ * so a burst slows the producer down rather than filling memory.
+ */
+public class AdmissionFeed implements Flow.Publisher<List<FeedAdmission>>
+{
+    //attributes
+
+    /**
+     * the number of batches held that causes a save, unless set otherwise
+     */
+    private static final int SAVE_EVERY = 16;
+
+    /**
+     * the longest time in milliseconds a batch is held before it is saved, unless set otherwise
+     */
+    private static final long SAVE_INTERVAL = 1000;
+
+    /**
+     * the number of lines submitted
+     */
+    private final AtomicLong submitted;
+
+    /**
+     * the number of batches taken from the last stage
+     */
+    private final AtomicLong completed;
+
+    /**
+     * the time the feed was created, from System.nanoTime()
+     */
+    private final long started;
+
+
+    //links
+
+    /**
+     * the threads the stages run on
+     */
+    private final ExecutorService executor;
+
+    /**
+     * the publisher of the submitted lines
+     */
+    private final SubmissionPublisher<String> input;
+
+    /**
+     * the stages, in order
+     */
+    private final List<FeedStage<?, ?>> stages;
+
+    /**
+     * the last stage
+     */
+    private final PersistStage persist;
+
+    /**
+     * counted down when the last stage has finished
+     */
+    private final CountDownLatch completion;
+
+
+    //constructor
+
+    /**
+     * Initialises a new AdmissionFeed object admitting patients to the hospital, saving
+     * it once 16 batches are waiting and no more than a second after a batch arrives.
+     *
+     * @param aHospital the hospital to admit to
+     * @param aCapacity the number of items each stage may have waiting
+     * @param aBatchSize the greatest number of admissions in a batch
+     */
+    public AdmissionFeed(HospCoord aHospital, int aCapacity, int aBatchSize)
+    {
+        this(aHospital, aCapacity, aBatchSize, SAVE_EVERY, SAVE_INTERVAL);
+    }
+
+
+    /**
+     * Initialises a new AdmissionFeed object admitting patients to the hospital.
+     *
+     * @param aHospital the hospital to admit to
+     * @param aCapacity the number of items each stage may have waiting
+     * @param aBatchSize the greatest number of admissions in a batch
+     * @param aSaveEvery the number of batches held that causes a save
+     * @param aSaveInterval the longest time a batch is held before it is saved, in milliseconds
+     */
+    public AdmissionFeed(HospCoord aHospital, int aCapacity, int aBatchSize, int aSaveEvery, long aSaveInterval)
+    {
+        submitted = new AtomicLong();
+        completed = new AtomicLong();
+        started = System.nanoTime();
+        executor = Executors.newCachedThreadPool(new ThreadFactory()
+        {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable aRunnable)
+            {
+                Thread aThread = new Thread(aRunnable, "admission-feed-" + count.incrementAndGet());
+                aThread.setDaemon(true);
+                return aThread;
+            }
+        });
+        input = new SubmissionPublisher<String>(executor, aCapacity);
+        ParseStage parse = new ParseStage(executor, aCapacity);
+        ValidateStage validate = new ValidateStage(aHospital, executor, aCapacity);
+        AdmitStage admit = new AdmitStage(aHospital, executor, aCapacity);
+        BatchStage batch = new BatchStage(admit, aBatchSize, executor, Math.max(1, aCapacity / aBatchSize));
+        persist = new PersistStage(aHospital, aSaveEvery, aSaveInterval, executor, aCapacity);
+        stages = Collections.<FeedStage<?, ?>>unmodifiableList(Arrays.<FeedStage<?, ?>>asList(parse, validate, admit, batch, persist));
+
+        completion = new CountDownLatch(1);
+        persist.subscribe(new Flow.Subscriber<List<FeedAdmission>>()
+        {
+            public void onSubscribe(Flow.Subscription aSubscription)
+            {
+                aSubscription.request(Long.MAX_VALUE);
+            }
+
+            public void onNext(List<FeedAdmission> aBatch)
+            {
+                completed.incrementAndGet();
+            }
+
+            public void onError(Throwable aThrowable)
+            {
+                completion.countDown();
+            }
+
+            public void onComplete()
+            {
+                completion.countDown();
+            }
+        });
+        batch.subscribe(persist);
+        admit.subscribe(batch);
+        validate.subscribe(admit);
+        parse.subscribe(validate);
+        input.subscribe(parse);
+    }
+
+
+    //public protocol
+
+    /**
+     * Adds a line to the feed, waiting while the feed is full.
+     * Each line holds the title, first name, surname, sex (M or F), date of birth
+     * and team code of a patient, separated by commas.
+     *
+     * @param aLine a line of the feed
+     *
+     * @throws IllegalStateException if the feed has been closed
+     */
+    public void submit(String aLine)
+    {
+        submitted.incrementAndGet();
+        input.submit(aLine);
+    }
+
+
+    /**
+     * Ends the feed. Lines already submitted are still processed and saved.
+     */
+    public void close()
+    {
+        input.close();
+    }
+
+
+    /**
+     * Waits until every line submitted before close has been processed and saved.
+     *
+     * @param aTimeout the longest time to wait
+     * @param aUnit the unit of aTimeout
+     *
+     * @return true if the feed finished, false if the time ran out
+     *
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public boolean awaitCompletion(long aTimeout, TimeUnit aUnit) throws InterruptedException
+    {
+        if (!completion.await(aTimeout, aUnit))
+        {
+            return false;
+        }
+        executor.shutdown();
+        return true;
+    }
+
+
+    /**
+     * Subscribes to the batches of admissions as they are saved.
+     *
+     * @param aSubscriber a subscriber
+     */
+    public void subscribe(Flow.Subscriber<? super List<FeedAdmission>> aSubscriber)
+    {
+        persist.subscribe(aSubscriber);
+    }
+
+
+    /**
+     * Returns the statistics of the input buffer followed by those of each stage, as they are now.
+     *
+     * @return a list of StageStats objects
+     */
+    public List<StageStats> getStats()
+    {
+        List<StageStats> results = new ArrayList<StageStats>();
+        long lines = submitted.get();
+        results.add(new StageStats("input", lines, lines, 0, null, lines - stages.get(0).getReceived(), System.nanoTime() - started));
+        for (int i = 0; i < stages.size(); i++)
+        {
+            FeedStage<?, ?> aStage = stages.get(i);
+            long taken = (i + 1 < stages.size()) ? stages.get(i + 1).getReceived() : completed.get();
+            results.add(aStage.getStats(aStage.getPublished() - taken));
+        }
+        return results;
+    }
+
+
+    /**
+     * Admits the patients in a feed file to a partition of the hospital,
+     * printing the statistics of the feed every second and at the end.
+     * Usage: AdmissionFeed setupFile dataFile feedFile [capacity [batchSize]]
+     *
+     * @param args the command line arguments
+     *
+     * @throws Exception if the feed file cannot be read
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int capacity = (args.length > 3) ? Integer.parseInt(args[3]) : 256;
+        int batchSize = (args.length > 4) ? Integer.parseInt(args[4]) : 64;
+        HospCoord partition = HospCoord.getPartition(args[0], args[1]);
+        final AdmissionFeed feed = new AdmissionFeed(partition, capacity, batchSize);
+        Timer timer = new Timer(true);
+        timer.schedule(new TimerTask()
+        {
+            public void run()
+            {
+                printStats(feed);
+            }
+        }, 1000, 1000);
+        try (BufferedReader in = new BufferedReader(new FileReader(args[2])))
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                feed.submit(line);
+            }
+        }
+        feed.close();
+        feed.awaitCompletion(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        timer.cancel();
+        printStats(feed);
+    }
+
+
+    //private protocol
+
+    /**
+     * Prints the current statistics of aFeed.
+     */
+    private static void printStats(AdmissionFeed aFeed)
+    {
+        for (StageStats stats : aFeed.getStats())
+        {
+            System.out.println(stats);
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,57 @@
+package hospitalfeed;
+
+import java.util.concurrent.Executor;
+import hospitalcore.*;
+
+/**
+ * The stage of an AdmissionFeed that allocates a bed to each admission and links the
+ * patient to its ward and team, rejecting admissions for which there is no free bed.<p>
+ * Allocation and linking are one step, made by HospCoord.admit under the hospital's
+ * lock, so that no other admission can take the bed in between.
+ */
+class AdmitStage extends FeedStage<FeedAdmission, FeedAdmission>
+{
+    //links
+
+    /**
+     * the hospital admitted to
+     */
+    private final HospCoord hospital;
+
+
+    //constructor
+
+    /**
+     * Initialises a new AdmitStage object for the hospital.
+     *
+     * @param aHospital the hospital admitted to
+     * @param anExecutor the executor used to deliver items to the next stage
+     * @param aCapacity the number of items the next stage may have waiting
+     */
+    AdmitStage(HospCoord aHospital, Executor anExecutor, int aCapacity)
+    {
+        super("admit", anExecutor, aCapacity);
+        hospital = aHospital;
+    }
+
+
+    //protected protocol
+
+    /**
+     * Admits the patient and hands on the admission.
+     *
+     * @param anAdmission an admission
+     */
+    protected void process(FeedAdmission anAdmission)
+    {
+        Ward aWard = hospital.admit(anAdmission.getName(), anAdmission.getSex(),
+                anAdmission.getBirthDate(), anAdmission.getTeam());
+        if (aWard == null)
+        {
+            reject(anAdmission, "no free bed");
+            return;
+        }
+        anAdmission.setWard(aWard);
+        emit(anAdmission);
+    }
+}
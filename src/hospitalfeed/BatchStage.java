@@ -0,0 +1,94 @@
+package hospitalfeed;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+
+/**
+ * The stage of an AdmissionFeed that gathers admissions into batches for persisting.<p>
+ * A batch is handed on when it is full or when no more admissions are waiting, so
+ * batches grow under a burst, which keeps the number of saves down, and shrink to a
+ * single admission when the feed is quiet, which keeps latency down.
+ */
+class BatchStage extends FeedStage<FeedAdmission, List<FeedAdmission>>
+{
+    //attributes
+
+    /**
+     * the greatest number of admissions in a batch
+     */
+    private final int batchSize;
+
+
+    //links
+
+    /**
+     * the stage before this one
+     */
+    private final FeedStage<?, FeedAdmission> upstream;
+
+    /**
+     * the admissions gathered so far
+     */
+    private List<FeedAdmission> batch;
+
+
+    //constructor
+
+    /**
+     * Initialises a new BatchStage object.
+     *
+     * @param anUpstream the stage before this one
+     * @param aBatchSize the greatest number of admissions in a batch
+     * @param anExecutor the executor used to deliver items to the next stage
+     * @param aCapacity the number of batches the next stage may have waiting
+     */
+    BatchStage(FeedStage<?, FeedAdmission> anUpstream, int aBatchSize, Executor anExecutor, int aCapacity)
+    {
+        super("batch", anExecutor, aCapacity);
+        upstream = anUpstream;
+        batchSize = aBatchSize;
+        batch = new ArrayList<FeedAdmission>(aBatchSize);
+    }
+
+
+    //protected protocol
+
+    /**
+     * Adds the admission to the batch, handing the batch on if it is full or
+     * nothing more is waiting.
+     *
+     * @param anAdmission an admission
+     */
+    protected void process(FeedAdmission anAdmission)
+    {
+        batch.add(anAdmission);
+        if (batch.size() >= batchSize || upstream.getPublished() <= getReceived())
+        {
+            flush();
+        }
+    }
+
+
+    /**
+     * Hands on the last, partly filled batch.
+     */
+    protected void finish()
+    {
+        flush();
+    }
+
+
+    //private protocol
+
+    /**
+     * Hands on the batch, if it is not empty, and starts a new one.
+     */
+    private void flush()
+    {
+        if (!batch.isEmpty())
+        {
+            emit(Collections.unmodifiableList(batch));
+            batch = new ArrayList<FeedAdmission>(batchSize);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package hospitalfeed;
+
+import hospitalcore.*;
+import m256people.*;
+import m256date.*;
+
+/**
+ * FeedAdmission objects represent one admission taken from the patient feed, as it
+ * passes through an AdmissionFeed.
+ */
+public class FeedAdmission
+{
+    //attributes
+
+    /**
+     * the name of the patient
+     */
+    private final Name name;
+
+    /**
+     * the sex of the patient
+     */
+    private final Sex sex;
+
+    /**
+     * the date of birth of the patient
+     */
+    private final CompactDate dateOfBirth;
+
+
+    //links
+
+    /**
+     * the team to care for the patient
+     */
+    private final Team team;
+
+    /**
+     * the ward the patient was admitted to, or null until admitted
+     */
+    private volatile Ward ward;
+
+
+    //constructor
+
+    /**
+     * Initialises a new FeedAdmission object with the given attribute values
+     * and team, not yet admitted.
+     *
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     * @param aTeam the team to care for the patient
+     */
+    FeedAdmission(Name aName, Sex aSex, CompactDate aDate, Team aTeam)
+    {
+        name = aName;
+        sex = aSex;
+        dateOfBirth = aDate;
+        team = aTeam;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the name of the patient.
+     *
+     * @return name
+     */
+    public Name getName()
+    {
+        return name;
+    }
+
+
+    /**
+     * Returns the sex of the patient.
+     *
+     * @return sex
+     */
+    public Sex getSex()
+    {
+        return sex;
+    }
+
+
+    /**
+     * Returns the date of birth of the patient.
+     *
+     * @return dateOfBirth
+     */
+    public M256Date getDateOfBirth()
+    {
+        return dateOfBirth.toM256Date();
+    }
+
+
+    /**
+     * Returns the date of birth of the patient as a CompactDate.
+     *
+     * @return dateOfBirth
+     */
+    public CompactDate getBirthDate()
+    {
+        return dateOfBirth;
+    }
+
+
+    /**
+     * Returns the team to care for the patient.
+     *
+     * @return the linked Team object
+     */
+    public Team getTeam()
+    {
+        return team;
+    }
+
+
+    /**
+     * Returns the ward the patient was admitted to.
+     *
+     * @return the linked Ward object, or null if the patient has not been admitted
+     */
+    public Ward getWard()
+    {
+        return ward;
+    }
+
+
+    /**
+     * Returns a string representation of this admission.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return name + " " + sex + " " + dateOfBirth + ": " + team.getCode()
+                + ((ward == null) ? "" : ": " + ward.getName());
+    }
+
+
+    //package protocol
+
+    /**
+     * Records the ward the patient was admitted to.
+     *
+     * @param aWard a ward
+     */
+    void setWard(Ward aWard)
+    {
+        ward = aWard;
+    }
+}
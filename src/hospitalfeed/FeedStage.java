@@ -0,0 +1,219 @@
+package hospitalfeed;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An abstract superclass for the stages of an AdmissionFeed.<p>
+ * Each stage subscribes to the stage before it and publishes to the stage after it.
+ * It asks for one item at a time, and handing an item on blocks while the next stage's
+ * buffer is full, so a slow stage holds back every stage before it, and ultimately the
+ * producer, rather than letting items pile up in memory.<p>
+ * The publisher's own estimate of lag is not used, as it takes a lock that is held
+ * while a stage waits to hand an item on; stages count what they take in and hand
+ * on instead.
+ *
+ * @param <I> the type of item taken in
+ * @param <O> the type of item handed on
+ */
+abstract class FeedStage<I, O> extends SubmissionPublisher<O> implements Flow.Processor<I, O>
+{
+    //attributes
+
+    /**
+     * the name of this stage
+     */
+    private final String name;
+
+    /**
+     * the number of items taken in
+     */
+    private final AtomicLong received;
+
+    /**
+     * the number of items handed on
+     */
+    private final AtomicLong published;
+
+    /**
+     * the number of items rejected
+     */
+    private final AtomicLong rejected;
+
+    /**
+     * why the item last rejected was refused, or null
+     */
+    private volatile String lastRejection;
+
+    /**
+     * the time this stage was created, from System.nanoTime()
+     */
+    private final long started;
+
+
+    //links
+
+    /**
+     * the subscription to the stage before this one
+     */
+    private Flow.Subscription subscription;
+
+
+    //constructor
+
+    /**
+     * Initialises a new instance of a concrete subclass of FeedStage.
+     *
+     * @param aName the name of the stage
+     * @param anExecutor the executor used to deliver items to the next stage
+     * @param aCapacity the number of items the next stage may have waiting
+     */
+    FeedStage(String aName, Executor anExecutor, int aCapacity)
+    {
+        super(anExecutor, aCapacity);
+        name = aName;
+        received = new AtomicLong();
+        published = new AtomicLong();
+        rejected = new AtomicLong();
+        started = System.nanoTime();
+    }
+
+
+    //public protocol
+
+    /**
+     * Records the subscription to the stage before this one and asks for the first item.
+     *
+     * @param aSubscription the subscription
+     */
+    public void onSubscribe(Flow.Subscription aSubscription)
+    {
+        subscription = aSubscription;
+        aSubscription.request(1);
+    }
+
+
+    /**
+     * Processes the item, then asks for the next one.
+     *
+     * @param anItem an item
+     */
+    public void onNext(I anItem)
+    {
+        received.incrementAndGet();
+        try
+        {
+            process(anItem);
+        }
+        catch (RuntimeException anException)
+        {
+            reject(anItem, anException.toString());
+        }
+        subscription.request(1);
+    }
+
+
+    /**
+     * Passes the failure of the stage before this one on to the next stage.
+     *
+     * @param aThrowable the failure
+     */
+    public void onError(Throwable aThrowable)
+    {
+        closeExceptionally(aThrowable);
+    }
+
+
+    /**
+     * Finishes any work in hand and tells the next stage that there are no more items.
+     */
+    public void onComplete()
+    {
+        finish();
+        close();
+    }
+
+
+    //protected protocol
+
+    /**
+     * Processes one item, handing on the results with emit or refusing it with reject.
+     *
+     * @param anItem an item
+     */
+    protected abstract void process(I anItem);
+
+
+    /**
+     * Finishes any work in hand once there are no more items. Does nothing
+     * unless overridden.
+     */
+    protected void finish()
+    {
+    }
+
+
+    /**
+     * Hands the item on to the next stage, waiting while its buffer is full.
+     *
+     * @param anItem an item
+     */
+    protected void emit(O anItem)
+    {
+        published.incrementAndGet(); // counted first, so it is never behind the next stage's count
+        submit(anItem);
+    }
+
+
+    /**
+     * Records that the item was refused. Only the number of items refused and the
+     * latest reason are kept, for the statistics of this stage, so that a feed full
+     * of bad lines costs no more than one of good ones.
+     *
+     * @param anItem an item
+     * @param aReason why anItem was refused
+     */
+    protected void reject(I anItem, String aReason)
+    {
+        rejected.incrementAndGet();
+        lastRejection = aReason;
+    }
+
+
+    //package protocol
+
+    /**
+     * Returns the number of items taken in.
+     *
+     * @return received
+     */
+    long getReceived()
+    {
+        return received.get();
+    }
+
+
+    /**
+     * Returns the number of items handed on.
+     *
+     * @return published
+     */
+    long getPublished()
+    {
+        return published.get();
+    }
+
+
+    /**
+     * Returns the statistics of this stage as they are now.
+     *
+     * @param aQueueDepth the number of items handed on but not yet taken by the next stage
+     *
+     * @return a StageStats object
+     */
+    StageStats getStats(long aQueueDepth)
+    {
+        return new StageStats(name, received.get(), published.get(), rejected.get(), lastRejection,
+                aQueueDepth, System.nanoTime() - started);
+    }
+}
@@ -0,0 +1,54 @@
+package hospitalfeed;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The stage of an AdmissionFeed that splits each line of the feed into its fields:
+ * title, first name, surname, sex, date of birth and team code, separated by commas.
+ */
+class ParseStage extends FeedStage<String, String[]>
+{
+    //attributes
+
+    /**
+     * the number of fields in each line
+     */
+    static final int FIELDS = 6;
+
+
+    //constructor
+
+    /**
+     * Initialises a new ParseStage object.
+     *
+     * @param anExecutor the executor used to deliver items to the next stage
+     * @param aCapacity the number of items the next stage may have waiting
+     */
+    ParseStage(Executor anExecutor, int aCapacity)
+    {
+        super("parse", anExecutor, aCapacity);
+    }
+
+
+    //protected protocol
+
+    /**
+     * Splits the line into trimmed fields, rejecting it if it has the wrong number.
+     *
+     * @param aLine a line of the feed
+     */
+    protected void process(String aLine)
+    {
+        String[] fields = aLine.split(",", -1);
+        if (fields.length != FIELDS)
+        {
+            reject(aLine, "expected " + FIELDS + " fields");
+            return;
+        }
+        for (int i = 0; i < fields.length; i++)
+        {
+            fields[i] = fields[i].trim();
+        }
+        emit(fields);
+    }
+}
@@ -0,0 +1,214 @@
+package hospitalfeed;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Executor;
+import hospitalcore.*;
+
+/**
+ * The stage of an AdmissionFeed that saves the hospital and then hands the batches of
+ * admissions saved on to any subscribers of the feed.<p>
+ * Saving writes out the whole hospital, so it is not done for every batch. Batches
+ * are held until a given number of them are waiting or a given time has passed since
+ * the first of them arrived, and are then saved together; any still held when the
+ * feed ends are saved then. If a save fails, the batches held are rejected and the
+ * stage fails, passing the failure on to the subscribers; batches arriving after that
+ * are rejected.
+ */
+class PersistStage extends FeedStage<List<FeedAdmission>, List<FeedAdmission>>
+{
+    //attributes
+
+    /**
+     * the number of batches held that causes a save
+     */
+    private final int saveEvery;
+
+    /**
+     * the longest time a batch is held before it is saved, in milliseconds
+     */
+    private final long saveInterval;
+
+    /**
+     * the failure of the last save, or null if none has failed
+     */
+    private IOException failure;
+
+
+    //links
+
+    /**
+     * the hospital admitted to
+     */
+    private final HospCoord hospital;
+
+    /**
+     * the batches not yet saved
+     */
+    private final List<List<FeedAdmission>> held;
+
+    /**
+     * the timer saving the batches held when the time is up, created when it is first needed
+     */
+    private Timer timer;
+
+    /**
+     * the task that saves the batches now held when the time is up, or null if none is due
+     */
+    private TimerTask due;
+
+
+    //constructor
+
+    /**
+     * Initialises a new PersistStage object for the hospital.
+     *
+     * @param aHospital the hospital admitted to
+     * @param aSaveEvery the number of batches held that causes a save
+     * @param aSaveInterval the longest time a batch is held before it is saved, in milliseconds
+     * @param anExecutor the executor used to deliver batches to subscribers
+     * @param aCapacity the number of batches a subscriber may have waiting
+     */
+    PersistStage(HospCoord aHospital, int aSaveEvery, long aSaveInterval, Executor anExecutor, int aCapacity)
+    {
+        super("persist", anExecutor, aCapacity);
+        hospital = aHospital;
+        saveEvery = aSaveEvery;
+        saveInterval = aSaveInterval;
+        held = new ArrayList<List<FeedAdmission>>();
+    }
+
+
+    //public protocol
+
+    /**
+     * Stops the timer and passes the failure of the stage before this one on.
+     *
+     * @param aThrowable the failure
+     */
+    public void onError(Throwable aThrowable)
+    {
+        synchronized (this)
+        {
+            stopTimer();
+        }
+        super.onError(aThrowable);
+    }
+
+
+    //protected protocol
+
+    /**
+     * Holds the batch, saving the hospital if enough batches are now held.
+     *
+     * @param aBatch a batch of admissions
+     */
+    protected synchronized void process(List<FeedAdmission> aBatch)
+    {
+        if (failure != null)
+        {
+            reject(aBatch, "not saved: " + failure);
+            return;
+        }
+        held.add(aBatch);
+        if (held.size() >= saveEvery)
+        {
+            save();
+        }
+        else if (due == null)
+        {
+            due = new TimerTask()
+            {
+                public void run()
+                {
+                    saveWhenDue(this);
+                }
+            };
+            if (timer == null)
+            {
+                timer = new Timer("admission-feed-persist", true);
+            }
+            timer.schedule(due, saveInterval);
+        }
+    }
+
+
+    /**
+     * Saves the batches still held.
+     */
+    protected synchronized void finish()
+    {
+        if (failure == null)
+        {
+            save();
+        }
+        stopTimer();
+    }
+
+
+    //private protocol
+
+    /**
+     * Saves the batches held if aTask is still the task due to save them.
+     */
+    private synchronized void saveWhenDue(TimerTask aTask)
+    {
+        if (aTask == due && failure == null)
+        {
+            save();
+        }
+    }
+
+
+    /**
+     * Saves the hospital and hands on the batches held. If the save fails, the batches
+     * are rejected and the stage fails.
+     */
+    private void save()
+    {
+        if (due != null)
+        {
+            due.cancel();
+            due = null;
+        }
+        if (held.isEmpty())
+        {
+            return;
+        }
+        try
+        {
+            hospital.store();
+        }
+        catch (IOException anException)
+        {
+            failure = anException;
+            for (List<FeedAdmission> aBatch : held)
+            {
+                reject(aBatch, "not saved: " + anException);
+            }
+            held.clear();
+            stopTimer();
+            closeExceptionally(anException);
+            return;
+        }
+        for (List<FeedAdmission> aBatch : held)
+        {
+            emit(aBatch);
+        }
+        held.clear();
+    }
+
+
+    /**
+     * Stops the timer, if there is one.
+     */
+    private void stopTimer()
+    {
+        if (timer != null)
+        {
+            timer.cancel();
+            timer = null;
+        }
+        due = null;
+    }
+}
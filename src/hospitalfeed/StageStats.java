@@ -0,0 +1,163 @@
+package hospitalfeed;
+
+/**
+ * StageStats objects hold the statistics of one stage of an AdmissionFeed
+ * at one point in time.
+ */
+public class StageStats
+{
+    //attributes
+
+    /**
+     * the name of the stage
+     */
+    private final String name;
+
+    /**
+     * the number of items the stage has taken in
+     */
+    private final long received;
+
+    /**
+     * the number of items the stage has handed on
+     */
+    private final long published;
+
+    /**
+     * the number of items the stage has rejected
+     */
+    private final long rejected;
+
+    /**
+     * why the item the stage last rejected was refused, or null
+     */
+    private final String lastRejection;
+
+    /**
+     * the number of items handed on but not yet taken by the next stage
+     */
+    private final long queueDepth;
+
+    /**
+     * the time the stage has been running, in nanoseconds
+     */
+    private final long elapsed;
+
+
+    //constructor
+
+    /**
+     * Initialises a new StageStats object with the given attribute values.
+     *
+     * @param aName the name of the stage
+     * @param aReceived the number of items taken in
+     * @param aPublished the number of items handed on
+     * @param aRejected the number of items rejected
+     * @param aLastRejection why the item last rejected was refused, or null
+     * @param aQueueDepth the number of items handed on but not yet taken by the next stage
+     * @param anElapsed the time the stage has been running, in nanoseconds
+     */
+    StageStats(String aName, long aReceived, long aPublished, long aRejected, String aLastRejection,
+            long aQueueDepth, long anElapsed)
+    {
+        name = aName;
+        received = aReceived;
+        published = aPublished;
+        rejected = aRejected;
+        lastRejection = aLastRejection;
+        queueDepth = aQueueDepth;
+        elapsed = anElapsed;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the name of the stage.
+     *
+     * @return name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+
+    /**
+     * Returns the number of items the stage has taken in.
+     *
+     * @return received
+     */
+    public long getReceived()
+    {
+        return received;
+    }
+
+
+    /**
+     * Returns the number of items the stage has handed on.
+     *
+     * @return published
+     */
+    public long getPublished()
+    {
+        return published;
+    }
+
+
+    /**
+     * Returns the number of items the stage has rejected.
+     *
+     * @return rejected
+     */
+    public long getRejected()
+    {
+        return rejected;
+    }
+
+
+    /**
+     * Returns why the item the stage last rejected was refused.
+     *
+     * @return lastRejection, or null if the stage has rejected nothing
+     */
+    public String getLastRejection()
+    {
+        return lastRejection;
+    }
+
+
+    /**
+     * Returns the number of items handed on but not yet taken by the next stage.
+     *
+     * @return queueDepth
+     */
+    public long getQueueDepth()
+    {
+        return queueDepth;
+    }
+
+
+    /**
+     * Returns the average number of items taken in per second since the stage started.
+     *
+     * @return the throughput of the stage
+     */
+    public double getThroughput()
+    {
+        return (elapsed == 0) ? 0 : received * 1e9 / elapsed;
+    }
+
+
+    /**
+     * Returns a string representation of these statistics.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        String result = String.format("%-9s in %d, out %d, rejected %d, queued %d, %.0f/s",
+                name, received, published, rejected, queueDepth, getThroughput());
+        return (lastRejection == null) ? result : result + " (last: " + lastRejection + ")";
+    }
+}
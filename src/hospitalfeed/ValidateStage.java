@@ -0,0 +1,80 @@
+package hospitalfeed;
+
+import java.util.concurrent.Executor;
+import hospitalcore.*;
+import m256people.*;
+
+/**
+ * The stage of an AdmissionFeed that turns the fields of each line into a
+ * FeedAdmission, rejecting lines with a missing name, an unknown sex or team,
+ * or a date of birth that cannot be read.
+ */
+class ValidateStage extends FeedStage<String[], FeedAdmission>
+{
+    //links
+
+    /**
+     * the hospital admitted to
+     */
+    private final HospCoord hospital;
+
+
+    //constructor
+
+    /**
+     * Initialises a new ValidateStage object for the hospital.
+     *
+     * @param aHospital the hospital admitted to
+     * @param anExecutor the executor used to deliver items to the next stage
+     * @param aCapacity the number of items the next stage may have waiting
+     */
+    ValidateStage(HospCoord aHospital, Executor anExecutor, int aCapacity)
+    {
+        super("validate", anExecutor, aCapacity);
+        hospital = aHospital;
+    }
+
+
+    //protected protocol
+
+    /**
+     * Checks the fields and hands on the admission they describe.
+     *
+     * @param fields the fields of a line
+     */
+    protected void process(String[] fields)
+    {
+        if (fields[1].isEmpty() || fields[2].isEmpty())
+        {
+            reject(fields, "missing name");
+            return;
+        }
+        Sex aSex;
+        try
+        {
+            aSex = Sex.valueOf(fields[3].toUpperCase());
+        }
+        catch (IllegalArgumentException anException)
+        {
+            reject(fields, "unknown sex " + fields[3]);
+            return;
+        }
+        CompactDate aDate;
+        try
+        {
+            aDate = CompactDate.parse(fields[4]);
+        }
+        catch (IllegalArgumentException anException)
+        {
+            reject(fields, "bad date of birth " + fields[4]);
+            return;
+        }
+        Team aTeam = hospital.findTeam(fields[5]);
+        if (aTeam == null)
+        {
+            reject(fields, "unknown team " + fields[5]);
+            return;
+        }
+        emit(new FeedAdmission(new Name(fields[0], fields[1], fields[2]), aSex, aDate, aTeam));
+    }
+}
@@ -0,0 +1,121 @@
+package hospitalshard;
+
+import java.io.*;
+import java.net.*;
+
+/**
+ * ShardClient objects are connections from a ShardRouter to one ShardServer.
+ * Requests on one connection are carried out one at a time.
+ */
+class ShardClient
+{
+    //attributes
+
+    /**
+     * the address of the shard
+     */
+    private final InetSocketAddress address;
+
+
+    //links
+
+    /**
+     * the connection to the shard
+     */
+    private final Socket socket;
+
+    /**
+     * the stream requests are written to
+     */
+    private final ObjectOutputStream out;
+
+    /**
+     * the stream results are read from
+     */
+    private final ObjectInputStream in;
+
+
+    //constructor
+
+    /**
+     * Initialises a new ShardClient object connected to the shard at anAddress.
+     *
+     * @param anAddress the address of the shard
+     *
+     * @throws IOException if the shard cannot be reached
+     */
+    ShardClient(InetSocketAddress anAddress) throws IOException
+    {
+        address = anAddress;
+        socket = new Socket(anAddress.getAddress(), anAddress.getPort());
+        socket.setTcpNoDelay(true);
+        out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.flush();
+        in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+    }
+
+
+    //package protocol
+
+    /**
+     * Sends the request to the shard and returns its result.
+     *
+     * @param aRequest a request
+     *
+     * @return the result of the request
+     *
+     * @throws IOException if the shard cannot be reached, or could not save its state
+     * @throws RuntimeException if the request raised it on the shard
+     */
+    synchronized Object call(ShardRequest aRequest) throws IOException
+    {
+        out.writeObject(aRequest);
+        out.reset();
+        out.flush();
+        Object result;
+        try
+        {
+            result = in.readObject();
+        }
+        catch (ClassNotFoundException ex)
+        {
+            throw new IOException("unexpected reply from " + address, ex);
+        }
+        if (result instanceof UncheckedIOException)
+        {
+            throw ((UncheckedIOException) result).getCause();
+        }
+        if (result instanceof RuntimeException)
+        {
+            throw (RuntimeException) result;
+        }
+        return result;
+    }
+
+
+    /**
+     * Closes the connection.
+     */
+    void close()
+    {
+        try
+        {
+            socket.close();
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error closing connection to " + address);
+        }
+    }
+
+
+    /**
+     * Returns the address of the shard.
+     *
+     * @return address
+     */
+    InetSocketAddress getAddress()
+    {
+        return address;
+    }
+}
@@ -0,0 +1,138 @@
+package hospitalshard;
+
+import m256people.*;
+import m256date.*;
+
+/**
+ * ShardPatient objects describe a patient on one shard, together with the
+ * site, ward and team the patient is linked to.
+ */
+public class ShardPatient implements java.io.Serializable
+{
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = -1178159152481497927L;
+
+    /**
+     * the name of the site the patient is at
+     */
+    private final String site;
+
+    /**
+     * the person who is a patient
+     */
+    private final Person person;
+
+    /**
+     * the name of the patient's ward
+     */
+    private final String wardName;
+
+    /**
+     * the code of the team caring for the patient
+     */
+    private final String teamCode;
+
+
+    //constructor
+
+    /**
+     * Initialises a new ShardPatient object with the given attribute values.
+     *
+     * @param aSite the name of the site
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     * @param aWardName the name of the ward
+     * @param aTeamCode the code of the team
+     */
+    public ShardPatient(String aSite, Name aName, Sex aSex, M256Date aDate, String aWardName, String aTeamCode)
+    {
+        site = aSite;
+        person = new Person(aName, aSex, aDate);
+        wardName = aWardName;
+        teamCode = aTeamCode;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the name of the site the patient is at.
+     *
+     * @return site
+     */
+    public String getSite()
+    {
+        return site;
+    }
+
+
+    /**
+     * Returns the name of the patient.
+     *
+     * @return name
+     */
+    public Name getName()
+    {
+        return person.getName();
+    }
+
+
+    /**
+     * Returns the sex of the patient.
+     *
+     * @return sex
+     */
+    public Sex getSex()
+    {
+        return person.getSex();
+    }
+
+
+    /**
+     * Returns the date of birth of the patient.
+     *
+     * @return dateOfBirth
+     */
+    public M256Date getDateOfBirth()
+    {
+        return person.getDateOfBirth();
+    }
+
+
+    /**
+     * Returns the name of the patient's ward.
+     *
+     * @return wardName
+     */
+    public String getWardName()
+    {
+        return wardName;
+    }
+
+
+    /**
+     * Returns the code of the team caring for the patient.
+     *
+     * @return teamCode
+     */
+    public String getTeamCode()
+    {
+        return teamCode;
+    }
+
+
+    /**
+     * Returns a string representation of this patient and where the patient is.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return person + " (" + site + ": " + wardName + ", " + teamCode + ")";
+    }
+}
@@ -0,0 +1,149 @@
+package hospitalshard;
+
+import m256people.*;
+import m256date.*;
+
+/**
+ * ShardRequest objects are the messages a ShardRouter sends to a ShardServer.
+ */
+public class ShardRequest implements java.io.Serializable
+{
+    /**
+     * The operations a shard can carry out.
+     */
+    public enum Operation
+    {
+        /**
+         * Answer the codes of the teams on the shard.
+         */
+        DESCRIBE,
+        /**
+         * Answer the greatest number of free beds on any ward of a given type.
+         */
+        FREE_BEDS,
+        /**
+         * Admit a patient, answering the name of the ward or null.
+         */
+        ADMIT,
+        /**
+         * Answer all the patients on the shard.
+         */
+        PATIENTS,
+        /**
+         * Save the state of the shard.
+         */
+        SAVE
+    }
+
+
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = -7454519492877702993L;
+
+    /**
+     * the operation requested
+     */
+    private final Operation operation;
+
+    /**
+     * the name of the patient, for ADMIT
+     */
+    private final Name name;
+
+    /**
+     * the sex of the patient or type of ward, for FREE_BEDS and ADMIT
+     */
+    private final Sex sex;
+
+    /**
+     * the date of birth of the patient, for ADMIT
+     */
+    private final M256Date dateOfBirth;
+
+    /**
+     * the code of the team caring for the patient, for ADMIT
+     */
+    private final String teamCode;
+
+
+    //constructor
+
+    /**
+     * Initialises a new ShardRequest object with the given attribute values.
+     * Attributes not needed by anOperation may be null.
+     *
+     * @param anOperation the operation requested
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     * @param aTeamCode the code of the team
+     */
+    public ShardRequest(Operation anOperation, Name aName, Sex aSex, M256Date aDate, String aTeamCode)
+    {
+        operation = anOperation;
+        name = aName;
+        sex = aSex;
+        dateOfBirth = aDate;
+        teamCode = aTeamCode;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the operation requested.
+     *
+     * @return operation
+     */
+    public Operation getOperation()
+    {
+        return operation;
+    }
+
+
+    /**
+     * Returns the name of the patient.
+     *
+     * @return name
+     */
+    public Name getName()
+    {
+        return name;
+    }
+
+
+    /**
+     * Returns the sex of the patient.
+     *
+     * @return sex
+     */
+    public Sex getSex()
+    {
+        return sex;
+    }
+
+
+    /**
+     * Returns the date of birth of the patient.
+     *
+     * @return dateOfBirth
+     */
+    public M256Date getDateOfBirth()
+    {
+        return dateOfBirth;
+    }
+
+
+    /**
+     * Returns the code of the team caring for the patient.
+     *
+     * @return teamCode
+     */
+    public String getTeamCode()
+    {
+        return teamCode;
+    }
+}
@@ -0,0 +1,223 @@
+package hospitalshard;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import m256people.*;
+import m256date.*;
+
+/**
+ * ShardRouter objects coordinate a hospital whose sites are partitioned
+ * across several ShardServer processes.<p>
+ * An admission goes to the shard, among those with the patient's team, whose
+ * best ward of the appropriate type has the most free beds, which is the ward
+ * a single HospCoord holding every site would have chosen. Queries over all
+ * patients are sent to every shard at once and their results gathered in shard order.
+ */
+public class ShardRouter
+{
+    //links
+
+    /**
+     * the connections to the shards, in the order they were given
+     */
+    private final List<ShardClient> shards;
+
+    /**
+     * the codes of the teams on each shard
+     */
+    private final Map<ShardClient, Collection<String>> teamCodes;
+
+    /**
+     * the threads requests are scattered on
+     */
+    private final ExecutorService executor;
+
+
+    //constructor
+
+    /**
+     * Initialises a new ShardRouter object connected to the shards at the given addresses.
+     *
+     * @param anAddressList the addresses of the shards
+     *
+     * @throws IOException if a shard cannot be reached
+     */
+    @SuppressWarnings("unchecked")
+    public ShardRouter(List<InetSocketAddress> anAddressList) throws IOException
+    {
+        shards = new ArrayList<ShardClient>();
+        teamCodes = new HashMap<ShardClient, Collection<String>>();
+        executor = Executors.newFixedThreadPool(Math.max(1, anAddressList.size()), new ThreadFactory()
+        {
+            public Thread newThread(Runnable aRunnable)
+            {
+                Thread aThread = new Thread(aRunnable, "shard-router");
+                aThread.setDaemon(true);
+                return aThread;
+            }
+        });
+        for (InetSocketAddress anAddress : anAddressList)
+        {
+            ShardClient aShard = new ShardClient(anAddress);
+            shards.add(aShard);
+            teamCodes.put(aShard, new HashSet<String>((Collection<String>) aShard.call(
+                    new ShardRequest(ShardRequest.Operation.DESCRIBE, null, null, null, null))));
+        }
+    }
+
+
+    //public protocol
+
+    /**
+     * Records the admission of a patient cared for by the team with the given code,
+     * on the shard with the most free beds of the appropriate type.
+     *
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     * @param aTeamCode the code of a team
+     *
+     * @return the name of the ward the patient was admitted to, or null if no shard
+     *         with the team has a suitable ward
+     *
+     * @throws IOException if a shard cannot be reached
+     * @throws IllegalArgumentException if no shard has a team with aTeamCode
+     */
+    public String admit(Name aName, Sex aSex, M256Date aDate, String aTeamCode) throws IOException
+    {
+        List<ShardClient> candidates = new ArrayList<ShardClient>();
+        for (ShardClient aShard : shards)
+        {
+            if (teamCodes.get(aShard).contains(aTeamCode))
+            {
+                candidates.add(aShard);
+            }
+        }
+        if (candidates.isEmpty())
+        {
+            throw new IllegalArgumentException("no team " + aTeamCode);
+        }
+
+        List<Object> freeBeds = scatter(candidates, new ShardRequest(ShardRequest.Operation.FREE_BEDS, null, aSex, null, null));
+        final Map<ShardClient, Integer> bedsByShard = new HashMap<ShardClient, Integer>();
+        for (int i = 0; i < candidates.size(); i++)
+        {
+            bedsByShard.put(candidates.get(i), (Integer) freeBeds.get(i));
+        }
+        Collections.sort(candidates, new Comparator<ShardClient>()
+        {
+            public int compare(ShardClient aShard, ShardClient anotherShard)
+            {
+                return bedsByShard.get(anotherShard).compareTo(bedsByShard.get(aShard));
+            }
+        });
+
+        // beds may have gone since they were counted, so fall back to the next best shard
+        ShardRequest request = new ShardRequest(ShardRequest.Operation.ADMIT, aName, aSex, aDate, aTeamCode);
+        for (ShardClient aShard : candidates)
+        {
+            if (bedsByShard.get(aShard).intValue() > 0)
+            {
+                String wardName = (String) aShard.call(request);
+                if (wardName != null)
+                {
+                    return wardName;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns all patients in the hospital.
+     *
+     * @return a list of all the patients on every shard
+     *
+     * @throws IOException if a shard cannot be reached
+     */
+    @SuppressWarnings("unchecked")
+    public List<ShardPatient> getPatients() throws IOException
+    {
+        List<ShardPatient> allPatients = new ArrayList<ShardPatient>();
+        for (Object shardPatients : scatter(shards, new ShardRequest(ShardRequest.Operation.PATIENTS, null, null, null, null)))
+        {
+            allPatients.addAll((List<ShardPatient>) shardPatients);
+        }
+        return allPatients;
+    }
+
+
+    /**
+     * Saves the state of every shard.
+     *
+     * @throws IOException if a shard cannot be reached or cannot save its state
+     */
+    public void save() throws IOException
+    {
+        scatter(shards, new ShardRequest(ShardRequest.Operation.SAVE, null, null, null, null));
+    }
+
+
+    /**
+     * Closes the connections to all the shards.
+     */
+    public void close()
+    {
+        executor.shutdown();
+        for (ShardClient aShard : shards)
+        {
+            aShard.close();
+        }
+    }
+
+
+    //private protocol
+
+    /**
+     * Sends aRequest to every shard in aShardList at once and returns their results
+     * in the same order.
+     */
+    private List<Object> scatter(List<ShardClient> aShardList, final ShardRequest aRequest) throws IOException
+    {
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (final ShardClient aShard : aShardList)
+        {
+            futures.add(executor.submit(new Callable<Object>()
+            {
+                public Object call() throws IOException
+                {
+                    return aShard.call(aRequest);
+                }
+            }));
+        }
+        List<Object> results = new ArrayList<Object>();
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                results.add(futures.get(i).get());
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for " + aShardList.get(i).getAddress());
+            }
+            catch (ExecutionException ex)
+            {
+                if (ex.getCause() instanceof IOException)
+                {
+                    throw (IOException) ex.getCause();
+                }
+                if (ex.getCause() instanceof RuntimeException)
+                {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new IOException(ex.getCause());
+            }
+        }
+        return results;
+    }
+}
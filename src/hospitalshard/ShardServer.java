@@ -0,0 +1,258 @@
+package hospitalshard;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import hospitalcore.*;
+
+/**
+ * ShardServer objects serve one site's partition of the hospital to ShardRouter
+ * objects over a local socket.<p>
+ * Each connection carries a sequence of serialized ShardRequest objects; each request
+ * is answered with its result, or with the exception it raised.
+ */
+public class ShardServer
+{
+    //attributes
+
+    /**
+     * the name of the site this shard serves
+     */
+    private final String site;
+
+
+    //links
+
+    /**
+     * the partition holding this site's wards and teams
+     */
+    private final HospCoord partition;
+
+    /**
+     * the socket connections are accepted on
+     */
+    private final ServerSocket serverSocket;
+
+
+    //constructor
+
+    /**
+     * Initialises a new ShardServer object serving aPartition on the given port
+     * of the loopback interface.
+     *
+     * @param aSite the name of the site
+     * @param aPartition the site's partition of the hospital
+     * @param aPort the port to listen on, or 0 for any free port
+     *
+     * @throws IOException if the port cannot be opened
+     */
+    public ShardServer(String aSite, HospCoord aPartition, int aPort) throws IOException
+    {
+        site = aSite;
+        partition = aPartition;
+        serverSocket = new ServerSocket(aPort, 50, InetAddress.getLoopbackAddress());
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the port this shard is listening on.
+     *
+     * @return the local port of the server socket
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+
+    /**
+     * Accepts connections until the receiver is closed, serving each on its own thread.
+     */
+    public void serve()
+    {
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                final Socket connection = serverSocket.accept();
+                Thread worker = new Thread(new Runnable()
+                {
+                    public void run()
+                    {
+                        serveConnection(connection);
+                    }
+                }, site + "-shard-connection");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            catch (IOException ex)
+            {
+                if (!serverSocket.isClosed())
+                {
+                    System.out.println("Error accepting connection: " + ex);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Stops accepting connections.
+     */
+    public void close()
+    {
+        try
+        {
+            serverSocket.close();
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error closing shard.");
+        }
+    }
+
+
+    /**
+     * Starts a shard as a separate process.
+     *
+     * @param args the site name, set-up file, data file and port
+     *
+     * @throws IOException if the port cannot be opened
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 4)
+        {
+            System.out.println("usage: ShardServer site setupFile dataFile port");
+            System.exit(1);
+        }
+        ShardServer server = new ShardServer(args[0], HospCoord.getPartition(args[1], args[2]), Integer.parseInt(args[3]));
+        System.out.println("Shard " + args[0] + " listening on port " + server.getPort());
+        server.serve();
+    }
+
+
+    //package protocol
+
+    /**
+     * Carries out the request on this shard's partition.
+     *
+     * @param aRequest a request
+     *
+     * @return the result of the request
+     */
+    Object handle(ShardRequest aRequest)
+    {
+        switch (aRequest.getOperation())
+        {
+            case DESCRIBE:
+                ArrayList<String> codes = new ArrayList<String>();
+                for (Team aTeam : partition.getTeams())
+                {
+                    codes.add(aTeam.getCode());
+                }
+                return codes;
+            case FREE_BEDS:
+                int mostBeds = 0;
+                for (Ward aWard : partition.getWards())
+                {
+                    if (aWard.getType() == aRequest.getSex())
+                    {
+                        mostBeds = Math.max(mostBeds, aWard.getNumberOfFreeBeds());
+                    }
+                }
+                return Integer.valueOf(mostBeds);
+            case ADMIT:
+                Ward theWard = partition.admit(aRequest.getName(), aRequest.getSex(), aRequest.getDateOfBirth(),
+                        findTeam(aRequest.getTeamCode()));
+                return (theWard == null) ? null : theWard.getName();
+            case PATIENTS:
+                HospitalSnapshot snapshot = partition.snapshot();
+                ArrayList<ShardPatient> patients = new ArrayList<ShardPatient>();
+                for (Patient aPatient : snapshot.getPatients())
+                {
+                    patients.add(new ShardPatient(site, aPatient.getName(), aPatient.getSex(), aPatient.getDateOfBirth(),
+                            snapshot.getWard(aPatient).getName(), snapshot.getTeam(aPatient).getCode()));
+                }
+                return patients;
+            case SAVE:
+                try
+                {
+                    partition.store();
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+                return null;
+            default:
+                throw new IllegalArgumentException("unknown operation " + aRequest.getOperation());
+        }
+    }
+
+
+    //private protocol
+
+    /**
+     * Answers requests arriving on aConnection until it is closed.
+     */
+    private void serveConnection(Socket aConnection)
+    {
+        try
+        {
+            ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(aConnection.getOutputStream()));
+            oos.flush();
+            ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(aConnection.getInputStream()));
+            while (true)
+            {
+                Object result;
+                try
+                {
+                    result = handle((ShardRequest) ois.readObject());
+                }
+                catch (RuntimeException ex)
+                {
+                    result = ex;
+                }
+                oos.writeObject(result);
+                oos.reset(); // results describe live state, so never refer back to earlier ones
+                oos.flush();
+            }
+        }
+        catch (EOFException ex)
+        {
+            // the router closed the connection
+        }
+        catch (Exception ex)
+        {
+            System.out.println("Error serving connection: " + ex);
+        }
+        finally
+        {
+            try
+            {
+                aConnection.close();
+            }
+            catch (IOException ex)
+            {
+                System.out.println("Error closing connection.");
+            }
+        }
+    }
+
+
+    /**
+     * Returns the team of this partition with the given code.
+     */
+    private Team findTeam(String aCode)
+    {
+        Team aTeam = partition.findTeam(aCode);
+        if (aTeam == null)
+        {
+            throw new IllegalArgumentException("no team " + aCode + " at " + site);
+        }
+        return aTeam;
+    }
+}
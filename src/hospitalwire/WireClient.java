@@ -0,0 +1,912 @@
+package hospitalwire;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import m256people.*;
+import m256date.*;
+
+/**
+ * WireClient objects are connections to a hospital served by a WireServer, offering
+ * the operations of HospCoord to another process.<p>
+ * Wards, teams and doctors are described once, when the client connects; patients are
+ * described afresh by each query. Each operation has a form that waits for its result,
+ * and the commonest also have a form that returns at once with a future result. Requests
+ * made by the second form are sent together when flush is invoked, or when enough are
+ * waiting, and any number may be outstanding at once, so a client that has many requests
+ * to make pays for one round trip rather than one each. A WireClient object may be used
+ * by several threads at once.
+ */
+public class WireClient
+{
+    //attributes
+
+    /**
+     * the number of bytes of requests waiting to be sent at which they are sent without a flush
+     */
+    private static final int FLUSH_SIZE = 16 * 1024;
+
+    /**
+     * the address of the server
+     */
+    private final InetSocketAddress address;
+
+    /**
+     * the number of the next request
+     */
+    private int nextRequest;
+
+    /**
+     * the reason the connection can no longer be used, or null while it can
+     */
+    private volatile IOException failure;
+
+
+    //links
+
+    /**
+     * the connection to the server
+     */
+    private final SocketChannel channel;
+
+    /**
+     * the requests not yet sent; also the lock held while requests are built and sent
+     */
+    private final WireWriter out;
+
+    /**
+     * the requests sent and not yet answered, keyed by request number
+     */
+    private final Map<Integer, Call<?>> calls;
+
+    /**
+     * the wards of the hospital keyed by id, in the order the server gave them
+     */
+    private final Map<Integer, WireWard> wards;
+
+    /**
+     * the teams of the hospital keyed by id, in the order the server gave them
+     */
+    private final Map<Integer, WireTeam> teams;
+
+    /**
+     * the doctors of the hospital keyed by id
+     */
+    private final Map<Integer, WireDoctor> doctors;
+
+
+    //constructor
+
+    /**
+     * Initialises a new WireClient object connected to the server at anAddress.
+     *
+     * @param anAddress the address of the server
+     *
+     * @throws IOException if the server cannot be reached
+     */
+    public WireClient(InetSocketAddress anAddress) throws IOException
+    {
+        address = anAddress;
+        channel = SocketChannel.open(anAddress);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+        out = new WireWriter(FLUSH_SIZE);
+        calls = new ConcurrentHashMap<Integer, Call<?>>();
+        wards = new LinkedHashMap<Integer, WireWard>();
+        teams = new LinkedHashMap<Integer, WireTeam>();
+        doctors = new HashMap<Integer, WireDoctor>();
+        Thread reader = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                readResponses();
+            }
+        }, "wire-client-" + anAddress.getPort());
+        reader.setDaemon(true);
+        reader.start();
+
+        Call<Void> describe;
+        synchronized (out)
+        {
+            describe = begin(WireProtocol.Operation.DESCRIBE, new Decoder<Void>()
+            {
+                public Void decode(ByteBuffer in)
+                {
+                    readDescription(in);
+                    return null;
+                }
+            });
+            end(describe);
+        }
+        try
+        {
+            flush();
+            await(describe.result);
+        }
+        catch (IOException ex)
+        {
+            close();
+            throw ex;
+        }
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns all the wards in the hospital.
+     *
+     * @return an unmodifiable collection of all the WireWard objects
+     */
+    public Collection<WireWard> getWards()
+    {
+        return Collections.unmodifiableCollection(wards.values());
+    }
+
+
+    /**
+     * Returns all the teams in the hospital.
+     *
+     * @return an unmodifiable collection of all the WireTeam objects
+     */
+    public Collection<WireTeam> getTeams()
+    {
+        return Collections.unmodifiableCollection(teams.values());
+    }
+
+
+    /**
+     * Returns the team with the given code.
+     *
+     * @param aCode a team code
+     *
+     * @return the WireTeam object with code aCode, or null if there is none
+     */
+    public WireTeam findTeam(String aCode)
+    {
+        for (WireTeam aTeam : teams.values())
+        {
+            if (aTeam.getCode().equals(aCode))
+            {
+                return aTeam;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the ward with the given name.
+     *
+     * @param aName a ward name
+     *
+     * @return the WireWard object with name aName, or null if there is none
+     */
+    public WireWard findWard(String aName)
+    {
+        for (WireWard aWard : wards.values())
+        {
+            if (aWard.getName().equals(aName))
+            {
+                return aWard;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns the doctors that the team contains.
+     *
+     * @param aTeam a team
+     *
+     * @return an unmodifiable collection of all the doctors of aTeam
+     */
+    public Collection<WireDoctor> getDoctors(WireTeam aTeam)
+    {
+        return aTeam.getDoctors();
+    }
+
+
+    /**
+     * Records the admission of a patient as HospCoord.admit does.
+     *
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     * @param aTeam a team
+     *
+     * @return the ward the patient was admitted to, or null if there was no suitable ward
+     *
+     * @throws IOException if the server cannot be reached
+     */
+    public WireWard admit(Name aName, Sex aSex, M256Date aDate, WireTeam aTeam) throws IOException
+    {
+        CompletableFuture<WireWard> result = admitAsync(aName, aSex, aDate, aTeam);
+        flush();
+        return await(result);
+    }
+
+
+    /**
+     * Requests the admission of a patient, without waiting for it to be sent or carried out.
+     *
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     * @param aTeam a team
+     *
+     * @return the future ward the patient is admitted to, or null if there is no suitable ward
+     */
+    public CompletableFuture<WireWard> admitAsync(Name aName, Sex aSex, M256Date aDate, WireTeam aTeam)
+    {
+        synchronized (out)
+        {
+            Call<WireWard> aCall = begin(WireProtocol.Operation.ADMIT, wardDecoder);
+            try
+            {
+                out.putName(aName);
+                out.putByte(aSex.ordinal());
+                out.putDate(CompactDate.of(aDate));
+                out.putInt(aTeam.getId());
+            }
+            catch (RuntimeException ex)
+            {
+                out.abandonFrame();
+                throw ex;
+            }
+            return end(aCall);
+        }
+    }
+
+
+    /**
+     * Records the discharge of the patient as HospCoord.discharge does.
+     *
+     * @param aPatient an admitted patient
+     *
+     * @throws IOException if the server cannot be reached
+     * @throws IllegalArgumentException if aPatient is not admitted
+     */
+    public void discharge(WirePatient aPatient) throws IOException
+    {
+        CompletableFuture<Void> result = dischargeAsync(aPatient);
+        flush();
+        await(result);
+    }
+
+
+    /**
+     * Requests the discharge of the patient, without waiting for it to be sent or carried out.
+     *
+     * @param aPatient an admitted patient
+     *
+     * @return a future completed when the patient has been discharged
+     */
+    public CompletableFuture<Void> dischargeAsync(WirePatient aPatient)
+    {
+        return request(WireProtocol.Operation.DISCHARGE, aPatient.getId(), noResult);
+    }
+
+
+    /**
+     * Records the treatment of the patient by the doctor as HospCoord.recordTreatment does.
+     *
+     * @param aPatient an admitted patient
+     * @param aDoctor a doctor of the patient's team
+     *
+     * @throws IOException if the server cannot be reached
+     * @throws IllegalArgumentException if aPatient is not admitted or aDoctor is not in its team
+     */
+    public void recordTreatment(WirePatient aPatient, WireDoctor aDoctor) throws IOException
+    {
+        CompletableFuture<Void> result = recordTreatmentAsync(aPatient, aDoctor);
+        flush();
+        await(result);
+    }
+
+
+    /**
+     * Requests that the treatment of the patient by the doctor be recorded, without
+     * waiting for it to be sent or carried out.
+     *
+     * @param aPatient an admitted patient
+     * @param aDoctor a doctor of the patient's team
+     *
+     * @return a future completed when the treatment has been recorded
+     */
+    public CompletableFuture<Void> recordTreatmentAsync(WirePatient aPatient, WireDoctor aDoctor)
+    {
+        return request(WireProtocol.Operation.RECORD_TREATMENT, aPatient.getId(), aDoctor.getId(), noResult);
+    }
+
+
+    /**
+     * Moves the patient to another ward as HospCoord.transfer does.
+     *
+     * @param aPatient an admitted patient
+     * @param aWard the ward to move aPatient to
+     *
+     * @throws IOException if the server cannot be reached
+     * @throws IllegalArgumentException if aPatient is not admitted, or aWard is of the
+     * wrong type or full
+     */
+    public void transfer(WirePatient aPatient, WireWard aWard) throws IOException
+    {
+        CompletableFuture<Void> result = request(WireProtocol.Operation.TRANSFER, aPatient.getId(), aWard.getId(), noResult);
+        flush();
+        await(result);
+    }
+
+
+    /**
+     * Returns all patients in the hospital.
+     *
+     * @return a list of WirePatient objects
+     *
+     * @throws IOException if the server cannot be reached
+     */
+    public List<WirePatient> getPatients() throws IOException
+    {
+        CompletableFuture<List<WirePatient>> result = getPatientsAsync();
+        flush();
+        return await(result);
+    }
+
+
+    /**
+     * Requests all patients in the hospital, without waiting for them.
+     *
+     * @return the future list of WirePatient objects
+     */
+    public CompletableFuture<List<WirePatient>> getPatientsAsync()
+    {
+        synchronized (out)
+        {
+            return end(begin(WireProtocol.Operation.PATIENTS, patientsDecoder));
+        }
+    }
+
+
+    /**
+     * Returns the patients that are on the ward.
+     *
+     * @param aWard a ward
+     *
+     * @return a list of WirePatient objects
+     *
+     * @throws IOException if the server cannot be reached
+     */
+    public List<WirePatient> getPatients(WireWard aWard) throws IOException
+    {
+        CompletableFuture<List<WirePatient>> result = request(WireProtocol.Operation.WARD_PATIENTS, aWard.getId(), patientsDecoder);
+        flush();
+        return await(result);
+    }
+
+
+    /**
+     * Returns a map of (patient, ward) pairs where the patients are those cared for by
+     * the team and each ward is the ward that the patient is on.
+     *
+     * @param aTeam a team
+     *
+     * @return a map from WirePatient objects to WireWard objects
+     *
+     * @throws IOException if the server cannot be reached
+     */
+    public Map<WirePatient, WireWard> getPatientsAndWards(WireTeam aTeam) throws IOException
+    {
+        CompletableFuture<List<WirePatient>> result = request(WireProtocol.Operation.TEAM_PATIENTS, aTeam.getId(), patientsDecoder);
+        flush();
+        Map<WirePatient, WireWard> patientsAndWards = new HashMap<WirePatient, WireWard>();
+        for (WirePatient aPatient : await(result))
+        {
+            patientsAndWards.put(aPatient, aPatient.getWard());
+        }
+        return patientsAndWards;
+    }
+
+
+    /**
+     * Returns the doctors that have treated the patient.
+     *
+     * @param aPatient an admitted patient
+     *
+     * @return a list of WireDoctor objects
+     *
+     * @throws IOException if the server cannot be reached
+     * @throws IllegalArgumentException if aPatient is not admitted
+     */
+    public List<WireDoctor> getDoctors(WirePatient aPatient) throws IOException
+    {
+        CompletableFuture<List<WireDoctor>> result = request(WireProtocol.Operation.PATIENT_DOCTORS, aPatient.getId(), doctorsDecoder);
+        flush();
+        return await(result);
+    }
+
+
+    /**
+     * Returns the consultant doctor that is responsible for the patient.
+     *
+     * @param aPatient a patient
+     *
+     * @return the consultant of the patient's team
+     */
+    public WireDoctor getConsultantDoctor(WirePatient aPatient)
+    {
+        return aPatient.getTeam().getConsultantDoctor();
+    }
+
+
+    /**
+     * Returns the number of free beds on the ward.
+     *
+     * @param aWard a ward
+     *
+     * @return the number of free beds
+     *
+     * @throws IOException if the server cannot be reached
+     */
+    public int getNumberOfFreeBeds(WireWard aWard) throws IOException
+    {
+        CompletableFuture<Integer> result = getNumberOfFreeBedsAsync(aWard);
+        flush();
+        return await(result).intValue();
+    }
+
+
+    /**
+     * Requests the number of free beds on the ward, without waiting for it.
+     *
+     * @param aWard a ward
+     *
+     * @return the future number of free beds
+     */
+    public CompletableFuture<Integer> getNumberOfFreeBedsAsync(WireWard aWard)
+    {
+        return request(WireProtocol.Operation.FREE_BEDS, aWard.getId(), countDecoder);
+    }
+
+
+    /**
+     * Saves the state of the hospital.
+     *
+     * @throws IOException if the server cannot be reached
+     * @throws IllegalStateException if the server could not save the hospital
+     */
+    public void save() throws IOException
+    {
+        CompletableFuture<Void> result;
+        synchronized (out)
+        {
+            result = end(begin(WireProtocol.Operation.SAVE, noResult));
+        }
+        flush();
+        await(result);
+    }
+
+
+    /**
+     * Sends every request made and not yet sent.
+     *
+     * @throws IOException if the server cannot be reached
+     */
+    public void flush() throws IOException
+    {
+        synchronized (out)
+        {
+            if (failure != null)
+            {
+                throw failure;
+            }
+            try
+            {
+                out.writeTo(channel);
+            }
+            catch (IOException ex)
+            {
+                fail(ex);
+                throw failure;
+            }
+        }
+    }
+
+
+    /**
+     * Closes the connection. Requests not yet answered fail.
+     */
+    public void close()
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error closing connection to " + address);
+        }
+    }
+
+
+    /**
+     * Measures the rate at which one or more clients can ask a wire server for the
+     * number of free beds on a ward, first waiting for each answer and then with many
+     * requests outstanding.
+     * Usage: WireClient port [clients [requests [depth]]]
+     *
+     * @param args the command line arguments
+     *
+     * @throws Exception if the server cannot be reached
+     */
+    public static void main(String[] args) throws Exception
+    {
+        final int port = Integer.parseInt(args[0]);
+        int clientCount = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        final int requests = (args.length > 2) ? Integer.parseInt(args[2]) : 20000;
+        final int depth = (args.length > 3) ? Integer.parseInt(args[3]) : 64;
+        for (final boolean pipelined : new boolean[] {false, true})
+        {
+            ExecutorService executor = Executors.newFixedThreadPool(clientCount);
+            List<Callable<Void>> work = new ArrayList<Callable<Void>>();
+            for (int i = 0; i < clientCount; i++)
+            {
+                work.add(new Callable<Void>()
+                {
+                    public Void call() throws Exception
+                    {
+                        WireClient client = new WireClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                        WireWard aWard = client.getWards().iterator().next();
+                        if (!pipelined)
+                        {
+                            for (int n = 0; n < requests; n++)
+                            {
+                                client.getNumberOfFreeBeds(aWard);
+                            }
+                        }
+                        else
+                        {
+                            List<CompletableFuture<Integer>> outstanding = new ArrayList<CompletableFuture<Integer>>(depth);
+                            for (int n = 0; n < requests; n++)
+                            {
+                                outstanding.add(client.getNumberOfFreeBedsAsync(aWard));
+                                if (outstanding.size() == depth || n == requests - 1)
+                                {
+                                    client.flush();
+                                    for (CompletableFuture<Integer> aResult : outstanding)
+                                    {
+                                        await(aResult);
+                                    }
+                                    outstanding.clear();
+                                }
+                            }
+                        }
+                        client.close();
+                        return null;
+                    }
+                });
+            }
+            long start = System.nanoTime();
+            for (Future<Void> aResult : executor.invokeAll(work))
+            {
+                aResult.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            executor.shutdown();
+            System.out.println(String.format("%s: %d clients, %d requests in %.2f s, %.0f requests/s",
+                    pipelined ? "pipelined, depth " + depth : "one at a time", clientCount,
+                    clientCount * requests, seconds, clientCount * requests / seconds));
+        }
+    }
+
+
+    //private protocol
+
+    /**
+     * Requests an operation with one id as its argument.
+     */
+    private <T> CompletableFuture<T> request(WireProtocol.Operation anOperation, int anId, Decoder<T> aDecoder)
+    {
+        synchronized (out)
+        {
+            Call<T> aCall = begin(anOperation, aDecoder);
+            out.putInt(anId);
+            return end(aCall);
+        }
+    }
+
+
+    /**
+     * Requests an operation with two ids as its arguments.
+     */
+    private <T> CompletableFuture<T> request(WireProtocol.Operation anOperation, int anId, int anotherId, Decoder<T> aDecoder)
+    {
+        synchronized (out)
+        {
+            Call<T> aCall = begin(anOperation, aDecoder);
+            out.putInt(anId);
+            out.putInt(anotherId);
+            return end(aCall);
+        }
+    }
+
+
+    /**
+     * Starts building a request; the lock on out must be held until it is ended.
+     */
+    private <T> Call<T> begin(WireProtocol.Operation anOperation, Decoder<T> aDecoder)
+    {
+        int request = nextRequest++;
+        Call<T> aCall = new Call<T>(request, aDecoder);
+        out.beginFrame(request, (byte) anOperation.ordinal());
+        return aCall;
+    }
+
+
+    /**
+     * Finishes building a request, sending the waiting requests if there are enough of them.
+     */
+    private <T> CompletableFuture<T> end(Call<T> aCall)
+    {
+        out.endFrame();
+        calls.put(Integer.valueOf(aCall.request), aCall);
+        if (failure != null)
+        {
+            calls.remove(Integer.valueOf(aCall.request));
+            aCall.result.completeExceptionally(failure);
+        }
+        else if (out.size() >= FLUSH_SIZE)
+        {
+            try
+            {
+                out.writeTo(channel);
+            }
+            catch (IOException ex)
+            {
+                fail(ex);
+            }
+        }
+        return aCall.result;
+    }
+
+
+    /**
+     * Reads responses until the connection is closed, completing the calls they answer.
+     */
+    private void readResponses()
+    {
+        WireReader in = new WireReader(FLUSH_SIZE);
+        try
+        {
+            while (true)
+            {
+                if (in.readFrom(channel) < 0)
+                {
+                    throw new EOFException("connection closed by " + address);
+                }
+                ByteBuffer frame;
+                while ((frame = in.nextFrame()) != null)
+                {
+                    Call<?> aCall = calls.remove(Integer.valueOf(frame.getInt()));
+                    if (aCall != null)
+                    {
+                        aCall.complete(frame.get(), frame);
+                    }
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            fail(ex);
+        }
+    }
+
+
+    /**
+     * Marks the connection as unusable, failing every call not yet answered.
+     */
+    private void fail(IOException aReason)
+    {
+        if (failure == null)
+        {
+            failure = (aReason instanceof EOFException) ? aReason : new IOException("connection to " + address + " lost", aReason);
+        }
+        for (Integer aRequest : calls.keySet())
+        {
+            Call<?> aCall = calls.remove(aRequest);
+            if (aCall != null)
+            {
+                aCall.result.completeExceptionally(failure);
+            }
+        }
+    }
+
+
+    /**
+     * Reads the wards, and the teams with their doctors, into the maps of this client.
+     */
+    private void readDescription(ByteBuffer in)
+    {
+        for (int i = in.getInt(); i > 0; i--)
+        {
+            int anId = in.getInt();
+            String aName = WireProtocol.getString(in);
+            Sex aSex = WireProtocol.getSex(in);
+            wards.put(Integer.valueOf(anId), new WireWard(anId, aName, aSex, in.getInt()));
+        }
+        for (int i = in.getInt(); i > 0; i--)
+        {
+            int anId = in.getInt();
+            String aCode = WireProtocol.getString(in);
+            List<WireDoctor> teamDoctors = new ArrayList<WireDoctor>();
+            for (int j = in.getInt(); j > 0; j--)
+            {
+                int aDoctorId = in.getInt();
+                Name aName = WireProtocol.getName(in);
+                int grade = in.get();
+                WireDoctor aDoctor = new WireDoctor(aDoctorId, aName, (grade < 0) ? null : Grade.values()[grade]);
+                doctors.put(Integer.valueOf(aDoctorId), aDoctor);
+                teamDoctors.add(aDoctor);
+            }
+            teams.put(Integer.valueOf(anId), new WireTeam(anId, aCode, teamDoctors));
+        }
+    }
+
+
+    /**
+     * Waits for a result, throwing what the request raised.
+     */
+    private static <T> T await(CompletableFuture<T> aResult) throws IOException
+    {
+        try
+        {
+            return aResult.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for the server");
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+
+    /**
+     * Turns the result of a response into an object.
+     */
+    private interface Decoder<T>
+    {
+        T decode(ByteBuffer in);
+    }
+
+
+    /**
+     * decodes an empty result
+     */
+    private final Decoder<Void> noResult = new Decoder<Void>()
+    {
+        public Void decode(ByteBuffer in)
+        {
+            return null;
+        }
+    };
+
+    /**
+     * decodes a count
+     */
+    private final Decoder<Integer> countDecoder = new Decoder<Integer>()
+    {
+        public Integer decode(ByteBuffer in)
+        {
+            return Integer.valueOf(in.getInt());
+        }
+    };
+
+    /**
+     * decodes the id of a ward, or 0 for none
+     */
+    private final Decoder<WireWard> wardDecoder = new Decoder<WireWard>()
+    {
+        public WireWard decode(ByteBuffer in)
+        {
+            return wards.get(Integer.valueOf(in.getInt()));
+        }
+    };
+
+    /**
+     * decodes a list of patients
+     */
+    private final Decoder<List<WirePatient>> patientsDecoder = new Decoder<List<WirePatient>>()
+    {
+        public List<WirePatient> decode(ByteBuffer in)
+        {
+            int count = in.getInt();
+            List<WirePatient> patients = new ArrayList<WirePatient>(count);
+            for (int i = 0; i < count; i++)
+            {
+                int anId = in.getInt();
+                Name aName = WireProtocol.getName(in);
+                Sex aSex = WireProtocol.getSex(in);
+                CompactDate aDate = WireProtocol.getDate(in);
+                WireWard aWard = wards.get(Integer.valueOf(in.getInt()));
+                patients.add(new WirePatient(anId, aName, aSex, aDate, aWard, teams.get(Integer.valueOf(in.getInt()))));
+            }
+            return patients;
+        }
+    };
+
+    /**
+     * decodes a list of doctor ids
+     */
+    private final Decoder<List<WireDoctor>> doctorsDecoder = new Decoder<List<WireDoctor>>()
+    {
+        public List<WireDoctor> decode(ByteBuffer in)
+        {
+            int count = in.getInt();
+            List<WireDoctor> result = new ArrayList<WireDoctor>(count);
+            for (int i = 0; i < count; i++)
+            {
+                result.add(doctors.get(Integer.valueOf(in.getInt())));
+            }
+            return result;
+        }
+    };
+
+
+    /**
+     * A request sent and not yet answered.
+     */
+    private static class Call<T>
+    {
+        final int request;
+        final Decoder<T> decoder;
+        final CompletableFuture<T> result;
+
+        Call(int aRequest, Decoder<T> aDecoder)
+        {
+            request = aRequest;
+            decoder = aDecoder;
+            result = new CompletableFuture<T>();
+        }
+
+        /**
+         * Completes the call with the response of the given status.
+         */
+        void complete(byte aStatus, ByteBuffer in)
+        {
+            try
+            {
+                if (aStatus == WireProtocol.OK)
+                {
+                    result.complete(decoder.decode(in));
+                }
+                else if (aStatus == WireProtocol.REJECTED)
+                {
+                    result.completeExceptionally(new IllegalArgumentException(WireProtocol.getString(in)));
+                }
+                else
+                {
+                    result.completeExceptionally(new IllegalStateException("server failed: " + WireProtocol.getString(in)));
+                }
+            }
+            catch (RuntimeException ex)
+            {
+                result.completeExceptionally(new IllegalStateException("bad response", ex));
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package hospitalwire;
+
+import m256people.*;
+
+/**
+ * WireDoctor objects describe a doctor of a hospital served by a WireServer.
+ * Two WireDoctor objects are equal if they describe the same doctor.
+ */
+public class WireDoctor
+{
+    //attributes
+
+    /**
+     * the id of the doctor in the hospital
+     */
+    private final int id;
+
+    /**
+     * the name of the doctor
+     */
+    private final Name name;
+
+    /**
+     * the grade of the doctor, or null for a consultant
+     */
+    private final Grade grade;
+
+
+    //constructor
+
+    /**
+     * Initialises a new WireDoctor object with the given attribute values.
+     *
+     * @param anId the id of the doctor
+     * @param aName the name of the doctor
+     * @param aGrade the grade of a junior doctor, or null for a consultant
+     */
+    WireDoctor(int anId, Name aName, Grade aGrade)
+    {
+        id = anId;
+        name = aName;
+        grade = aGrade;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the id of the doctor in the hospital.
+     *
+     * @return id
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+
+    /**
+     * Returns the name of the doctor.
+     *
+     * @return name
+     */
+    public Name getName()
+    {
+        return name;
+    }
+
+
+    /**
+     * Returns whether the doctor is a consultant.
+     *
+     * @return true for a consultant, false for a junior doctor
+     */
+    public boolean isConsultant()
+    {
+        return grade == null;
+    }
+
+
+    /**
+     * Returns the grade of a junior doctor.
+     *
+     * @return grade, or null for a consultant
+     */
+    public Grade getGrade()
+    {
+        return grade;
+    }
+
+
+    /**
+     * Returns whether o describes the same doctor as the receiver.
+     *
+     * @param o an object
+     *
+     * @return true if o is a WireDoctor object with the same id, false otherwise
+     */
+    public boolean equals(Object o)
+    {
+        return (o instanceof WireDoctor) && ((WireDoctor) o).id == id;
+    }
+
+
+    /**
+     * Returns a hash code for the doctor, which is its id.
+     *
+     * @return id
+     */
+    public int hashCode()
+    {
+        return id;
+    }
+
+
+    /**
+     * Returns a string representation of the doctor's name, and grade if a junior doctor.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return (grade == null) ? name.toString() : name + "(" + grade + ")";
+    }
+}
@@ -0,0 +1,172 @@
+package hospitalwire;
+
+import m256people.*;
+import m256date.*;
+
+/**
+ * WirePatient objects describe a patient admitted to a hospital served by a WireServer,
+ * together with the ward and team the patient was linked to when described.
+ * Two WirePatient objects are equal if they describe the same patient.
+ */
+public class WirePatient
+{
+    //attributes
+
+    /**
+     * the id of the patient in the hospital
+     */
+    private final int id;
+
+    /**
+     * the person who is a patient
+     */
+    private final Person person;
+
+
+    //links
+
+    /**
+     * the ward the patient is on
+     */
+    private final WireWard ward;
+
+    /**
+     * the team caring for the patient
+     */
+    private final WireTeam team;
+
+
+    //constructor
+
+    /**
+     * Initialises a new WirePatient object with the given attribute values.
+     *
+     * @param anId the id of the patient
+     * @param aName the name of the patient
+     * @param aSex the sex of the patient
+     * @param aDate the date of birth of the patient
+     * @param aWard the ward the patient is on
+     * @param aTeam the team caring for the patient
+     */
+    WirePatient(int anId, Name aName, Sex aSex, CompactDate aDate, WireWard aWard, WireTeam aTeam)
+    {
+        id = anId;
+        person = new Person(aName, aSex, aDate);
+        ward = aWard;
+        team = aTeam;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the id of the patient in the hospital.
+     *
+     * @return id
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+
+    /**
+     * Returns the name of the patient.
+     *
+     * @return name
+     */
+    public Name getName()
+    {
+        return person.getName();
+    }
+
+
+    /**
+     * Returns the sex of the patient.
+     *
+     * @return sex
+     */
+    public Sex getSex()
+    {
+        return person.getSex();
+    }
+
+
+    /**
+     * Returns the date of birth of the patient.
+     *
+     * @return dateOfBirth
+     */
+    public M256Date getDateOfBirth()
+    {
+        return person.getDateOfBirth();
+    }
+
+
+    /**
+     * Returns the date of birth of the patient as a CompactDate.
+     *
+     * @return dateOfBirth
+     */
+    public CompactDate getBirthDate()
+    {
+        return person.getBirthDate();
+    }
+
+
+    /**
+     * Returns the ward the patient was on when described.
+     *
+     * @return ward
+     */
+    public WireWard getWard()
+    {
+        return ward;
+    }
+
+
+    /**
+     * Returns the team caring for the patient when described.
+     *
+     * @return team
+     */
+    public WireTeam getTeam()
+    {
+        return team;
+    }
+
+
+    /**
+     * Returns whether o describes the same patient as the receiver.
+     *
+     * @param o an object
+     *
+     * @return true if o is a WirePatient object with the same id, false otherwise
+     */
+    public boolean equals(Object o)
+    {
+        return (o instanceof WirePatient) && ((WirePatient) o).id == id;
+    }
+
+
+    /**
+     * Returns a hash code for the patient, which is its id.
+     *
+     * @return id
+     */
+    public int hashCode()
+    {
+        return id;
+    }
+
+
+    /**
+     * Returns a string representation of the patient.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return person.toString();
+    }
+}
@@ -0,0 +1,184 @@
+package hospitalwire;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import m256people.*;
+
+/**
+ * The binary protocol spoken between WireClient and WireServer objects.<p>
+ * Each request is a frame made up of an int length, counting the bytes that follow it,
+ * an int request number chosen by the client, the byte ordinal of an Operation and the
+ * arguments of the operation. Each response is a frame made up of an int length, the
+ * request number, a status byte and, if the status is OK, the result. Wards, teams,
+ * doctors and patients are sent as their ids in the hospital, strings as a short byte
+ * count and their UTF-8 bytes, with a count of -1 for null, and dates of birth as their
+ * int number of days from 1 January 1970.
+ * A client may send any number of requests without waiting; they are answered in order.
+ */
+final class WireProtocol
+{
+    /**
+     * The operations a server can carry out.
+     */
+    enum Operation
+    {
+        /**
+         * Answer the wards, and the teams with their doctors.
+         */
+        DESCRIBE,
+        /**
+         * Admit a patient, answering the id of the ward or 0.
+         */
+        ADMIT,
+        /**
+         * Discharge a patient.
+         */
+        DISCHARGE,
+        /**
+         * Record the treatment of a patient by a doctor.
+         */
+        RECORD_TREATMENT,
+        /**
+         * Move a patient to another ward.
+         */
+        TRANSFER,
+        /**
+         * Answer all the patients.
+         */
+        PATIENTS,
+        /**
+         * Answer the patients on a ward.
+         */
+        WARD_PATIENTS,
+        /**
+         * Answer the patients cared for by a team.
+         */
+        TEAM_PATIENTS,
+        /**
+         * Answer the ids of the doctors that have treated a patient.
+         */
+        PATIENT_DOCTORS,
+        /**
+         * Answer the number of free beds on a ward.
+         */
+        FREE_BEDS,
+        /**
+         * Save the state of the hospital.
+         */
+        SAVE
+    }
+
+
+    //attributes
+
+    /**
+     * the status of a response carrying a result
+     */
+    static final byte OK = 0;
+
+    /**
+     * the status of a response to a request whose arguments were refused, followed by a message
+     */
+    static final byte REJECTED = 1;
+
+    /**
+     * the status of a response to a request that failed, followed by a message
+     */
+    static final byte FAILED = 2;
+
+    /**
+     * the greatest length of a frame accepted
+     */
+    static final int MAX_FRAME_LENGTH = 16 << 20;
+
+    /**
+     * the number of bytes in the header of a frame after its length: the request number and the operation or status
+     */
+    static final int HEADER_LENGTH = 5;
+
+    /**
+     * the day sent for a missing date
+     */
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+
+    //constructor
+
+    /**
+     * There are no WireProtocol objects.
+     */
+    private WireProtocol()
+    {
+    }
+
+
+    //package protocol
+
+    /**
+     * Reads a string written by WireWriter.putString.
+     *
+     * @param in a buffer positioned at the string
+     *
+     * @return the string, or null
+     */
+    static String getString(ByteBuffer in)
+    {
+        int length = in.getShort();
+        if (length < 0)
+        {
+            return null;
+        }
+        String result = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return result;
+    }
+
+
+    /**
+     * Reads a name written by WireWriter.putName.
+     *
+     * @param in a buffer positioned at the name
+     *
+     * @return the name
+     */
+    static Name getName(ByteBuffer in)
+    {
+        String title = getString(in);
+        String firstName = getString(in);
+        return new Name(title, firstName, getString(in));
+    }
+
+
+    /**
+     * Reads a date written by WireWriter.putDate.
+     *
+     * @param in a buffer positioned at the date
+     *
+     * @return the date, or null
+     */
+    static CompactDate getDate(ByteBuffer in)
+    {
+        int day = in.getInt();
+        return (day == NO_DATE) ? null : CompactDate.ofEpochDay(day);
+    }
+
+
+    /**
+     * Reads a sex written as its ordinal.
+     *
+     * @param in a buffer positioned at the sex
+     *
+     * @return the sex
+     *
+     * @throws IllegalArgumentException if there is no sex with that ordinal
+     */
+    static Sex getSex(ByteBuffer in)
+    {
+        int ordinal = in.get();
+        if (ordinal < 0 || ordinal >= Sex.values().length)
+        {
+            throw new IllegalArgumentException("unknown sex " + ordinal);
+        }
+        return Sex.values()[ordinal];
+    }
+}
@@ -0,0 +1,99 @@
+package hospitalwire;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * WireReader objects gather the bytes read from a channel into frames of the wire
+ * protocol. Many frames may arrive in one read, and a frame may take several reads;
+ * the buffer grows to hold the largest frame seen.
+ */
+class WireReader
+{
+    //links
+
+    /**
+     * the bytes read and not yet taken as frames, from its position to its limit
+     */
+    private ByteBuffer buffer;
+
+
+    //constructor
+
+    /**
+     * Initialises a new, empty WireReader object with room for aCapacity bytes before it grows.
+     *
+     * @param aCapacity the initial size of the buffer
+     */
+    WireReader(int aCapacity)
+    {
+        buffer = ByteBuffer.allocate(aCapacity);
+        buffer.flip();
+    }
+
+
+    //package protocol
+
+    /**
+     * Reads what aChannel has available, waiting for some if it is in blocking mode.
+     *
+     * @param aChannel a channel
+     *
+     * @return the number of bytes read, or -1 if the channel has reached the end of its stream
+     *
+     * @throws IOException if aChannel cannot be read
+     */
+    int readFrom(ReadableByteChannel aChannel) throws IOException
+    {
+        buffer.compact();
+        try
+        {
+            return aChannel.read(buffer);
+        }
+        finally
+        {
+            buffer.flip();
+        }
+    }
+
+
+    /**
+     * Returns the next complete frame read, if there is one. The frame is only valid
+     * until the next read.
+     *
+     * @return a buffer holding the request number, the operation or status and the
+     *         rest of the frame, positioned at the request number; or null if no
+     *         complete frame has been read
+     *
+     * @throws IOException if the next frame has an impossible length
+     */
+    ByteBuffer nextFrame() throws IOException
+    {
+        if (buffer.remaining() < 4)
+        {
+            return null;
+        }
+        int length = buffer.getInt(buffer.position());
+        if (length < WireProtocol.HEADER_LENGTH || length > WireProtocol.MAX_FRAME_LENGTH)
+        {
+            throw new IOException("bad frame length " + length);
+        }
+        if (buffer.remaining() < 4 + length)
+        {
+            if (buffer.capacity() < 4 + length)
+            {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(4 + length, 2 * buffer.capacity()));
+                bigger.put(buffer);
+                bigger.flip();
+                buffer = bigger;
+            }
+            return null;
+        }
+        buffer.position(buffer.position() + 4);
+        ByteBuffer frame = buffer.slice();
+        frame.limit(length);
+        buffer.position(buffer.position() + length);
+        return frame;
+    }
+}
@@ -0,0 +1,496 @@
+package hospitalwire;
+
+import java.io.*;
+import java.net.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import hospitalcore.*;
+import m256people.*;
+
+/**
+ * WireServer objects serve a hospital to WireClient objects over the binary wire
+ * protocol, so that many client processes on one host can share one hospital process.<p>
+ * All connections are served by one thread using non-blocking channels and a selector.
+ * Every complete request that arrives in one read is carried out in order, and their
+ * responses are written back together. While a client is not reading its responses,
+ * its requests are not read either, so a client that falls behind is slowed down
+ * rather than left to fill the server's memory.
+ */
+public class WireServer
+{
+    //attributes
+
+    /**
+     * the size of the buffers each connection starts with
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+
+    //links
+
+    /**
+     * the hospital served
+     */
+    private final HospCoord hospital;
+
+    /**
+     * the channel connections are accepted on
+     */
+    private final ServerSocketChannel serverChannel;
+
+    /**
+     * the selector the channels are watched with
+     */
+    private final Selector selector;
+
+
+    //constructor
+
+    /**
+     * Initialises a new WireServer object serving aHospital on the given port
+     * of the loopback interface.
+     *
+     * @param aHospital the hospital to serve
+     * @param aPort the port to listen on, or 0 for any free port
+     *
+     * @throws IOException if the port cannot be opened
+     */
+    public WireServer(HospCoord aHospital, int aPort) throws IOException
+    {
+        hospital = aHospital;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), aPort), 50);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the port this server is listening on.
+     *
+     * @return the local port of the server channel
+     */
+    public int getPort()
+    {
+        return serverChannel.socket().getLocalPort();
+    }
+
+
+    /**
+     * Serves connections on the calling thread until the receiver is closed.
+     */
+    public void serve()
+    {
+        while (serverChannel.isOpen())
+        {
+            try
+            {
+                selector.select();
+            }
+            catch (IOException ex)
+            {
+                System.out.println("Error waiting for connections: " + ex);
+                return;
+            }
+            catch (ClosedSelectorException ex)
+            {
+                return;
+            }
+            if (!selector.isOpen())
+            {
+                return;
+            }
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext())
+            {
+                SelectionKey aKey = it.next();
+                it.remove();
+                try
+                {
+                    if (!aKey.isValid())
+                    {
+                        continue;
+                    }
+                    if (aKey.isAcceptable())
+                    {
+                        accept();
+                    }
+                    else
+                    {
+                        Connection aConnection = (Connection) aKey.attachment();
+                        if (aKey.isWritable())
+                        {
+                            aConnection.write(aKey);
+                        }
+                        if (aKey.isValid() && aKey.isReadable())
+                        {
+                            aConnection.read(aKey);
+                        }
+                    }
+                }
+                catch (IOException ex)
+                {
+                    close(aKey);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Stops serving and closes every connection.
+     */
+    public void close()
+    {
+        try
+        {
+            serverChannel.close();
+            for (SelectionKey aKey : selector.keys())
+            {
+                aKey.channel().close();
+            }
+            selector.close();
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error closing wire server.");
+        }
+    }
+
+
+    /**
+     * Starts a wire server for the hospital in a separate process.
+     *
+     * @param args the set-up file, data file and port
+     *
+     * @throws IOException if the port cannot be opened
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 3)
+        {
+            System.out.println("usage: WireServer setupFile dataFile port");
+            System.exit(1);
+        }
+        WireServer server = new WireServer(HospCoord.getPartition(args[0], args[1]), Integer.parseInt(args[2]));
+        System.out.println("Wire server listening on port " + server.getPort());
+        server.serve();
+    }
+
+
+    //package protocol
+
+    /**
+     * Carries out a request on the hospital, adding its result to out.
+     *
+     * @param anOperation the operation requested
+     * @param in the arguments of the request
+     * @param out the writer the result is added to
+     *
+     * @throws IllegalArgumentException if an argument or the operation is refused
+     * @throws UncheckedIOException if the hospital cannot be saved
+     */
+    void handle(WireProtocol.Operation anOperation, ByteBuffer in, WireWriter out)
+    {
+        switch (anOperation)
+        {
+            case DESCRIBE:
+                describe(out);
+                break;
+            case ADMIT:
+                Name aName = WireProtocol.getName(in);
+                Sex aSex = WireProtocol.getSex(in);
+                CompactDate aDate = WireProtocol.getDate(in);
+                Ward theWard = hospital.admit(aName, aSex, aDate, findTeam(in.getInt()));
+                out.putInt((theWard == null) ? 0 : theWard.getId());
+                break;
+            case DISCHARGE:
+                hospital.discharge(findPatient(in.getInt()));
+                break;
+            case RECORD_TREATMENT:
+                Patient aPatient = findPatient(in.getInt());
+                hospital.recordTreatment(aPatient, findDoctor(in.getInt()));
+                break;
+            case TRANSFER:
+                aPatient = findPatient(in.getInt());
+                hospital.transfer(aPatient, findWard(in.getInt()));
+                break;
+            case PATIENTS:
+                HospitalSnapshot snapshot = hospital.snapshot();
+                putPatients(snapshot, snapshot.getPatients(), out);
+                break;
+            case WARD_PATIENTS:
+                snapshot = hospital.snapshot();
+                putPatients(snapshot, snapshot.getPatients(findWard(in.getInt())), out);
+                break;
+            case TEAM_PATIENTS:
+                snapshot = hospital.snapshot();
+                putPatients(snapshot, snapshot.getPatients(findTeam(in.getInt())), out);
+                break;
+            case PATIENT_DOCTORS:
+                Collection<Doctor> doctors = hospital.snapshot().getDoctors(findPatient(in.getInt()));
+                out.putInt(doctors.size());
+                for (Doctor aDoctor : doctors)
+                {
+                    out.putInt(aDoctor.getId());
+                }
+                break;
+            case FREE_BEDS:
+                out.putInt(hospital.snapshot().getNumberOfFreeBeds(findWard(in.getInt())));
+                break;
+            case SAVE:
+                try
+                {
+                    hospital.store();
+                }
+                catch (IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown operation " + anOperation);
+        }
+    }
+
+
+    //private protocol
+
+    /**
+     * Accepts a waiting connection, if there is one.
+     */
+    private void accept() throws IOException
+    {
+        SocketChannel aChannel = serverChannel.accept();
+        if (aChannel != null)
+        {
+            aChannel.configureBlocking(false);
+            aChannel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+            aChannel.register(selector, SelectionKey.OP_READ, new Connection(aChannel));
+        }
+    }
+
+
+    /**
+     * Closes the connection of aKey.
+     */
+    private void close(SelectionKey aKey)
+    {
+        aKey.cancel();
+        try
+        {
+            aKey.channel().close();
+        }
+        catch (IOException ex)
+        {
+            System.out.println("Error closing connection.");
+        }
+    }
+
+
+    /**
+     * Adds the wards, and the teams with their doctors, to out.
+     */
+    private void describe(WireWriter out)
+    {
+        Collection<Ward> wards = hospital.getWards();
+        out.putInt(wards.size());
+        for (Ward aWard : wards)
+        {
+            out.putInt(aWard.getId());
+            out.putString(aWard.getName());
+            out.putByte(aWard.getType().ordinal());
+            out.putInt(aWard.getCapacity());
+        }
+        Collection<Team> teams = hospital.getTeams();
+        out.putInt(teams.size());
+        for (Team aTeam : teams)
+        {
+            out.putInt(aTeam.getId());
+            out.putString(aTeam.getCode());
+            Collection<Doctor> doctors = hospital.getDoctors(aTeam);
+            out.putInt(doctors.size());
+            for (Doctor aDoctor : doctors)
+            {
+                out.putInt(aDoctor.getId());
+                out.putName(aDoctor.getName());
+                out.putByte((aDoctor instanceof JuniorDoctor) ? ((JuniorDoctor) aDoctor).getGrade().ordinal() : -1);
+            }
+        }
+    }
+
+
+    /**
+     * Adds aPatients, with the ids of their wards and teams in aSnapshot, to out.
+     */
+    private static void putPatients(HospitalSnapshot aSnapshot, Collection<Patient> aPatients, WireWriter out)
+    {
+        out.putInt(aPatients.size());
+        for (Patient aPatient : aPatients)
+        {
+            out.putInt(aPatient.getId());
+            out.putName(aPatient.getName());
+            out.putByte(aPatient.getSex().ordinal());
+            out.putDate(aPatient.getBirthDate());
+            out.putInt(aSnapshot.getWard(aPatient).getId());
+            out.putInt(aSnapshot.getTeam(aPatient).getId());
+        }
+    }
+
+
+    /**
+     * Returns the team with the given id.
+     */
+    private Team findTeam(int anId)
+    {
+        Team aTeam = hospital.findTeam(anId);
+        if (aTeam == null)
+        {
+            throw new IllegalArgumentException("no team with id " + anId);
+        }
+        return aTeam;
+    }
+
+
+    /**
+     * Returns the ward with the given id.
+     */
+    private Ward findWard(int anId)
+    {
+        Ward aWard = hospital.findWard(anId);
+        if (aWard == null)
+        {
+            throw new IllegalArgumentException("no ward with id " + anId);
+        }
+        return aWard;
+    }
+
+
+    /**
+     * Returns the doctor with the given id.
+     */
+    private Doctor findDoctor(int anId)
+    {
+        Doctor aDoctor = hospital.findDoctor(anId);
+        if (aDoctor == null)
+        {
+            throw new IllegalArgumentException("no doctor with id " + anId);
+        }
+        return aDoctor;
+    }
+
+
+    /**
+     * Returns the admitted patient with the given id.
+     */
+    private Patient findPatient(int anId)
+    {
+        Patient aPatient = hospital.findPatient(anId);
+        if (aPatient == null)
+        {
+            throw new IllegalArgumentException("no admitted patient with id " + anId);
+        }
+        return aPatient;
+    }
+
+
+    /**
+     * The state of one client's connection: the requests read but not yet complete,
+     * and the responses not yet written.
+     */
+    private class Connection
+    {
+        private final SocketChannel channel;
+        private final WireReader in;
+        private final WireWriter out;
+
+        Connection(SocketChannel aChannel)
+        {
+            channel = aChannel;
+            in = new WireReader(BUFFER_SIZE);
+            out = new WireWriter(BUFFER_SIZE);
+        }
+
+        /**
+         * Reads what has arrived, carries out every complete request and writes the responses.
+         */
+        void read(SelectionKey aKey) throws IOException
+        {
+            if (in.readFrom(channel) < 0)
+            {
+                throw new EOFException();
+            }
+            ByteBuffer frame;
+            while ((frame = in.nextFrame()) != null)
+            {
+                int request = frame.getInt();
+                respond(request, frame.get(), frame);
+            }
+            write(aKey);
+        }
+
+        /**
+         * Writes as many waiting responses as the channel will take, reading no more
+         * requests until they have all gone.
+         */
+        void write(SelectionKey aKey) throws IOException
+        {
+            if (out.writeTo(channel))
+            {
+                aKey.interestOps(SelectionKey.OP_READ);
+            }
+            else
+            {
+                aKey.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+
+        /**
+         * Replaces the response being built with one refusing the request.
+         */
+        private void reject(int aRequest, String aMessage)
+        {
+            out.abandonFrame();
+            out.beginFrame(aRequest, WireProtocol.REJECTED);
+            out.putString(aMessage);
+            out.endFrame();
+        }
+
+        /**
+         * Carries out one request, adding its response to out.
+         */
+        private void respond(int aRequest, int aCode, ByteBuffer arguments)
+        {
+            out.beginFrame(aRequest, WireProtocol.OK);
+            try
+            {
+                if (aCode < 0 || aCode >= WireProtocol.Operation.values().length)
+                {
+                    throw new IllegalArgumentException("unknown operation " + aCode);
+                }
+                handle(WireProtocol.Operation.values()[aCode], arguments, out);
+                out.endFrame();
+            }
+            catch (IllegalArgumentException ex)
+            {
+                reject(aRequest, ex.getMessage());
+            }
+            catch (BufferUnderflowException ex)
+            {
+                reject(aRequest, "request too short");
+            }
+            catch (RuntimeException ex)
+            {
+                out.abandonFrame();
+                out.beginFrame(aRequest, WireProtocol.FAILED);
+                out.putString(ex.toString());
+                out.endFrame();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package hospitalwire;
+
+import java.util.*;
+
+/**
+ * WireTeam objects describe a team of a hospital served by a WireServer, with its doctors.
+ * Two WireTeam objects are equal if they describe the same team.
+ */
+public class WireTeam
+{
+    //attributes
+
+    /**
+     * the id of the team in the hospital
+     */
+    private final int id;
+
+    /**
+     * the code of the team
+     */
+    private final String code;
+
+
+    //links
+
+    /**
+     * the doctors of the team
+     */
+    private final List<WireDoctor> doctors;
+
+
+    //constructor
+
+    /**
+     * Initialises a new WireTeam object with the given attribute values.
+     *
+     * @param anId the id of the team
+     * @param aCode the code of the team
+     * @param aDoctorList the doctors of the team
+     */
+    WireTeam(int anId, String aCode, List<WireDoctor> aDoctorList)
+    {
+        id = anId;
+        code = aCode;
+        doctors = Collections.unmodifiableList(aDoctorList);
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the id of the team in the hospital.
+     *
+     * @return id
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+
+    /**
+     * Returns the code of the team.
+     *
+     * @return code
+     */
+    public String getCode()
+    {
+        return code;
+    }
+
+
+    /**
+     * Returns the doctors of the team.
+     *
+     * @return an unmodifiable list of WireDoctor objects
+     */
+    public List<WireDoctor> getDoctors()
+    {
+        return doctors;
+    }
+
+
+    /**
+     * Returns the consultant doctor of the team.
+     *
+     * @return a WireDoctor object, or null if the team has no consultant
+     */
+    public WireDoctor getConsultantDoctor()
+    {
+        for (WireDoctor aDoctor : doctors)
+        {
+            if (aDoctor.isConsultant())
+            {
+                return aDoctor;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Returns whether o describes the same team as the receiver.
+     *
+     * @param o an object
+     *
+     * @return true if o is a WireTeam object with the same id, false otherwise
+     */
+    public boolean equals(Object o)
+    {
+        return (o instanceof WireTeam) && ((WireTeam) o).id == id;
+    }
+
+
+    /**
+     * Returns a hash code for the team, which is its id.
+     *
+     * @return id
+     */
+    public int hashCode()
+    {
+        return id;
+    }
+
+
+    /**
+     * Returns a string representation of the team.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return code + ": " + doctors;
+    }
+}
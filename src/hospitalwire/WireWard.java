@@ -0,0 +1,132 @@
+package hospitalwire;
+
+import m256people.*;
+
+/**
+ * WireWard objects describe a ward of a hospital served by a WireServer.
+ * Two WireWard objects are equal if they describe the same ward.
+ */
+public class WireWard
+{
+    //attributes
+
+    /**
+     * the id of the ward in the hospital
+     */
+    private final int id;
+
+    /**
+     * the name of the ward
+     */
+    private final String name;
+
+    /**
+     * whether the ward is for male or female patients
+     */
+    private final Sex type;
+
+    /**
+     * the number of beds on the ward
+     */
+    private final int capacity;
+
+
+    //constructor
+
+    /**
+     * Initialises a new WireWard object with the given attribute values.
+     *
+     * @param anId the id of the ward
+     * @param aName the name of the ward
+     * @param aSex the type of the ward
+     * @param aCapacity the capacity of the ward
+     */
+    WireWard(int anId, String aName, Sex aSex, int aCapacity)
+    {
+        id = anId;
+        name = aName;
+        type = aSex;
+        capacity = aCapacity;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the id of the ward in the hospital.
+     *
+     * @return id
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+
+    /**
+     * Returns the name of the ward.
+     *
+     * @return name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+
+    /**
+     * Returns the type of the ward.
+     *
+     * @return type
+     */
+    public Sex getType()
+    {
+        return type;
+    }
+
+
+    /**
+     * Returns the capacity of the ward.
+     *
+     * @return capacity
+     */
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+
+    /**
+     * Returns whether o describes the same ward as the receiver.
+     *
+     * @param o an object
+     *
+     * @return true if o is a WireWard object with the same id, false otherwise
+     */
+    public boolean equals(Object o)
+    {
+        return (o instanceof WireWard) && ((WireWard) o).id == id;
+    }
+
+
+    /**
+     * Returns a hash code for the ward, which is its id.
+     *
+     * @return id
+     */
+    public int hashCode()
+    {
+        return id;
+    }
+
+
+    /**
+     * Returns a string representation of the ward.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        return name + ": " + type + ": " + capacity;
+    }
+}
@@ -0,0 +1,223 @@
+package hospitalwire;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import m256people.*;
+
+/**
+ * WireWriter objects build frames of the wire protocol in a buffer that grows as
+ * needed, and write them to a channel. Several frames may be built before they are
+ * written, so that they go out together.
+ */
+class WireWriter
+{
+    //attributes
+
+    /**
+     * the position in buffer of the length of the frame being built, or -1 if none is
+     */
+    private int frameStart;
+
+
+    //links
+
+    /**
+     * the frames built and not yet written, from position 0 to the buffer's position
+     */
+    private ByteBuffer buffer;
+
+
+    //constructor
+
+    /**
+     * Initialises a new, empty WireWriter object with room for aCapacity bytes before it grows.
+     *
+     * @param aCapacity the initial size of the buffer
+     */
+    WireWriter(int aCapacity)
+    {
+        buffer = ByteBuffer.allocate(aCapacity);
+        frameStart = -1;
+    }
+
+
+    //package protocol
+
+    /**
+     * Starts a frame with the given request number and operation or status.
+     *
+     * @param aRequest the request number
+     * @param aCode the ordinal of the operation, or the status
+     */
+    void beginFrame(int aRequest, byte aCode)
+    {
+        ensure(4 + WireProtocol.HEADER_LENGTH);
+        frameStart = buffer.position();
+        buffer.putInt(0);
+        buffer.putInt(aRequest);
+        buffer.put(aCode);
+    }
+
+
+    /**
+     * Ends the frame being built by filling in its length.
+     */
+    void endFrame()
+    {
+        buffer.putInt(frameStart, buffer.position() - frameStart - 4);
+        frameStart = -1;
+    }
+
+
+    /**
+     * Throws away the frame being built, as when building it failed part way.
+     */
+    void abandonFrame()
+    {
+        if (frameStart >= 0)
+        {
+            buffer.position(frameStart);
+            frameStart = -1;
+        }
+    }
+
+
+    /**
+     * Adds a byte to the frame.
+     *
+     * @param aByte a byte
+     */
+    void putByte(int aByte)
+    {
+        ensure(1);
+        buffer.put((byte) aByte);
+    }
+
+
+    /**
+     * Adds an int to the frame.
+     *
+     * @param anInt an int
+     */
+    void putInt(int anInt)
+    {
+        ensure(4);
+        buffer.putInt(anInt);
+    }
+
+
+    /**
+     * Adds a string to the frame as a short byte count and its UTF-8 bytes.
+     *
+     * @param aString a string of at most 32767 bytes, or null
+     *
+     * @throws IllegalArgumentException if aString is too long
+     */
+    void putString(String aString)
+    {
+        if (aString == null)
+        {
+            ensure(2);
+            buffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = aString.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("string too long to send");
+        }
+        ensure(2 + bytes.length);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+
+    /**
+     * Adds a name to the frame as its title, first name and surname.
+     *
+     * @param aName a name
+     */
+    void putName(Name aName)
+    {
+        putString(aName.getTitle());
+        putString(aName.getFirstName());
+        putString(aName.getSurname());
+    }
+
+
+    /**
+     * Adds a date to the frame as its number of days from 1 January 1970.
+     *
+     * @param aDate a date, or null
+     */
+    void putDate(CompactDate aDate)
+    {
+        putInt((aDate == null) ? WireProtocol.NO_DATE : aDate.toEpochDay());
+    }
+
+
+    /**
+     * Returns the number of bytes built and not yet written.
+     *
+     * @return the size in bytes
+     */
+    int size()
+    {
+        return buffer.position();
+    }
+
+
+    /**
+     * Writes as much of the finished frames to aChannel as it will take without blocking,
+     * or all of them if it is in blocking mode.
+     *
+     * @param aChannel a channel
+     *
+     * @return true if everything built has been written, false if some is left
+     *
+     * @throws IOException if aChannel cannot be written to
+     */
+    boolean writeTo(WritableByteChannel aChannel) throws IOException
+    {
+        buffer.flip();
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                if (aChannel.write(buffer) == 0)
+                {
+                    break;
+                }
+            }
+            return !buffer.hasRemaining();
+        }
+        finally
+        {
+            buffer.compact();
+        }
+    }
+
+
+    //private protocol
+
+    /**
+     * Makes room for aCount more bytes, doubling the buffer as needed.
+     */
+    private void ensure(int aCount)
+    {
+        if (buffer.remaining() < aCount)
+        {
+            int capacity = buffer.capacity();
+            while (capacity - buffer.position() < aCount)
+            {
+                capacity *= 2;
+            }
+            ByteBuffer bigger = ByteBuffer.allocate(capacity);
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+    }
+}
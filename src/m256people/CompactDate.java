@@ -0,0 +1,468 @@
+package m256people;
+
+import java.text.ParseException;
+import java.time.*;
+import m256date.*;
+
+/**
+ * CompactDate objects represent dates, such as dates of birth, held as a single int:
+ * the number of days since 1 January 1970.<p>
+ * Dates are read from strings of the form day/month/year, as used by the set-up file
+ * and by M256Date, without creating any objects along the way. The day and month may
+ * have one or two digits and the year two or four; a two-digit year is taken to be in
+ * the hundred years up to and including this year. Dates are written with a four-digit
+ * year, so that writing a date and reading it back never changes its century. Ages are
+ * worked out from today's date, which is looked up once a day rather than on every call.
+ */
+public final class CompactDate implements Comparable<CompactDate>, java.io.Serializable
+{
+    //attributes
+
+    /**
+     * the version of the serialized form
+     */
+    private static final long serialVersionUID = 5623750000502457925L;
+
+    /**
+     * the number of days from 1 January 1970 to this date
+     */
+    private final int epochDay;
+
+    /**
+     * today's date, as last looked up
+     */
+    private static volatile Today today = new Today(Long.MIN_VALUE, 0);
+
+
+    //constructor
+
+    /**
+     * Initialises a new CompactDate object for the given day.
+     *
+     * @param anEpochDay the number of days from 1 January 1970
+     */
+    private CompactDate(int anEpochDay)
+    {
+        epochDay = anEpochDay;
+    }
+
+
+    //public protocol
+
+    /**
+     * Returns the date with the given number of days from 1 January 1970.
+     *
+     * @param anEpochDay a number of days, negative for dates before 1970
+     *
+     * @return a CompactDate object
+     */
+    public static CompactDate ofEpochDay(int anEpochDay)
+    {
+        return new CompactDate(anEpochDay);
+    }
+
+
+    /**
+     * Returns the date with the given year, month and day of month.
+     *
+     * @param aYear the year, such as 1978
+     * @param aMonth the month, from 1 to 12
+     * @param aDay the day of the month, from 1
+     *
+     * @return a CompactDate object
+     *
+     * @throws IllegalArgumentException if there is no such date
+     */
+    public static CompactDate of(int aYear, int aMonth, int aDay)
+    {
+        checkDate(aYear, aMonth, aDay, null);
+        return new CompactDate(epochDay(aYear, aMonth, aDay));
+    }
+
+
+    /**
+     * Returns the date represented by aDate.
+     *
+     * @param aDate a date
+     *
+     * @return a CompactDate object, or null if aDate is null
+     *
+     * @throws IllegalArgumentException if the string form of aDate cannot be read
+     */
+    public static CompactDate of(M256Date aDate)
+    {
+        return (aDate == null) ? null : parse(aDate.toString());
+    }
+
+
+    /**
+     * Reads a date of the form day/month/year.
+     *
+     * @param aText the text of a date, such as "23/05/78"
+     *
+     * @return a CompactDate object
+     *
+     * @throws IllegalArgumentException if aText is not a date of that form
+     */
+    public static CompactDate parse(CharSequence aText)
+    {
+        return new CompactDate(parseEpochDay(aText));
+    }
+
+
+    /**
+     * Reads a date of the form day/month/year, returning the number of days from
+     * 1 January 1970. No objects are created unless aText cannot be read.
+     *
+     * @param aText the text of a date, such as "23/05/78"
+     *
+     * @return the number of days from 1 January 1970 to the date
+     *
+     * @throws IllegalArgumentException if aText is not a date of that form
+     */
+    public static int parseEpochDay(CharSequence aText)
+    {
+        int length = aText.length();
+        int i = 0;
+        int day = 0;
+        int digits = 0;
+        for (; i < length && aText.charAt(i) != '/'; i++, digits++)
+        {
+            day = 10 * day + digit(aText, i);
+        }
+        if (digits < 1 || digits > 2 || i == length)
+        {
+            throw badDate(aText);
+        }
+        int month = 0;
+        digits = 0;
+        for (i++; i < length && aText.charAt(i) != '/'; i++, digits++)
+        {
+            month = 10 * month + digit(aText, i);
+        }
+        if (digits < 1 || digits > 2 || i == length)
+        {
+            throw badDate(aText);
+        }
+        int year = 0;
+        digits = 0;
+        for (i++; i < length; i++, digits++)
+        {
+            year = 10 * year + digit(aText, i);
+        }
+        if (digits == 2)
+        {
+            int thisYear = currentDay().ymd / 10000;
+            year += thisYear - thisYear % 100;
+            if (year > thisYear)
+            {
+                year -= 100;
+            }
+        }
+        else if (digits != 4)
+        {
+            throw badDate(aText);
+        }
+        checkDate(year, month, day, aText);
+        return epochDay(year, month, day);
+    }
+
+
+    /**
+     * Returns the number of days from 1 January 1970 to today, in the default time zone.
+     *
+     * @return today's epoch day
+     */
+    public static int today()
+    {
+        return currentDay().epochDay;
+    }
+
+
+    /**
+     * Returns the age today, in whole years, of someone born on the given day.
+     * No objects are created.
+     *
+     * @param anEpochDay the number of days from 1 January 1970 to the date of birth
+     *
+     * @return the age in years
+     */
+    public static int ageOf(int anEpochDay)
+    {
+        return (currentDay().ymd - ymd(anEpochDay)) / 10000;
+    }
+
+
+    /**
+     * Returns the number of days from 1 January 1970 to this date.
+     *
+     * @return epochDay
+     */
+    public int toEpochDay()
+    {
+        return epochDay;
+    }
+
+
+    /**
+     * Returns the year of this date.
+     *
+     * @return the year, such as 1978
+     */
+    public int getYear()
+    {
+        return yearOf(epochDay);
+    }
+
+
+    /**
+     * Returns the month of this date.
+     *
+     * @return the month, from 1 to 12
+     */
+    public int getMonth()
+    {
+        return (ymd(epochDay) / 100) % 100;
+    }
+
+
+    /**
+     * Returns the day of the month of this date.
+     *
+     * @return the day, from 1
+     */
+    public int getDayOfMonth()
+    {
+        return ymd(epochDay) % 100;
+    }
+
+
+    /**
+     * Returns the age today, in whole years, of someone born on this date.
+     *
+     * @return the age in years
+     */
+    public int getAge()
+    {
+        return ageOf(epochDay);
+    }
+
+
+    /**
+     * Returns the age on aDate, in whole years, of someone born on this date.
+     *
+     * @param aDate a date
+     *
+     * @return the age in years
+     */
+    public int getAgeOn(CompactDate aDate)
+    {
+        return (ymd(aDate.epochDay) - ymd(epochDay)) / 10000;
+    }
+
+
+    /**
+     * Returns an M256Date object representing this date. It is given the date with a
+     * four-digit year, so that the century is kept.
+     *
+     * @return a new M256Date object
+     */
+    public M256Date toM256Date()
+    {
+        try
+        {
+            return new M256Date(toString());
+        }
+        catch (ParseException anException)
+        {
+            throw new IllegalStateException("M256Date cannot represent " + this);
+        }
+    }
+
+
+    /**
+     * Compares this date with aDate.
+     *
+     * @param aDate a date
+     *
+     * @return a negative number, zero or a positive number as this date is before, the same as or after aDate
+     */
+    public int compareTo(CompactDate aDate)
+    {
+        return Integer.compare(epochDay, aDate.epochDay);
+    }
+
+
+    /**
+     * Returns whether o represents the same date as the receiver.
+     *
+     * @param o an object
+     *
+     * @return true if o is a CompactDate object for the same day, false otherwise
+     */
+    public boolean equals(Object o)
+    {
+        return (o instanceof CompactDate) && ((CompactDate) o).epochDay == epochDay;
+    }
+
+
+    /**
+     * Returns a hash code for this date.
+     *
+     * @return epochDay
+     */
+    public int hashCode()
+    {
+        return epochDay;
+    }
+
+
+    /**
+     * Returns this date in the form dd/mm/yyyy, which parse reads back as the same date.
+     *
+     * @return a String object representing the receiver
+     */
+    public String toString()
+    {
+        int year = getYear();
+        int month = getMonth();
+        int day = getDayOfMonth();
+        if (year < 0 || year > 9999)
+        {
+            return String.format("%02d/%02d/%d", day, month, year);
+        }
+        char[] text = {(char) ('0' + day / 10), (char) ('0' + day % 10), '/',
+                       (char) ('0' + month / 10), (char) ('0' + month % 10), '/',
+                       (char) ('0' + year / 1000), (char) ('0' + year / 100 % 10),
+                       (char) ('0' + year / 10 % 10), (char) ('0' + year % 10)};
+        return new String(text);
+    }
+
+
+    //private protocol
+
+    /**
+     * Returns today's date, looking it up again if the last one looked up has ended.
+     */
+    private static Today currentDay()
+    {
+        Today current = today;
+        if (System.currentTimeMillis() >= current.ends)
+        {
+            ZoneId zone = ZoneId.systemDefault();
+            LocalDate now = LocalDate.now(zone);
+            current = new Today(now.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli(), (int) now.toEpochDay());
+            today = current;
+        }
+        return current;
+    }
+
+
+    /**
+     * Returns the value of the digit at anIndex of aText.
+     */
+    private static int digit(CharSequence aText, int anIndex)
+    {
+        int value = aText.charAt(anIndex) - '0';
+        if (value < 0 || value > 9)
+        {
+            throw badDate(aText);
+        }
+        return value;
+    }
+
+
+    /**
+     * Returns the exception thrown for text that is not a date.
+     */
+    private static IllegalArgumentException badDate(CharSequence aText)
+    {
+        return new IllegalArgumentException("not a date: " + aText);
+    }
+
+
+    /**
+     * Throws IllegalArgumentException unless the month and day are possible in aYear.
+     */
+    private static void checkDate(int aYear, int aMonth, int aDay, CharSequence aText)
+    {
+        if (aMonth < 1 || aMonth > 12 || aDay < 1 || aDay > lengthOfMonth(aYear, aMonth))
+        {
+            throw (aText != null) ? badDate(aText) : new IllegalArgumentException("no such date: " + aDay + "/" + aMonth + "/" + aYear);
+        }
+    }
+
+
+    /**
+     * Returns the number of days in the month.
+     */
+    private static int lengthOfMonth(int aYear, int aMonth)
+    {
+        if (aMonth == 2)
+        {
+            return ((aYear % 4 == 0 && aYear % 100 != 0) || aYear % 400 == 0) ? 29 : 28;
+        }
+        return (aMonth == 4 || aMonth == 6 || aMonth == 9 || aMonth == 11) ? 30 : 31;
+    }
+
+
+    /**
+     * Returns the number of days from 1 January 1970 to the given date in the
+     * proleptic Gregorian calendar.
+     */
+    private static int epochDay(int aYear, int aMonth, int aDay)
+    {
+        int y = (aMonth <= 2) ? aYear - 1 : aYear;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (aMonth + ((aMonth > 2) ? -3 : 9)) + 2) / 5 + aDay - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+
+    /**
+     * Returns the date anEpochDay days from 1 January 1970 as the int yyyymmdd, so
+     * that the difference of two such ints divided by 10000 is a difference in whole years.
+     */
+    private static int ymd(int anEpochDay)
+    {
+        int z = anEpochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = (mp < 10) ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + ((month <= 2) ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+
+    /**
+     * Returns the year of the day anEpochDay days from 1 January 1970.
+     */
+    private static int yearOf(int anEpochDay)
+    {
+        return ymd(anEpochDay) / 10000;
+    }
+
+
+    /**
+     * Today's date, held together with the time it ends so that both are replaced at once.
+     */
+    private static final class Today
+    {
+        private final long ends;
+        private final int epochDay;
+        private final int ymd;
+
+        Today(long anEnd, int anEpochDay)
+        {
+            ends = anEnd;
+            epochDay = anEpochDay;
+            ymd = (anEnd == Long.MIN_VALUE) ? 0 : CompactDate.ymd(anEpochDay);
+        }
+    }
+}
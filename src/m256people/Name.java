@@ -6,6 +6,12 @@ package m256people;
 public class Name implements Comparable<Name>, java.io.Serializable
 {    
     //attributes
+
+    /**
+     * the version of the serialized form, kept at that of the first release so that
+     * the data files it wrote can still be read
+     */
+    private static final long serialVersionUID = -822499875345633992L;
         
     /**
      * the title of the person
@@ -8,6 +8,12 @@ import m256date.*;
 public class Person implements java.io.Serializable
 {    
     //attributes
+
+    /**
+     * the version of the serialized form, kept at that of the first release so that
+     * the data files it wrote can still be read
+     */
+    private static final long serialVersionUID = -4236038266185119532L;
     
     /**
      * the name of the person
@@ -22,7 +28,7 @@ public class Person implements java.io.Serializable
     /**
      * the date of birth of the person
      */
-    private M256Date dateOfBirth; 
+    private CompactDate dateOfBirth; 
     
     
     //constructors
@@ -35,6 +41,19 @@ public class Person implements java.io.Serializable
      * @param aDate the date of birth of the person
      */
     public Person(Name aName, Sex aSex, M256Date aDate)
+    {
+        this(aName, aSex, CompactDate.of(aDate));
+    }
+    
+    
+    /**
+     * Initialises a new Person object with the given attribute values and age according to aDate.
+     *
+     * @param aName the name of the person
+     * @param aSex the sex of the person
+     * @param aDate the date of birth of the person
+     */
+    public Person(Name aName, Sex aSex, CompactDate aDate)
     {
         name = aName;
         sex = aSex;
@@ -49,7 +68,7 @@ public class Person implements java.io.Serializable
      */
     public Person(Name aName)
     {
-        this(aName, null, null);
+        this(aName, null, (CompactDate) null);
     }
     
     
@@ -62,7 +81,7 @@ public class Person implements java.io.Serializable
     {
         name = aPerson.getName();
         sex = aPerson.getSex();
-        dateOfBirth = aPerson.getDateOfBirth();
+        dateOfBirth = aPerson.getBirthDate();
     }
     
     
@@ -107,6 +126,17 @@ public class Person implements java.io.Serializable
      * @return dateOfBirth
      */
     public M256Date getDateOfBirth()
+    {
+        return (dateOfBirth == null) ? null : dateOfBirth.toM256Date();
+    }
+    
+    
+    /**
+     * Returns the date of birth of this person as a CompactDate.
+     *
+     * @return dateOfBirth
+     */
+    public CompactDate getBirthDate()
     {
         return dateOfBirth;
     }
@@ -132,4 +162,20 @@ public class Person implements java.io.Serializable
     {
         return name + " " + sex + " " + dateOfBirth;
     }
+    
+    
+    //private protocol
+    
+    /**
+     * Reads in this person, taking a date of birth saved as an M256Date by the first
+     * release as a CompactDate.
+     */
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException
+    {
+        java.io.ObjectInputStream.GetField fields = in.readFields();
+        name = (Name) fields.get("name", null);
+        sex = (Sex) fields.get("sex", null);
+        Object date = fields.get("dateOfBirth", null);
+        dateOfBirth = (date instanceof M256Date) ? CompactDate.of((M256Date) date) : (CompactDate) date;
+    }
 }
\ No newline at end of file
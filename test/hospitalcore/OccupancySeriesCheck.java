@@ -0,0 +1,178 @@
+package hospitalcore;
+
+import java.util.*;
+
+/**
+ * Checks OccupancySeries against a brute-force model of the same changes.<p>
+ * Each trial records a random history of occupancy changes, with bursts of changes
+ * within one step such as the admissions made when a hospital is set up, quiet spells
+ * longer than a segment and changes on segment boundaries. The model keeps the
+ * occupancy at the end of every step in which it changed. Random times and ranges are
+ * then asked of both: the occupancy at a time, and the lowest, highest, mean and last
+ * occupancy and the time covered over a range. Any difference is reported, and the
+ * check exits with status 1 if there were any.<p>
+ * It lives in the test source root, so it is compiled by "ant compile-test" and is not
+ * packaged in the JAR.
+ * Usage: java -cp build/classes:build/test/classes hospitalcore.OccupancySeriesCheck [trials [seed]]
+ */
+class OccupancySeriesCheck
+{
+    public static void main(String[] args)
+    {
+        int trials = (args.length > 0) ? Integer.parseInt(args[0]) : 500;
+        long seed = (args.length > 1) ? Long.parseLong(args[1]) : 1;
+        Random random = new Random(seed);
+        int queries = 0;
+        int mismatches = 0;
+        for (int trial = 0; trial < trials; trial++)
+        {
+            OccupancySeries series = new OccupancySeries();
+            TreeMap<Long, Integer> model = new TreeMap<Long, Integer>();
+            long time = 1700000000000L + random.nextInt(10000000);
+            int value = random.nextInt(5);
+            int changes = random.nextInt(400);
+            for (int i = 0; i < changes; i++)
+            {
+                series.record(time, value);
+                model.put(step(time), value);
+                time += gap(random, time);
+                value = Math.max(0, value + random.nextInt(7) - 3);
+            }
+            if (model.isEmpty())
+            {
+                continue;
+            }
+            long origin = model.firstKey();
+            long now = model.lastKey() + OccupancySeries.RESOLUTION + random.nextInt(10000000);
+            long span = now - origin;
+            for (int q = 0; q < 200; q++)
+            {
+                queries++;
+                long at = origin - 1000000 + (long) (random.nextDouble() * (span + 2000000));
+                Map.Entry<Long, Integer> entry = model.floorEntry(at);
+                int expected = (entry == null) ? -1 : entry.getValue();
+                int actual = series.valueAt(at);
+                if (actual != expected)
+                {
+                    mismatches++;
+                    report(mismatches, "trial " + trial + ": at " + (at - origin) + " got " + actual + ", expected " + expected);
+                }
+
+                long from = origin - 1000000 + (long) (random.nextDouble() * (span + 2000000));
+                if (random.nextBoolean())
+                {
+                    from -= Math.floorMod(from, OccupancySeries.SEGMENT_LENGTH);
+                }
+                long to = from + 1 + (long) (random.nextDouble() * span);
+                String got = describe(series.summarise(from, to, now));
+                String wanted = bruteForce(model, origin, from, to, now);
+                if (!got.equals(wanted))
+                {
+                    mismatches++;
+                    report(mismatches, "trial " + trial + ": " + (from - origin) + " to " + (to - origin)
+                            + " got " + got + ", expected " + wanted);
+                }
+            }
+        }
+        System.out.println(trials + " trials, " + queries + " queries, " + mismatches + " mismatches");
+        if (mismatches > 0)
+        {
+            System.exit(1);
+        }
+    }
+
+
+    /**
+     * Returns the time to the next change: usually within a few minutes, sometimes
+     * within the same step or onto the next segment boundary, and sometimes hours.
+     */
+    private static long gap(Random random, long aTime)
+    {
+        switch (random.nextInt(10))
+        {
+            case 0:
+            case 1:
+                return random.nextInt((int) OccupancySeries.RESOLUTION - (int) Math.floorMod(aTime, OccupancySeries.RESOLUTION));
+            case 2:
+                long end = aTime - Math.floorMod(aTime, OccupancySeries.SEGMENT_LENGTH) + OccupancySeries.SEGMENT_LENGTH;
+                return end - aTime + random.nextInt(2) * random.nextInt((int) OccupancySeries.RESOLUTION);
+            case 3:
+                return random.nextInt(20) * OccupancySeries.SEGMENT_LENGTH + random.nextInt((int) OccupancySeries.SEGMENT_LENGTH);
+            default:
+                return random.nextInt(600000);
+        }
+    }
+
+
+    /**
+     * Returns the start of the step holding aTime.
+     */
+    private static long step(long aTime)
+    {
+        return aTime - Math.floorMod(aTime, OccupancySeries.RESOLUTION);
+    }
+
+
+    /**
+     * Summarises aModel from aFrom up to aTo as OccupancySeries.summarise should, by
+     * walking every change, and describes the result as describe does.
+     */
+    private static String bruteForce(TreeMap<Long, Integer> aModel, long anOrigin, long aFrom, long aTo, long aNow)
+    {
+        long from = Math.max(aFrom, anOrigin);
+        long to = Math.min(aTo, aNow);
+        if (from >= to)
+        {
+            return "none";
+        }
+        int current = aModel.floorEntry(from).getValue();
+        long since = from;
+        int min = current;
+        int max = current;
+        long area = 0;
+        for (Map.Entry<Long, Integer> change : aModel.subMap(from, false, to, false).entrySet())
+        {
+            area += (long) current * (change.getKey() - since);
+            since = change.getKey();
+            current = change.getValue();
+            min = Math.min(min, current);
+            max = Math.max(max, current);
+        }
+        area += (long) current * (to - since);
+        return describe(min, max, (double) area / (to - from), current, to - from);
+    }
+
+
+    /**
+     * Describes aSummary, with its mean rounded so that sums taken in a different order agree.
+     */
+    private static String describe(OccupancySummary aSummary)
+    {
+        if (aSummary.getLast() < 0)
+        {
+            return "none";
+        }
+        return describe(aSummary.getMin(), aSummary.getMax(), aSummary.getMean(), aSummary.getLast(), aSummary.getCoverage());
+    }
+
+
+    /**
+     * Describes a summary.
+     */
+    private static String describe(int aMin, int aMax, double aMean, int aLast, long aCoverage)
+    {
+        return String.format("min %d, max %d, mean %.6f, last %d, coverage %d", aMin, aMax, aMean, aLast, aCoverage);
+    }
+
+
+    /**
+     * Prints the first few mismatches.
+     */
+    private static void report(int aCount, String aMessage)
+    {
+        if (aCount <= 20)
+        {
+            System.out.println(aMessage);
+        }
+    }
+}